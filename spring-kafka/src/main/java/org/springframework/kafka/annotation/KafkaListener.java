@@ -135,4 +135,64 @@ public @interface KafkaListener {
 	 */
 	String group() default "";
 
+	/**
+	 * The bean name of a
+	 * {@link org.springframework.kafka.listener.adapter.RecordFilterStrategy} to apply
+	 * to records before they are converted and passed to the listener, or an expression
+	 * (SpEL) evaluating to such a strategy. Overrides any strategy configured on the
+	 * container factory.
+	 * @return the filter bean name or expression.
+	 */
+	String filter() default "";
+
+	/**
+	 * Override the container factory's {@code concurrency} for this listener; a number
+	 * or an expression (SpEL) evaluating to a number.
+	 * @return the concurrency.
+	 * @see org.springframework.kafka.listener.ConcurrentMessageListenerContainer#setConcurrency(int)
+	 */
+	String concurrency() default "";
+
+	/**
+	 * Override the container factory's {@code pollTimeout} (ms) for this listener; a
+	 * number or an expression (SpEL) evaluating to a number.
+	 * @return the poll timeout.
+	 * @see org.springframework.kafka.listener.AbstractMessageListenerContainer#setPollTimeout(long)
+	 */
+	String pollTimeout() default "";
+
+	/**
+	 * Override the container factory's {@code ackMode} for this listener; the name of an
+	 * {@link org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode
+	 * AckMode} or an expression (SpEL) evaluating to one.
+	 * @return the ack mode.
+	 */
+	String ackMode() default "";
+
+	/**
+	 * Override the container factory's {@code ackCount} for this listener; a number or
+	 * an expression (SpEL) evaluating to a number.
+	 * @return the ack count.
+	 * @see org.springframework.kafka.listener.AbstractMessageListenerContainer#setAckCount(int)
+	 */
+	String ackCount() default "";
+
+	/**
+	 * Override the container factory's {@code ackTime} (ms) for this listener; a number
+	 * or an expression (SpEL) evaluating to a number.
+	 * @return the ack time.
+	 * @see org.springframework.kafka.listener.AbstractMessageListenerContainer#setAckTime(long)
+	 */
+	String ackTime() default "";
+
+	/**
+	 * Consumer properties that override (or add to) the consumer factory's configuration
+	 * for this listener, e.g. {@code "fetch.min.bytes=100000"}. Each entry is a
+	 * {@code key=value} pair, a property placeholder or an expression (SpEL) evaluating
+	 * to such a pair or to a {@link java.util.Map} of properties.
+	 * @return the properties.
+	 * @see org.springframework.kafka.listener.AbstractMessageListenerContainer#setConsumerProperties(java.util.Map)
+	 */
+	String[] properties() default {};
+
 }
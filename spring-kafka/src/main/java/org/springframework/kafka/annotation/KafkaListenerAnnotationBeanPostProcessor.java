@@ -20,9 +20,11 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
@@ -50,6 +52,8 @@ import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
 import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.config.MethodKafkaListenerEndpoint;
 import org.springframework.kafka.config.MultiMethodKafkaListenerEndpoint;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
 import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
 import org.springframework.messaging.handler.annotation.support.MessageHandlerMethodFactory;
 import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
@@ -322,6 +326,7 @@ public class KafkaListenerAnnotationBeanPostProcessor<K, V>
 		return method;
 	}
 
+	@SuppressWarnings("unchecked")
 	protected void processListener(MethodKafkaListenerEndpoint<?, ?> endpoint, KafkaListener kafkaListener, Object bean,
 			Object adminTarget, String beanName) {
 		endpoint.setBean(bean);
@@ -337,6 +342,11 @@ public class KafkaListenerAnnotationBeanPostProcessor<K, V>
 				endpoint.setGroup((String) resolvedGroup);
 			}
 		}
+		String filter = kafkaListener.filter();
+		if (StringUtils.hasText(filter)) {
+			endpoint.setRecordFilterStrategy(resolveFilter(filter));
+		}
+		resolveContainerProperties(endpoint, kafkaListener);
 
 		KafkaListenerContainerFactory<?> factory = null;
 		String containerFactoryBeanName = resolve(kafkaListener.containerFactory());
@@ -355,6 +365,87 @@ public class KafkaListenerAnnotationBeanPostProcessor<K, V>
 		this.registrar.registerEndpoint(endpoint, factory);
 	}
 
+	@SuppressWarnings("rawtypes")
+	private RecordFilterStrategy resolveFilter(String filter) {
+		Object resolved = resolveExpression(filter);
+		if (resolved instanceof RecordFilterStrategy) {
+			return (RecordFilterStrategy) resolved;
+		}
+		Assert.state(resolved instanceof String,
+				"filter must resolve to a RecordFilterStrategy or a bean name, not " + resolved);
+		Assert.state(this.beanFactory != null, "BeanFactory must be set to obtain filter by bean name");
+		return this.beanFactory.getBean((String) resolved, RecordFilterStrategy.class);
+	}
+
+	private void resolveContainerProperties(MethodKafkaListenerEndpoint<?, ?> endpoint, KafkaListener kafkaListener) {
+		Number concurrency = resolveNumber("concurrency", kafkaListener.concurrency());
+		if (concurrency != null) {
+			endpoint.setConcurrency(concurrency.intValue());
+		}
+		Number pollTimeout = resolveNumber("pollTimeout", kafkaListener.pollTimeout());
+		if (pollTimeout != null) {
+			endpoint.setPollTimeout(pollTimeout.longValue());
+		}
+		String ackMode = kafkaListener.ackMode();
+		if (StringUtils.hasText(ackMode)) {
+			Object resolved = resolveExpression(ackMode);
+			if (resolved instanceof AckMode) {
+				endpoint.setAckMode((AckMode) resolved);
+			}
+			else {
+				Assert.state(resolved instanceof String, "ackMode must resolve to an AckMode or String, not " + resolved);
+				endpoint.setAckMode(AckMode.valueOf(((String) resolved).trim()));
+			}
+		}
+		Number ackCount = resolveNumber("ackCount", kafkaListener.ackCount());
+		if (ackCount != null) {
+			endpoint.setAckCount(ackCount.intValue());
+		}
+		Number ackTime = resolveNumber("ackTime", kafkaListener.ackTime());
+		if (ackTime != null) {
+			endpoint.setAckTime(ackTime.longValue());
+		}
+		String[] properties = kafkaListener.properties();
+		if (properties.length > 0) {
+			Map<String, Object> consumerProperties = new HashMap<>();
+			for (String property : properties) {
+				resolveProperty(resolveExpression(property), consumerProperties);
+			}
+			endpoint.setConsumerProperties(consumerProperties);
+		}
+	}
+
+	private Number resolveNumber(String attribute, String value) {
+		if (!StringUtils.hasText(value)) {
+			return null;
+		}
+		Object resolved = resolveExpression(value);
+		if (resolved instanceof Number) {
+			return (Number) resolved;
+		}
+		Assert.state(resolved instanceof String, attribute + " must resolve to a Number or String, not " + resolved);
+		return Long.valueOf(((String) resolved).trim());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void resolveProperty(Object resolvedValue, Map<String, Object> result) {
+		if (resolvedValue instanceof Map) {
+			for (Entry<Object, Object> entry : ((Map<Object, Object>) resolvedValue).entrySet()) {
+				result.put(entry.getKey().toString(), entry.getValue());
+			}
+		}
+		else if (resolvedValue instanceof String) {
+			String property = (String) resolvedValue;
+			int index = property.indexOf('=');
+			Assert.state(index > 0, "@KafkaListener properties must be 'key=value' pairs, not '" + property + "'");
+			result.put(property.substring(0, index).trim(), property.substring(index + 1).trim());
+		}
+		else {
+			throw new IllegalArgumentException(String.format(
+					"@KafKaListener can't resolve '%s' as a consumer property", resolvedValue));
+		}
+	}
+
 	private String getEndpointId(KafkaListener kafkaListener) {
 		if (StringUtils.hasText(kafkaListener.id())) {
 			return resolve(kafkaListener.id());
@@ -19,10 +19,18 @@ package org.springframework.kafka.config;
 
 import java.util.concurrent.Executor;
 
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.listener.AbstractMessageListenerContainer;
 import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.DrainPolicy;
 import org.springframework.kafka.listener.ErrorHandler;
+import org.springframework.kafka.listener.OffsetStore;
+import org.springframework.kafka.listener.adapter.AbstractDelegatingMessageListenerAdapter;
+import org.springframework.kafka.listener.adapter.MessagingMessageListenerAdapter;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+import org.springframework.kafka.support.converter.MessageConverter;
 
 /**
  * Base {@link KafkaListenerContainerFactory} for Spring's base container implementation.
@@ -54,6 +62,26 @@ public abstract class AbstractKafkaListenerContainerFactory<C extends AbstractMe
 
 	private Long pollTimeout;
 
+	private MessageConverter<K, V> messageConverter;
+
+	private Boolean conflateKeys;
+
+	private Long conflationWindow;
+
+	private ConsumerRebalanceListener consumerRebalanceListener;
+
+	private OffsetStore offsetStore;
+
+	private Long startupSettleTime;
+
+	private Long drainTimeout;
+
+	private DrainPolicy drainPolicy;
+
+	private RecordFilterStrategy<K, V> recordFilterStrategy;
+
+	private Boolean ackDiscarded;
+
 	/**
 	 * Specify a {@link ConsumerFactory} to use.
 	 * @param consumerFactory The consumer factory.
@@ -129,6 +157,100 @@ public abstract class AbstractKafkaListenerContainerFactory<C extends AbstractMe
 		this.pollTimeout = pollTimeout;
 	}
 
+	/**
+	 * Specify whether records should be conflated to the latest for each key.
+	 * @param conflateKeys true to conflate.
+	 * @see AbstractMessageListenerContainer#setConflateKeys(boolean)
+	 */
+	public void setConflateKeys(Boolean conflateKeys) {
+		this.conflateKeys = conflateKeys;
+	}
+
+	/**
+	 * Specify a {@code conflationWindow} to use.
+	 * @param conflationWindow the conflation window.
+	 * @see AbstractMessageListenerContainer#setConflationWindow(long)
+	 */
+	public void setConflationWindow(Long conflationWindow) {
+		this.conflationWindow = conflationWindow;
+	}
+
+	/**
+	 * Specify a {@link ConsumerRebalanceListener} to use.
+	 * @param consumerRebalanceListener the listener.
+	 * @see AbstractMessageListenerContainer#setConsumerRebalanceListener(ConsumerRebalanceListener)
+	 */
+	public void setConsumerRebalanceListener(ConsumerRebalanceListener consumerRebalanceListener) {
+		this.consumerRebalanceListener = consumerRebalanceListener;
+	}
+
+	/**
+	 * Specify an {@link OffsetStore} to use.
+	 * @param offsetStore the offset store.
+	 * @see AbstractMessageListenerContainer#setOffsetStore(OffsetStore)
+	 */
+	public void setOffsetStore(OffsetStore offsetStore) {
+		this.offsetStore = offsetStore;
+	}
+
+	/**
+	 * Specify a {@code startupSettleTime} to use.
+	 * @param startupSettleTime the settle time.
+	 * @see AbstractMessageListenerContainer#setStartupSettleTime(long)
+	 */
+	public void setStartupSettleTime(Long startupSettleTime) {
+		this.startupSettleTime = startupSettleTime;
+	}
+
+	/**
+	 * Specify a {@code drainTimeout} to use.
+	 * @param drainTimeout the drain timeout.
+	 * @see AbstractMessageListenerContainer#setDrainTimeout(long)
+	 */
+	public void setDrainTimeout(Long drainTimeout) {
+		this.drainTimeout = drainTimeout;
+	}
+
+	/**
+	 * Specify a {@link DrainPolicy} to use.
+	 * @param drainPolicy the drain policy.
+	 * @see AbstractMessageListenerContainer#setDrainPolicy(DrainPolicy)
+	 */
+	public void setDrainPolicy(DrainPolicy drainPolicy) {
+		this.drainPolicy = drainPolicy;
+	}
+
+	/**
+	 * Specify a {@link MessageConverter} to use for {@link MethodKafkaListenerEndpoint}s
+	 * that don't have their own. The converter is applied to the listener created for each
+	 * container; the endpoint itself is not modified.
+	 * @param messageConverter the message converter.
+	 * @see MethodKafkaListenerEndpoint#setMessageConverter(MessageConverter)
+	 */
+	public void setMessageConverter(MessageConverter<K, V> messageConverter) {
+		this.messageConverter = messageConverter;
+	}
+
+	/**
+	 * Set the record filter strategy for endpoints that don't have their own.
+	 * @param recordFilterStrategy the strategy.
+	 * @see AbstractKafkaListenerEndpoint#setRecordFilterStrategy(RecordFilterStrategy)
+	 */
+	public void setRecordFilterStrategy(RecordFilterStrategy<K, V> recordFilterStrategy) {
+		this.recordFilterStrategy = recordFilterStrategy;
+	}
+
+	/**
+	 * Set to true to acknowledge discarded records when using a manual ack mode; applied
+	 * to endpoints that don't have their own setting.
+	 * @param ackDiscarded true to acknowledge.
+	 * @see AbstractKafkaListenerEndpoint#setAckDiscarded(Boolean)
+	 */
+	public void setAckDiscarded(Boolean ackDiscarded) {
+		this.ackDiscarded = ackDiscarded;
+	}
+
+	@SuppressWarnings("unchecked")
 	@Override
 	public C createListenerContainer(KafkaListenerEndpoint endpoint) {
 		C instance = createContainerInstance(endpoint);
@@ -157,13 +279,59 @@ public abstract class AbstractKafkaListenerContainerFactory<C extends AbstractMe
 		if (this.pollTimeout != null) {
 			instance.setPollTimeout(this.pollTimeout);
 		}
+		if (this.conflateKeys != null) {
+			instance.setConflateKeys(this.conflateKeys);
+		}
+		if (this.conflationWindow != null) {
+			instance.setConflationWindow(this.conflationWindow);
+		}
+		if (this.consumerRebalanceListener != null) {
+			instance.setConsumerRebalanceListener(this.consumerRebalanceListener);
+		}
+		if (this.offsetStore != null) {
+			instance.setOffsetStore(this.offsetStore);
+		}
+		if (this.startupSettleTime != null) {
+			instance.setStartupSettleTime(this.startupSettleTime);
+		}
+		if (this.drainTimeout != null) {
+			instance.setDrainTimeout(this.drainTimeout);
+		}
+		if (this.drainPolicy != null) {
+			instance.setDrainPolicy(this.drainPolicy);
+		}
+
+		if (endpoint instanceof AbstractKafkaListenerEndpoint) {
+			AbstractKafkaListenerEndpoint<K, V> aklEndpoint = (AbstractKafkaListenerEndpoint<K, V>) endpoint;
+			if (this.recordFilterStrategy != null && aklEndpoint.getRecordFilterStrategy() == null) {
+				aklEndpoint.setRecordFilterStrategy(this.recordFilterStrategy);
+			}
+			if (this.ackDiscarded != null && aklEndpoint.getAckDiscarded() == null) {
+				aklEndpoint.setAckDiscarded(this.ackDiscarded);
+			}
+		}
 
-		endpoint.setupListenerContainer(instance);
 		initializeContainer(instance);
+		endpoint.setupListenerContainer(instance);
+		if (this.messageConverter != null && endpoint instanceof MethodKafkaListenerEndpoint
+				&& ((MethodKafkaListenerEndpoint<?, ?>) endpoint).getMessageConverter() == null) {
+			applyMessageConverter(instance.getMessageListener());
+		}
 
 		return instance;
 	}
 
+	@SuppressWarnings("unchecked")
+	private void applyMessageConverter(Object messageListener) {
+		Object listener = messageListener;
+		while (listener instanceof AbstractDelegatingMessageListenerAdapter) {
+			listener = ((AbstractDelegatingMessageListenerAdapter<?, ?>) listener).getDelegate();
+		}
+		if (listener instanceof MessagingMessageListenerAdapter) {
+			((MessagingMessageListenerAdapter<K, V>) listener).setMessageConverter(this.messageConverter);
+		}
+	}
+
 	/**
 	 * Create an empty container instance.
 	 * @param endpoint the endpoint.
@@ -174,7 +342,8 @@ public abstract class AbstractKafkaListenerContainerFactory<C extends AbstractMe
 	/**
 	 * Further initialize the specified container.
 	 * <p>Subclasses can inherit from this method to apply extra
-	 * configuration if necessary.
+	 * configuration if necessary. Invoked before the endpoint sets up the container, so
+	 * settings made by the endpoint take precedence.
 	 * @param instance the container instance to configure.
 	 */
 	protected void initializeContainer(C instance) {
@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import org.apache.kafka.common.TopicPartition;
@@ -31,8 +33,13 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.BeanExpressionContext;
 import org.springframework.beans.factory.config.BeanExpressionResolver;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 import org.springframework.kafka.listener.MessageListener;
 import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.adapter.FilteringMessageListenerAdapter;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
 import org.springframework.util.Assert;
 
 /**
@@ -66,6 +73,21 @@ public abstract class AbstractKafkaListenerEndpoint<K, V>
 
 	private String group;
 
+	private RecordFilterStrategy<K, V> recordFilterStrategy;
+
+	private Boolean ackDiscarded;
+
+	private Integer concurrency;
+
+	private Long pollTimeout;
+
+	private AckMode ackMode;
+
+	private Integer ackCount;
+
+	private Long ackTime;
+
+	private final Map<String, Object> consumerProperties = new HashMap<>();
 
 	@Override
 	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
@@ -175,6 +197,149 @@ public abstract class AbstractKafkaListenerEndpoint<K, V>
 		this.group = group;
 	}
 
+	/**
+	 * Return the record filter strategy.
+	 * @return the record filter strategy, or null if none.
+	 */
+	public RecordFilterStrategy<K, V> getRecordFilterStrategy() {
+		return this.recordFilterStrategy;
+	}
+
+	/**
+	 * Set a {@link RecordFilterStrategy} implementation; records for which the strategy
+	 * returns true are discarded before they are converted and passed to the listener.
+	 * @param recordFilterStrategy the strategy.
+	 */
+	public void setRecordFilterStrategy(RecordFilterStrategy<K, V> recordFilterStrategy) {
+		this.recordFilterStrategy = recordFilterStrategy;
+	}
+
+	/**
+	 * Return whether discarded records should be acknowledged.
+	 * @return true to acknowledge, or null if not set (in which case the container
+	 * factory's setting applies, and they are not acknowledged by default).
+	 */
+	public Boolean getAckDiscarded() {
+		return this.ackDiscarded;
+	}
+
+	/**
+	 * Set to true if the {@link #setRecordFilterStrategy(RecordFilterStrategy)
+	 * recordFilterStrategy} is in use, and the container uses a manual ack mode,
+	 * to acknowledge discarded records. When not set, the container factory's setting
+	 * applies.
+	 * @param ackDiscarded true to acknowledge.
+	 */
+	public void setAckDiscarded(Boolean ackDiscarded) {
+		this.ackDiscarded = ackDiscarded;
+	}
+
+	/**
+	 * Return the concurrency for this endpoint's container.
+	 * @return the concurrency, or null to use the factory's.
+	 */
+	public Integer getConcurrency() {
+		return this.concurrency;
+	}
+
+	/**
+	 * Set the concurrency for this endpoint's container, overriding the factory's.
+	 * @param concurrency the concurrency.
+	 * @see ConcurrentMessageListenerContainer#setConcurrency(int)
+	 */
+	public void setConcurrency(Integer concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Return the poll timeout for this endpoint's container.
+	 * @return the poll timeout, or null to use the factory's.
+	 */
+	public Long getPollTimeout() {
+		return this.pollTimeout;
+	}
+
+	/**
+	 * Set the poll timeout for this endpoint's container, overriding the factory's.
+	 * @param pollTimeout the poll timeout.
+	 * @see AbstractMessageListenerContainer#setPollTimeout(long)
+	 */
+	public void setPollTimeout(Long pollTimeout) {
+		this.pollTimeout = pollTimeout;
+	}
+
+	/**
+	 * Return the ack mode for this endpoint's container.
+	 * @return the ack mode, or null to use the factory's.
+	 */
+	public AckMode getAckMode() {
+		return this.ackMode;
+	}
+
+	/**
+	 * Set the ack mode for this endpoint's container, overriding the factory's.
+	 * @param ackMode the ack mode.
+	 * @see AbstractMessageListenerContainer#setAckMode(AckMode)
+	 */
+	public void setAckMode(AckMode ackMode) {
+		this.ackMode = ackMode;
+	}
+
+	/**
+	 * Return the ack count for this endpoint's container.
+	 * @return the ack count, or null to use the factory's.
+	 */
+	public Integer getAckCount() {
+		return this.ackCount;
+	}
+
+	/**
+	 * Set the ack count for this endpoint's container, overriding the factory's.
+	 * @param ackCount the ack count.
+	 * @see AbstractMessageListenerContainer#setAckCount(int)
+	 */
+	public void setAckCount(Integer ackCount) {
+		this.ackCount = ackCount;
+	}
+
+	/**
+	 * Return the ack time for this endpoint's container.
+	 * @return the ack time, or null to use the factory's.
+	 */
+	public Long getAckTime() {
+		return this.ackTime;
+	}
+
+	/**
+	 * Set the ack time for this endpoint's container, overriding the factory's.
+	 * @param ackTime the ack time.
+	 * @see AbstractMessageListenerContainer#setAckTime(long)
+	 */
+	public void setAckTime(Long ackTime) {
+		this.ackTime = ackTime;
+	}
+
+	/**
+	 * Return the consumer property overrides for this endpoint.
+	 * @return the properties.
+	 */
+	public Map<String, Object> getConsumerProperties() {
+		return this.consumerProperties;
+	}
+
+	/**
+	 * Set consumer properties that override (or add to) the consumer factory's
+	 * configuration for this endpoint's consumers.
+	 * @param consumerProperties the properties.
+	 * @see AbstractMessageListenerContainer#setConsumerProperties(Map)
+	 */
+	public void setConsumerProperties(Map<String, Object> consumerProperties) {
+		this.consumerProperties.clear();
+		if (consumerProperties != null) {
+			this.consumerProperties.putAll(consumerProperties);
+		}
+	}
+
 	@Override
 	public void afterPropertiesSet() {
 		boolean topicsEmpty = getTopics().isEmpty();
@@ -194,6 +359,9 @@ public abstract class AbstractKafkaListenerEndpoint<K, V>
 
 	@Override
 	public void setupListenerContainer(MessageListenerContainer listenerContainer) {
+		if (listenerContainer instanceof AbstractMessageListenerContainer) {
+			setupContainerProperties((AbstractMessageListenerContainer<?, ?>) listenerContainer);
+		}
 		setupMessageListener(listenerContainer);
 	}
 
@@ -205,9 +373,36 @@ public abstract class AbstractKafkaListenerEndpoint<K, V>
 	 */
 	protected abstract MessageListener<K, V> createMessageListener(MessageListenerContainer container);
 
+	private void setupContainerProperties(AbstractMessageListenerContainer<?, ?> container) {
+		if (this.concurrency != null && container instanceof ConcurrentMessageListenerContainer) {
+			((ConcurrentMessageListenerContainer<?, ?>) container).setConcurrency(this.concurrency);
+		}
+		if (this.pollTimeout != null) {
+			container.setPollTimeout(this.pollTimeout);
+		}
+		if (this.ackMode != null) {
+			container.setAckMode(this.ackMode);
+		}
+		if (this.ackCount != null) {
+			container.setAckCount(this.ackCount);
+		}
+		if (this.ackTime != null) {
+			container.setAckTime(this.ackTime);
+		}
+		if (!this.consumerProperties.isEmpty()) {
+			Map<String, Object> properties = new HashMap<>(container.getConsumerProperties());
+			properties.putAll(this.consumerProperties);
+			container.setConsumerProperties(properties);
+		}
+	}
+
 	private void setupMessageListener(MessageListenerContainer container) {
 		MessageListener<K, V> messageListener = createMessageListener(container);
 		Assert.state(messageListener != null, "Endpoint [" + this + "] must provide a non null message listener");
+		if (this.recordFilterStrategy != null) {
+			messageListener = new FilteringMessageListenerAdapter<>(messageListener, this.recordFilterStrategy,
+					Boolean.TRUE.equals(this.ackDiscarded));
+		}
 		container.setupMessageListener(messageListener);
 	}
 
@@ -22,7 +22,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
@@ -37,6 +42,7 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -53,6 +59,9 @@ import org.springframework.util.StringUtils;
  * If you need to access to a specific message listener container, use
  * {@link #getListenerContainer(String)} with the id of the endpoint.
  *
+ * <p>The containers are started, stopped and destroyed in parallel, using up to
+ * {@link #setLifecycleConcurrency(int) lifecycleConcurrency} threads.
+ *
  * @author Stephane Nicoll
  * @author Juergen Hoeller
  * @author Artem Bilan
@@ -71,6 +80,8 @@ public class KafkaListenerEndpointRegistry implements DisposableBean, SmartLifec
 
 	private int phase = Integer.MAX_VALUE;
 
+	private int lifecycleConcurrency = 10;
+
 	private ConfigurableApplicationContext applicationContext;
 
 
@@ -81,6 +92,16 @@ public class KafkaListenerEndpointRegistry implements DisposableBean, SmartLifec
 		}
 	}
 
+	/**
+	 * Set the maximum number of threads used to start, stop or destroy the containers
+	 * in parallel; 1 to perform these operations sequentially on the calling thread.
+	 * @param lifecycleConcurrency the concurrency; default 10.
+	 */
+	public void setLifecycleConcurrency(int lifecycleConcurrency) {
+		Assert.isTrue(lifecycleConcurrency > 0, "'lifecycleConcurrency' must be greater than 0");
+		this.lifecycleConcurrency = lifecycleConcurrency;
+	}
+
 	/**
 	 * Return the {@link MessageListenerContainer} with the specified id or
 	 * {@code null} if no such container exists.
@@ -200,16 +221,26 @@ public class KafkaListenerEndpointRegistry implements DisposableBean, SmartLifec
 
 	@Override
 	public void destroy() {
+		List<MessageListenerContainer> disposable = new ArrayList<>();
 		for (MessageListenerContainer listenerContainer : getListenerContainers()) {
 			if (listenerContainer instanceof DisposableBean) {
+				disposable.add(listenerContainer);
+			}
+		}
+		invokeInParallel(disposable, new ContainerCallback() {
+
+			@Override
+			public void doWithContainer(MessageListenerContainer listenerContainer) {
 				try {
 					((DisposableBean) listenerContainer).destroy();
 				}
 				catch (Exception ex) {
-					this.logger.warn("Failed to destroy message listener container", ex);
+					KafkaListenerEndpointRegistry.this.logger.warn("Failed to destroy message listener container",
+							ex);
 				}
 			}
-		}
+
+		});
 	}
 
 
@@ -227,27 +258,58 @@ public class KafkaListenerEndpointRegistry implements DisposableBean, SmartLifec
 
 	@Override
 	public void start() {
+		List<MessageListenerContainer> autoStartup = new ArrayList<>();
 		for (MessageListenerContainer listenerContainer : getListenerContainers()) {
 			if (listenerContainer.isAutoStartup()) {
-				startIfNecessary(listenerContainer);
+				autoStartup.add(listenerContainer);
 			}
 		}
+		invokeInParallel(autoStartup, new ContainerCallback() {
+
+			@Override
+			public void doWithContainer(MessageListenerContainer listenerContainer) {
+				startIfNecessary(listenerContainer);
+			}
+
+		});
 	}
 
+	/**
+	 * Stop the containers, returning when they have stopped (or their shutdown timeouts
+	 * have elapsed).
+	 */
 	@Override
 	public void stop() {
-		for (MessageListenerContainer listenerContainer : getListenerContainers()) {
-			listenerContainer.stop();
-		}
+		invokeInParallel(getListenerContainers(), new ContainerCallback() {
+
+			@Override
+			public void doWithContainer(MessageListenerContainer listenerContainer) {
+				listenerContainer.stop();
+			}
+
+		});
 	}
 
+	/**
+	 * Stop the containers; the callback is invoked when all the containers have stopped.
+	 * @param callback the callback.
+	 */
 	@Override
 	public void stop(Runnable callback) {
 		Collection<MessageListenerContainer> listenerContainers = getListenerContainers();
-		AggregatingCallback aggregatingCallback = new AggregatingCallback(listenerContainers.size(), callback);
-		for (MessageListenerContainer listenerContainer : listenerContainers) {
-			listenerContainer.stop(aggregatingCallback);
+		if (listenerContainers.isEmpty()) {
+			callback.run();
+			return;
 		}
+		final AggregatingCallback aggregatingCallback = new AggregatingCallback(listenerContainers.size(), callback);
+		invokeInParallel(listenerContainers, new ContainerCallback() {
+
+			@Override
+			public void doWithContainer(MessageListenerContainer listenerContainer) {
+				listenerContainer.stop(aggregatingCallback);
+			}
+
+		});
 	}
 
 	@Override
@@ -273,6 +335,70 @@ public class KafkaListenerEndpointRegistry implements DisposableBean, SmartLifec
 	}
 
 
+	/**
+	 * Invoke the callback for each container, using up to {@code lifecycleConcurrency}
+	 * threads, and wait for completion. The first exception thrown by the callback (if
+	 * any) is rethrown after all the invocations have completed.
+	 * @param listenerContainers the containers.
+	 * @param callback the callback.
+	 */
+	private void invokeInParallel(Collection<MessageListenerContainer> listenerContainers,
+			final ContainerCallback callback) {
+		if (listenerContainers.size() <= 1 || this.lifecycleConcurrency == 1) {
+			for (MessageListenerContainer listenerContainer : listenerContainers) {
+				callback.doWithContainer(listenerContainer);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(listenerContainers.size(), this.lifecycleConcurrency),
+				new CustomizableThreadFactory("kafka-registry-"));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (final MessageListenerContainer listenerContainer : listenerContainers) {
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						callback.doWithContainer(listenerContainer);
+						return null;
+					}
+
+				}));
+			}
+			RuntimeException failure = null;
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				}
+				catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause() instanceof RuntimeException
+								? (RuntimeException) e.getCause()
+								: new IllegalStateException(e.getCause());
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for containers", e);
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+
+	private interface ContainerCallback {
+
+		void doWithContainer(MessageListenerContainer listenerContainer);
+
+	}
+
 	private static final class AggregatingCallback implements Runnable {
 
 		private final AtomicInteger count;
@@ -21,6 +21,7 @@ import java.lang.reflect.Method;
 import org.springframework.kafka.listener.MessageListenerContainer;
 import org.springframework.kafka.listener.adapter.HandlerAdapter;
 import org.springframework.kafka.listener.adapter.MessagingMessageListenerAdapter;
+import org.springframework.kafka.support.converter.MessageConverter;
 import org.springframework.messaging.handler.annotation.support.MessageHandlerMethodFactory;
 import org.springframework.messaging.handler.invocation.InvocableHandlerMethod;
 import org.springframework.util.Assert;
@@ -44,6 +45,7 @@ public class MethodKafkaListenerEndpoint<K, V> extends AbstractKafkaListenerEndp
 
 	private MessageHandlerMethodFactory messageHandlerMethodFactory;
 
+	private MessageConverter<K, V> messageConverter;
 
 	/**
 	 * Set the object instance that should manage this endpoint.
@@ -87,12 +89,32 @@ public class MethodKafkaListenerEndpoint<K, V> extends AbstractKafkaListenerEndp
 		return this.messageHandlerMethodFactory;
 	}
 
+	/**
+	 * Set the {@link MessageConverter} used to convert records to messages for the
+	 * listener method.
+	 * @param messageConverter the message converter.
+	 */
+	public void setMessageConverter(MessageConverter<K, V> messageConverter) {
+		this.messageConverter = messageConverter;
+	}
+
+	/**
+	 * Return the {@link MessageConverter}.
+	 * @return the message converter, or null to use the default.
+	 */
+	public MessageConverter<K, V> getMessageConverter() {
+		return this.messageConverter;
+	}
+
 	@Override
 	protected MessagingMessageListenerAdapter<K, V> createMessageListener(MessageListenerContainer container) {
 		Assert.state(this.messageHandlerMethodFactory != null,
 				"Could not create message listener - MessageHandlerMethodFactory not set");
 		MessagingMessageListenerAdapter<K, V> messageListener = createMessageListenerInstance();
 		messageListener.setHandlerMethod(configureListenerAdapter(messageListener));
+		if (this.messageConverter != null) {
+			messageListener.setMessageConverter(this.messageConverter);
+		}
 		return messageListener;
 	}
 
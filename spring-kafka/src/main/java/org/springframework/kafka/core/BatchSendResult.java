@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import org.springframework.kafka.support.ProducerListener;
+import org.springframework.kafka.support.ProducerListenerInvokingCallback;
+
+/**
+ * The aggregate result of sending a batch of records with
+ * {@link KafkaOperations#sendAll(java.util.Collection)}.
+ * <p>
+ * Each record is sent with a minimal {@link Callback} holding only its index, which
+ * records the outcome (metadata or exception) for that index; the producer's futures are
+ * not used because they are not necessarily complete when the callbacks are invoked. If
+ * the template has a {@link ProducerListener}, it is invoked for each record when the
+ * last record completes.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class BatchSendResult<K, V> {
+
+	private final List<ProducerRecord<K, V>> records;
+
+	private final AtomicReferenceArray<RecordMetadata> metadata;
+
+	private final AtomicReferenceArray<Exception> exceptions;
+
+	private final CountDownLatch latch;
+
+	private final AtomicInteger completions = new AtomicInteger();
+
+	private final AtomicInteger failures = new AtomicInteger();
+
+	private final ProducerListener<K, V> producerListener;
+
+	BatchSendResult(List<ProducerRecord<K, V>> records, ProducerListener<K, V> producerListener) {
+		this.records = records;
+		this.metadata = new AtomicReferenceArray<>(records.size());
+		this.exceptions = new AtomicReferenceArray<>(records.size());
+		this.latch = new CountDownLatch(records.size() + 1);
+		this.producerListener = producerListener;
+	}
+
+	/**
+	 * Return the callback to pass to the producer for the record.
+	 * @param index the record index.
+	 * @return the callback.
+	 */
+	Callback callbackFor(int index) {
+		return new IndexedCallback(index);
+	}
+
+	/**
+	 * Record that the producer rejected the record when it was sent.
+	 * @param index the record index.
+	 * @param exception the exception.
+	 */
+	void failed(int index, Exception exception) {
+		this.exceptions.set(index, exception);
+		completed(exception);
+	}
+
+	/**
+	 * Record that all the records have been passed to the producer.
+	 */
+	void sendComplete() {
+		countDown();
+	}
+
+	private void completed(Exception exception) {
+		if (exception != null) {
+			this.failures.incrementAndGet();
+		}
+		this.completions.incrementAndGet();
+		countDown();
+	}
+
+	private void countDown() {
+		synchronized (this.latch) {
+			this.latch.countDown();
+			if (this.latch.getCount() > 0) {
+				return;
+			}
+		}
+		if (this.producerListener != null) {
+			invokeListener();
+		}
+	}
+
+	private void invokeListener() {
+		for (int i = 0; i < this.records.size(); i++) {
+			ProducerRecord<K, V> record = this.records.get(i);
+			Exception exception = this.exceptions.get(i);
+			new ProducerListenerInvokingCallback<>(record.topic(), record.partition(), record.key(), record.value(),
+					this.producerListener).onCompletion(exception == null ? getMetadata(i) : null, exception);
+		}
+	}
+
+	/**
+	 * Return the number of records in the batch.
+	 * @return the size.
+	 */
+	public int size() {
+		return this.records.size();
+	}
+
+	/**
+	 * Return true when all the records have completed (successfully or not).
+	 * @return true if done.
+	 */
+	public boolean isDone() {
+		return this.latch.getCount() == 0;
+	}
+
+	/**
+	 * Wait for all the records to complete.
+	 * @param timeout the timeout.
+	 * @param unit the timeout unit.
+	 * @return true if all the records completed, false if the timeout elapsed.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.latch.await(timeout, unit);
+	}
+
+	/**
+	 * Return the number of records that have completed successfully so far.
+	 * @return the count.
+	 */
+	public int getSuccessCount() {
+		return this.completions.get() - this.failures.get();
+	}
+
+	/**
+	 * Return the number of records that have failed so far.
+	 * @return the count.
+	 */
+	public int getFailureCount() {
+		return this.failures.get();
+	}
+
+	/**
+	 * Return the records that have failed so far, with their exceptions, in the order in
+	 * which they were sent.
+	 * @return the failures.
+	 */
+	public Map<ProducerRecord<K, V>, Exception> getFailures() {
+		Map<ProducerRecord<K, V>, Exception> failed = new LinkedHashMap<>();
+		if (this.failures.get() > 0) {
+			for (int i = 0; i < this.records.size(); i++) {
+				Exception exception = this.exceptions.get(i);
+				if (exception != null) {
+					failed.put(this.records.get(i), exception);
+				}
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Return the metadata for a record that has completed successfully.
+	 * @param index the index of the record in the batch.
+	 * @return the metadata, or null if the record has failed or not yet completed.
+	 */
+	public RecordMetadata getMetadata(int index) {
+		return this.metadata.get(index);
+	}
+
+
+	private final class IndexedCallback implements Callback {
+
+		private final int index;
+
+		private IndexedCallback(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void onCompletion(RecordMetadata metadata, Exception exception) {
+			if (exception == null) {
+				BatchSendResult.this.metadata.set(this.index, metadata);
+			}
+			else {
+				BatchSendResult.this.exceptions.set(this.index, exception);
+			}
+			completed(exception);
+		}
+
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import org.springframework.kafka.support.Chunk;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * A {@link KafkaTemplate} that splits values larger than the
+ * {@link #setChunkSize(int) chunkSize} into a sequence of {@link Chunk} records, all sent
+ * to the same partition with the record's key, so that values larger than the producer's
+ * {@code max.request.size} (and the broker's {@code message.max.bytes}) can be sent
+ * without raising those limits. The future of such a send completes when all the chunks
+ * have been sent, with the {@link RecordMetadata} of the final chunk, or fails when any
+ * chunk fails; chunks sent before a failure are discarded by the consumer when it times
+ * out the incomplete value.
+ * <p>
+ * Records sent without a partition are assigned one here: keyed records as the default
+ * partitioner would assign them, others in turn. Consumers must reassemble the values,
+ * for example with a
+ * {@link org.springframework.kafka.listener.adapter.ChunkReassemblingMessageListenerAdapter}.
+ * The {@code sendAll} methods send records without splitting them.
+ *
+ * @author Gary Russell
+ */
+public class ChunkingKafkaTemplate extends KafkaTemplate<byte[], byte[]> {
+
+	private volatile int chunkSize = 512 * 1024;
+
+	/**
+	 * Create an instance using the supplied producer factory.
+	 * @param producerFactory the producer factory.
+	 */
+	public ChunkingKafkaTemplate(ProducerFactory<byte[], byte[]> producerFactory) {
+		super(producerFactory);
+	}
+
+	/**
+	 * Set the size (bytes) above which values are split, and the maximum size of each
+	 * chunk's part of the value; each chunk adds a {@link Chunk#HEADER_SIZE} byte header
+	 * and the key, which must fit in the producer's {@code max.request.size}.
+	 * @param chunkSize the chunk size; default 524288.
+	 */
+	public void setChunkSize(int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "'chunkSize' must be positive");
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	protected ListenableFuture<SendResult<byte[], byte[]>> doSend(
+			final ProducerRecord<byte[], byte[]> producerRecord) {
+		byte[] value = producerRecord.value();
+		if (value == null || value.length <= this.chunkSize) {
+			return super.doSend(producerRecord);
+		}
+		int partition = producerRecord.partition() != null ? producerRecord.partition()
+				: partitionFor(producerRecord.topic(), producerRecord.key());
+		List<byte[]> chunks = Chunk.split(value, this.chunkSize);
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Sending " + value.length + " bytes in " + chunks.size() + " chunks to "
+					+ producerRecord.topic() + "-" + partition);
+		}
+		final SettableListenableFuture<SendResult<byte[], byte[]>> future = new SettableListenableFuture<>();
+		final AtomicInteger remaining = new AtomicInteger(chunks.size());
+		final AtomicReference<RecordMetadata> lastMetadata = new AtomicReference<>();
+		for (int i = 0; i < chunks.size(); i++) {
+			final boolean last = i == chunks.size() - 1;
+			try {
+				super.doSend(new ProducerRecord<>(producerRecord.topic(), partition, producerRecord.key(),
+						chunks.get(i))).addCallback(new ListenableFutureCallback<SendResult<byte[], byte[]>>() {
+
+							@Override
+							public void onSuccess(SendResult<byte[], byte[]> result) {
+								if (last) {
+									lastMetadata.set(result.getRecordMetadata());
+								}
+								if (remaining.decrementAndGet() == 0) {
+									future.set(new SendResult<>(producerRecord, lastMetadata.get()));
+								}
+							}
+
+							@Override
+							public void onFailure(Throwable ex) {
+								future.setException(ex);
+							}
+
+						});
+			}
+			catch (RuntimeException e) {
+				future.setException(e);
+				break;
+			}
+		}
+		return future;
+	}
+
+}
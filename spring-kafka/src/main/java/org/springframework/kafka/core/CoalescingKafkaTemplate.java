@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * A {@link KafkaTemplate} for compacted topics, where only the latest value for each key
+ * matters. Records with a key are held for a short window (or until a number of keys
+ * are held) and only the latest record for each topic, partition and key is sent; the
+ * futures of the superseded records complete with a {@link SendResult} that is
+ * {@link SendResult#isCoalesced() coalesced}. Records without a key are sent
+ * immediately.
+ * <p>
+ * {@link #flush()} sends the held records before flushing the producer. The
+ * {@code sendAll} methods are not coalesced.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class CoalescingKafkaTemplate<K, V> extends KafkaTemplate<K, V> implements DisposableBean {
+
+	private final Map<List<Object>, Held> held = new LinkedHashMap<>();
+
+	private final Object sendMonitor = new Object();
+
+	private volatile long window = 100;
+
+	private volatile int maxHeld = 1000;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private ThreadPoolTaskScheduler defaultScheduler;
+
+	private boolean scheduled;
+
+	/**
+	 * Create an instance using the supplied producer factory.
+	 * @param producerFactory the producer factory.
+	 */
+	public CoalescingKafkaTemplate(ProducerFactory<K, V> producerFactory) {
+		super(producerFactory);
+	}
+
+	/**
+	 * Set the time (ms) for which a record is held, waiting for a later record with the
+	 * same key.
+	 * @param window the window; default 100.
+	 */
+	public void setWindow(long window) {
+		this.window = window;
+	}
+
+	/**
+	 * Set the maximum number of keys for which records are held; when reached, all the
+	 * held records are sent.
+	 * @param maxHeld the maximum; default 1000.
+	 */
+	public void setMaxHeld(int maxHeld) {
+		Assert.isTrue(maxHeld > 0, "'maxHeld' must be positive");
+		this.maxHeld = maxHeld;
+	}
+
+	/**
+	 * Set the scheduler used to send the held records when the window expires; by
+	 * default, a single-threaded scheduler is created.
+	 * @param taskScheduler the scheduler.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	@Override
+	protected ListenableFuture<SendResult<K, V>> doSend(ProducerRecord<K, V> producerRecord) {
+		if (producerRecord.key() == null) {
+			return super.doSend(producerRecord);
+		}
+		List<Object> id = Arrays.<Object>asList(producerRecord.topic(), producerRecord.partition(),
+				producerRecord.key());
+		Held record = new Held(producerRecord);
+		Held superseded;
+		boolean full;
+		boolean schedule = false;
+		synchronized (this.held) {
+			superseded = this.held.put(id, record);
+			full = this.held.size() >= this.maxHeld;
+			if (!full && !this.scheduled) {
+				this.scheduled = true;
+				schedule = true;
+			}
+		}
+		if (superseded != null) {
+			superseded.future.set(new SendResult<>(superseded.record, null, true));
+		}
+		if (full) {
+			sendHeld();
+		}
+		else if (schedule) {
+			obtainScheduler().schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					synchronized (CoalescingKafkaTemplate.this.held) {
+						CoalescingKafkaTemplate.this.scheduled = false;
+					}
+					sendHeld();
+				}
+
+			}, new Date(System.currentTimeMillis() + this.window));
+		}
+		return record.future;
+	}
+
+	/**
+	 * Send the held records. Concurrent calls (for example, when the window expires while
+	 * the maximum number of keys is reached) are serialized, so that a record is never
+	 * sent after a later record with the same key.
+	 */
+	public void sendHeld() {
+		synchronized (this.sendMonitor) {
+			List<Held> records;
+			synchronized (this.held) {
+				records = new ArrayList<>(this.held.values());
+				this.held.clear();
+			}
+			for (final Held record : records) {
+				try {
+					super.doSend(record.record).addCallback(new ListenableFutureCallback<SendResult<K, V>>() {
+
+						@Override
+						public void onSuccess(SendResult<K, V> result) {
+							record.future.set(result);
+						}
+
+						@Override
+						public void onFailure(Throwable ex) {
+							record.future.setException(ex);
+						}
+
+					});
+				}
+				catch (RuntimeException e) {
+					record.future.setException(e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void flush() {
+		sendHeld();
+		super.flush();
+	}
+
+	@Override
+	public void destroy() {
+		sendHeld();
+		synchronized (this.held) {
+			if (this.defaultScheduler != null) {
+				this.defaultScheduler.destroy();
+				this.defaultScheduler = null;
+				this.taskScheduler = null;
+			}
+		}
+	}
+
+	private TaskScheduler obtainScheduler() {
+		TaskScheduler scheduler = this.taskScheduler;
+		if (scheduler == null) {
+			synchronized (this.held) {
+				if (this.taskScheduler == null) {
+					this.defaultScheduler = new ThreadPoolTaskScheduler();
+					this.defaultScheduler.setThreadNamePrefix("kafka-coalescing-");
+					this.defaultScheduler.setDaemon(true);
+					this.defaultScheduler.initialize();
+					this.taskScheduler = this.defaultScheduler;
+				}
+				scheduler = this.taskScheduler;
+			}
+		}
+		return scheduler;
+	}
+
+	private final class Held {
+
+		private final ProducerRecord<K, V> record;
+
+		private final SettableListenableFuture<SendResult<K, V>> future = new SettableListenableFuture<>();
+
+		Held(ProducerRecord<K, V> record) {
+			this.record = record;
+		}
+
+	}
+
+}
@@ -16,6 +16,8 @@
 
 package org.springframework.kafka.core;
 
+import java.util.Map;
+
 import org.apache.kafka.clients.consumer.Consumer;
 
 /**
@@ -30,6 +32,14 @@ public interface ConsumerFactory<K, V> {
 
 	Consumer<K, V> createConsumer();
 
+	/**
+	 * Create a consumer, with the provided properties overriding (or adding to) the
+	 * factory's configuration.
+	 * @param overrides the consumer properties to override; may be empty.
+	 * @return the consumer.
+	 */
+	Consumer<K, V> createConsumer(Map<String, Object> overrides);
+
 	boolean isAutoCommit();
 
 }
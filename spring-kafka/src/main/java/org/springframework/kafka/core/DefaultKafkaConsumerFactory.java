@@ -22,6 +22,7 @@ import java.util.Map;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.Deserializer;
 
 /**
  * The {@link ConsumerFactory} implementation to produce a new {@link Consumer} instance
@@ -37,13 +38,42 @@ public class DefaultKafkaConsumerFactory<K, V> implements ConsumerFactory<K, V>
 
 	private final Map<String, Object> configs;
 
+	private final Deserializer<K> keyDeserializer;
+
+	private final Deserializer<V> valueDeserializer;
+
 	public DefaultKafkaConsumerFactory(Map<String, Object> configs) {
+		this(configs, null, null);
+	}
+
+	/**
+	 * Construct a factory that supplies the provided deserializer instances to each
+	 * consumer instead of having the consumer create them from the configuration; the
+	 * deserializers must therefore be thread-safe and are not configured by the consumer.
+	 * @param configs the consumer configuration.
+	 * @param keyDeserializer the key deserializer; if null, the configured class is used.
+	 * @param valueDeserializer the value deserializer; if null, the configured class is used.
+	 */
+	public DefaultKafkaConsumerFactory(Map<String, Object> configs, Deserializer<K> keyDeserializer,
+			Deserializer<V> valueDeserializer) {
 		this.configs = new HashMap<>(configs);
+		this.keyDeserializer = keyDeserializer;
+		this.valueDeserializer = valueDeserializer;
 	}
 
 	@Override
 	public Consumer<K, V> createConsumer() {
-		return new KafkaConsumer<>(this.configs);
+		return new KafkaConsumer<>(this.configs, this.keyDeserializer, this.valueDeserializer);
+	}
+
+	@Override
+	public Consumer<K, V> createConsumer(Map<String, Object> overrides) {
+		if (overrides == null || overrides.isEmpty()) {
+			return createConsumer();
+		}
+		Map<String, Object> configs = new HashMap<>(this.configs);
+		configs.putAll(overrides);
+		return new KafkaConsumer<>(configs, this.keyDeserializer, this.valueDeserializer);
 	}
 
 	@Override
@@ -16,25 +16,32 @@
 
 package org.springframework.kafka.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.Metric;
 import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.Serializer;
 
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.Lifecycle;
+import org.springframework.util.Assert;
 
 /**
  * The {@link ProducerFactory} implementation for the {@code singleton} shared {@link Producer}
@@ -43,6 +50,10 @@ import org.springframework.context.Lifecycle;
  * The {@link Producer} instance is freed from the external {@link Producer#close()} invocation
  * with the internal wrapper. The real {@link Producer#close()} is called on the target
  * {@link Producer} during the {@link Lifecycle#stop()} or {@link DisposableBean#destroy()}.
+ * <p>
+ * With a {@link #setPoolSize(int) poolSize} greater than one, the shared producer
+ * distributes the records over a pool of {@link KafkaProducer}s, each with its own
+ * buffer and sender thread; see {@link PoolSelection}.
  *
  * @param <K> the key type.
  * @param <V> the value type.
@@ -55,12 +66,56 @@ public class DefaultKafkaProducerFactory<K, V> implements ProducerFactory<K, V>,
 
 	private final Map<String, Object> configs;
 
+	private final Serializer<K> keySerializer;
+
+	private final Serializer<V> valueSerializer;
+
 	private volatile CloseSafeProducer<K, V> producer;
 
 	private volatile boolean running;
 
+	private volatile int poolSize = 1;
+
+	private volatile PoolSelection poolSelection = PoolSelection.KEY;
+
 	public DefaultKafkaProducerFactory(Map<String, Object> configs) {
+		this(configs, null, null);
+	}
+
+	/**
+	 * Construct a factory that supplies the provided serializer instances to the producer
+	 * instead of having the producer create them from the configuration; the serializers
+	 * are not configured by the producer.
+	 * @param configs the producer configuration.
+	 * @param keySerializer the key serializer; if null, the configured class is used.
+	 * @param valueSerializer the value serializer; if null, the configured class is used.
+	 */
+	public DefaultKafkaProducerFactory(Map<String, Object> configs, Serializer<K> keySerializer,
+			Serializer<V> valueSerializer) {
 		this.configs = new HashMap<>(configs);
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+	}
+
+	/**
+	 * Set the number of {@link KafkaProducer}s over which sends are distributed. When the
+	 * {@code client.id} is configured, each producer's id has its index appended.
+	 * Must be set before the producer is created.
+	 * @param poolSize the pool size; default 1.
+	 */
+	public void setPoolSize(int poolSize) {
+		Assert.isTrue(poolSize > 0, "'poolSize' must be greater than 0");
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * Set how a producer is selected from the pool for each record.
+	 * @param poolSelection the selection; default {@link PoolSelection#KEY}.
+	 * @see #setPoolSize(int)
+	 */
+	public void setPoolSelection(PoolSelection poolSelection) {
+		Assert.notNull(poolSelection, "'poolSelection' cannot be null");
+		this.poolSelection = poolSelection;
 	}
 
 	@Override
@@ -100,13 +155,49 @@ public class DefaultKafkaProducerFactory<K, V> implements ProducerFactory<K, V>,
 		if (this.producer == null) {
 			synchronized (this) {
 				if (this.producer == null) {
-					this.producer = new CloseSafeProducer<K, V>(new KafkaProducer<K, V>(this.configs));
+					this.producer = new CloseSafeProducer<K, V>(this.poolSize > 1
+							? createPool()
+							: new KafkaProducer<K, V>(this.configs, this.keySerializer, this.valueSerializer));
 				}
 			}
 		}
 		return this.producer;
 	}
 
+	private Producer<K, V> createPool() {
+		List<Producer<K, V>> producers = new ArrayList<>(this.poolSize);
+		Object clientId = this.configs.get(ProducerConfig.CLIENT_ID_CONFIG);
+		for (int i = 0; i < this.poolSize; i++) {
+			Map<String, Object> configs = this.configs;
+			if (clientId != null) {
+				configs = new HashMap<>(this.configs);
+				configs.put(ProducerConfig.CLIENT_ID_CONFIG, clientId + "-" + i);
+			}
+			producers.add(new KafkaProducer<K, V>(configs, this.keySerializer, this.valueSerializer));
+		}
+		return new PooledProducer<K, V>(producers, this.poolSelection);
+	}
+
+	/**
+	 * How a record's producer is selected from the pool.
+	 */
+	public enum PoolSelection {
+
+		/**
+		 * Select by topic and partition when the record has a partition, otherwise by key;
+		 * records with neither are distributed round robin. The records for a partition
+		 * or a key are always sent by the same producer, preserving their order.
+		 */
+		KEY,
+
+		/**
+		 * Select by the sending thread; the records sent by a thread are always sent by
+		 * the same producer, preserving their order.
+		 */
+		THREAD
+
+	}
+
 	private static class CloseSafeProducer<K, V> implements Producer<K, V> {
 
 		private final Producer<K, V> delegate;
@@ -150,4 +241,93 @@ public class DefaultKafkaProducerFactory<K, V> implements ProducerFactory<K, V>,
 
 	}
 
+	private static final class PooledProducer<K, V> implements Producer<K, V> {
+
+		private final List<Producer<K, V>> producers;
+
+		private final PoolSelection poolSelection;
+
+		private final AtomicInteger next = new AtomicInteger();
+
+		PooledProducer(List<Producer<K, V>> producers, PoolSelection poolSelection) {
+			this.producers = producers;
+			this.poolSelection = poolSelection;
+		}
+
+		@Override
+		public Future<RecordMetadata> send(ProducerRecord<K, V> record) {
+			return select(record).send(record);
+		}
+
+		@Override
+		public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+			return select(record).send(record, callback);
+		}
+
+		private Producer<K, V> select(ProducerRecord<K, V> record) {
+			int hash;
+			if (this.poolSelection.equals(PoolSelection.THREAD)) {
+				hash = (int) Thread.currentThread().getId();
+			}
+			else if (record.partition() != null) {
+				hash = 31 * record.topic().hashCode() + record.partition();
+			}
+			else if (record.key() instanceof byte[]) {
+				hash = Arrays.hashCode((byte[]) record.key());
+			}
+			else if (record.key() != null) {
+				hash = record.key().hashCode();
+			}
+			else {
+				hash = this.next.getAndIncrement();
+			}
+			return this.producers.get((hash & Integer.MAX_VALUE) % this.producers.size());
+		}
+
+		/**
+		 * Flush the producers in turn; records buffered by the later producers continue to
+		 * be sent by their sender threads while the earlier ones are flushed.
+		 */
+		@Override
+		public void flush() {
+			for (Producer<K, V> producer : this.producers) {
+				producer.flush();
+			}
+		}
+
+		@Override
+		public List<PartitionInfo> partitionsFor(String topic) {
+			return this.producers.get(0).partitionsFor(topic);
+		}
+
+		/**
+		 * Return the metrics of all the producers; they are distinguished by the
+		 * {@code client-id} tag.
+		 */
+		@Override
+		public Map<MetricName, ? extends Metric> metrics() {
+			Map<MetricName, Metric> metrics = new LinkedHashMap<>();
+			for (Producer<K, V> producer : this.producers) {
+				metrics.putAll(producer.metrics());
+			}
+			return metrics;
+		}
+
+		@Override
+		public void close() {
+			for (Producer<K, V> producer : this.producers) {
+				producer.close();
+			}
+		}
+
+		@Override
+		public void close(long timeout, TimeUnit unit) {
+			long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+			for (Producer<K, V> producer : this.producers) {
+				producer.close(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			}
+		}
+
+	}
+
 }
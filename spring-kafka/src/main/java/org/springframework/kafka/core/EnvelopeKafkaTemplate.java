@@ -0,0 +1,277 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.support.Envelope;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * A {@link KafkaTemplate} that packs many small logical messages into one
+ * {@link Envelope} record per partition, reducing the per-record overhead in the
+ * producer, broker and consumer. Messages are accumulated for each partition for up to
+ * {@link #setLinger(long) linger} milliseconds, or until the envelope reaches
+ * {@link #setMaxEnvelopeSize(int) maxEnvelopeSize} bytes; the future of each message
+ * completes with the {@link SendResult} of its envelope. Envelopes are sent one at a
+ * time, in the order in which they were completed, so the messages for a partition are
+ * sent in order.
+ * <p>
+ * Messages without a partition are assigned one here, since the envelope is sent to a
+ * single partition: keyed messages as the default partitioner would assign them, others
+ * in turn. Consumers must unpack the envelopes, for example with an
+ * {@link org.springframework.kafka.listener.adapter.EnvelopeUnpackingMessageListenerAdapter}.
+ * The {@code sendAll} methods send records without packing them.
+ *
+ * @author Gary Russell
+ */
+public class EnvelopeKafkaTemplate extends KafkaTemplate<byte[], byte[]> implements DisposableBean {
+
+	private final Map<TopicPartition, Packer> packers = new HashMap<>();
+
+	private final Deque<Packer> sealed = new ArrayDeque<>();
+
+	private final Object sendMonitor = new Object();
+
+	private volatile long linger = 10;
+
+	private volatile int maxEnvelopeSize = 64 * 1024;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private ThreadPoolTaskScheduler defaultScheduler;
+
+	private boolean scheduled;
+
+	/**
+	 * Create an instance using the supplied producer factory.
+	 * @param producerFactory the producer factory.
+	 */
+	public EnvelopeKafkaTemplate(ProducerFactory<byte[], byte[]> producerFactory) {
+		super(producerFactory);
+	}
+
+	/**
+	 * Set the time (ms) for which messages are accumulated before their envelope is sent.
+	 * @param linger the linger; default 10.
+	 */
+	public void setLinger(long linger) {
+		this.linger = linger;
+	}
+
+	/**
+	 * Set the size (bytes) at which an envelope is sent without waiting for the linger
+	 * time; it should be less than the producer's {@code max.request.size}. A message
+	 * that doesn't fit in an envelope on its own is sent in an envelope of its own.
+	 * @param maxEnvelopeSize the size; default 65536.
+	 */
+	public void setMaxEnvelopeSize(int maxEnvelopeSize) {
+		Assert.isTrue(maxEnvelopeSize > 0, "'maxEnvelopeSize' must be positive");
+		this.maxEnvelopeSize = maxEnvelopeSize;
+	}
+
+	/**
+	 * Set the scheduler used to send envelopes when the linger time expires; by default,
+	 * a single-threaded scheduler is created.
+	 * @param taskScheduler the scheduler.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	@Override
+	protected ListenableFuture<SendResult<byte[], byte[]>> doSend(ProducerRecord<byte[], byte[]> producerRecord) {
+		TopicPartition topicPartition = new TopicPartition(producerRecord.topic(),
+				producerRecord.partition() != null ? producerRecord.partition()
+						: partitionFor(producerRecord.topic(), producerRecord.key()));
+		SettableListenableFuture<SendResult<byte[], byte[]>> future = new SettableListenableFuture<>();
+		int size = Envelope.Builder.sizeOf(producerRecord.key(), producerRecord.value());
+		boolean full = false;
+		boolean schedule = false;
+		synchronized (this.packers) {
+			Packer packer = this.packers.get(topicPartition);
+			if (packer != null && packer.builder.getSize() + size > this.maxEnvelopeSize) {
+				this.sealed.add(this.packers.remove(topicPartition));
+				full = true;
+				packer = null;
+			}
+			if (packer == null) {
+				packer = new Packer(topicPartition);
+				this.packers.put(topicPartition, packer);
+			}
+			packer.add(producerRecord, future);
+			if (packer.builder.getSize() >= this.maxEnvelopeSize) {
+				this.sealed.add(this.packers.remove(topicPartition));
+				full = true;
+			}
+			if (!this.packers.isEmpty() && !this.scheduled) {
+				this.scheduled = true;
+				schedule = true;
+			}
+		}
+		if (full) {
+			sendSealed();
+		}
+		if (schedule) {
+			obtainScheduler().schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					synchronized (EnvelopeKafkaTemplate.this.packers) {
+						EnvelopeKafkaTemplate.this.scheduled = false;
+					}
+					sendEnvelopes();
+				}
+
+			}, new Date(System.currentTimeMillis() + this.linger));
+		}
+		return future;
+	}
+
+	/**
+	 * Send the envelopes of all the accumulated messages.
+	 */
+	public void sendEnvelopes() {
+		synchronized (this.packers) {
+			this.sealed.addAll(this.packers.values());
+			this.packers.clear();
+		}
+		sendSealed();
+	}
+
+	// sends the completed envelopes one at a time, in the order in which they were sealed
+	private void sendSealed() {
+		synchronized (this.sendMonitor) {
+			while (true) {
+				Packer packer;
+				synchronized (this.packers) {
+					packer = this.sealed.poll();
+				}
+				if (packer == null) {
+					break;
+				}
+				send(packer);
+			}
+		}
+	}
+
+	private void send(final Packer packer) {
+		try {
+			super.doSend(new ProducerRecord<byte[], byte[]>(packer.topicPartition.topic(),
+					packer.topicPartition.partition(), null, packer.builder.build()))
+				.addCallback(new ListenableFutureCallback<SendResult<byte[], byte[]>>() {
+
+					@Override
+					public void onSuccess(SendResult<byte[], byte[]> result) {
+						for (int i = 0; i < packer.records.size(); i++) {
+							packer.futures.get(i).set(new SendResult<>(packer.records.get(i),
+									result.getRecordMetadata()));
+						}
+					}
+
+					@Override
+					public void onFailure(Throwable ex) {
+						packer.fail(ex);
+					}
+
+				});
+		}
+		catch (RuntimeException e) {
+			packer.fail(e);
+		}
+	}
+
+	@Override
+	public void flush() {
+		sendEnvelopes();
+		super.flush();
+	}
+
+	@Override
+	public void destroy() {
+		sendEnvelopes();
+		synchronized (this.packers) {
+			if (this.defaultScheduler != null) {
+				this.defaultScheduler.destroy();
+				this.defaultScheduler = null;
+				this.taskScheduler = null;
+			}
+		}
+	}
+
+	private TaskScheduler obtainScheduler() {
+		TaskScheduler scheduler = this.taskScheduler;
+		if (scheduler == null) {
+			synchronized (this.packers) {
+				if (this.taskScheduler == null) {
+					this.defaultScheduler = new ThreadPoolTaskScheduler();
+					this.defaultScheduler.setThreadNamePrefix("kafka-envelope-");
+					this.defaultScheduler.setDaemon(true);
+					this.defaultScheduler.initialize();
+					this.taskScheduler = this.defaultScheduler;
+				}
+				scheduler = this.taskScheduler;
+			}
+		}
+		return scheduler;
+	}
+
+	private static final class Packer {
+
+		private final TopicPartition topicPartition;
+
+		private final Envelope.Builder builder = new Envelope.Builder();
+
+		private final List<ProducerRecord<byte[], byte[]>> records = new ArrayList<>();
+
+		private final List<SettableListenableFuture<SendResult<byte[], byte[]>>> futures = new ArrayList<>();
+
+		Packer(TopicPartition topicPartition) {
+			this.topicPartition = topicPartition;
+		}
+
+		void add(ProducerRecord<byte[], byte[]> record, SettableListenableFuture<SendResult<byte[], byte[]>> future) {
+			this.builder.add(record.key(), record.value());
+			this.records.add(record);
+			this.futures.add(future);
+		}
+
+		void fail(Throwable ex) {
+			for (SettableListenableFuture<SendResult<byte[], byte[]>> future : this.futures) {
+				future.setException(ex);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+/**
+ * Thrown (or used to fail the send's future) when a record cannot be sent because the
+ * {@link KafkaTemplate}'s in-flight limit has been reached.
+ *
+ * @author Gary Russell
+ */
+@SuppressWarnings("serial")
+public class InFlightLimitExceededException extends KafkaException {
+
+	public InFlightLimitExceededException(String message) {
+		super(message);
+	}
+
+}
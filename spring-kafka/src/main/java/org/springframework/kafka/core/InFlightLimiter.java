@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+/**
+ * Limits the number of records, and their (estimated) size in bytes, that have been
+ * passed to the producer but not yet acknowledged.
+ * <p>
+ * A record is always admitted when nothing is in flight, so a record larger than the
+ * byte limit doesn't block forever.
+ *
+ * @author Gary Russell
+ */
+final class InFlightLimiter {
+
+	private final int maxRecords;
+
+	private final long maxBytes;
+
+	private int records;
+
+	private long bytes;
+
+	InFlightLimiter(int maxRecords, long maxBytes) {
+		this.maxRecords = maxRecords;
+		this.maxBytes = maxBytes;
+	}
+
+	synchronized boolean tryAcquire(long size) {
+		if (!hasCapacity(size)) {
+			return false;
+		}
+		this.records++;
+		this.bytes += size;
+		return true;
+	}
+
+	synchronized boolean acquire(long size, long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (!hasCapacity(size)) {
+			long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				return false;
+			}
+			wait(wait);
+		}
+		this.records++;
+		this.bytes += size;
+		return true;
+	}
+
+	synchronized void release(long size) {
+		this.records--;
+		this.bytes -= size;
+		notifyAll();
+	}
+
+	synchronized int getRecords() {
+		return this.records;
+	}
+
+	synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	private boolean hasCapacity(long size) {
+		if (this.records == 0) {
+			return true;
+		}
+		return (this.maxRecords <= 0 || this.records < this.maxRecords)
+				&& (this.maxBytes <= 0 || this.bytes + size <= this.maxBytes);
+	}
+
+}
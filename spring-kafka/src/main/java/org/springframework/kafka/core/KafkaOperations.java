@@ -16,11 +16,18 @@
 
 package org.springframework.kafka.core;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+
 /**
  * The basic Kafka operations contract.
  *
@@ -37,43 +44,43 @@ public interface KafkaOperations<K, V> {
 	/**
 	 * Send the data to the default topic with no key or partition.
 	 * @param data The data.
-	 * @return a Future for the {@link RecordMetadata}.
+	 * @return a Future for the {@link SendResult}.
 	 */
-	Future<RecordMetadata> convertAndSend(V data);
+	ListenableFuture<SendResult<K, V>> convertAndSend(V data);
 
 	/**
 	 * Send the data to the default topic with the provided key and no partition.
 	 * @param key the key.
 	 * @param data The data.
-	 * @return a Future for the {@link RecordMetadata}.
+	 * @return a Future for the {@link SendResult}.
 	 */
-	Future<RecordMetadata> convertAndSend(K key, V data);
+	ListenableFuture<SendResult<K, V>> convertAndSend(K key, V data);
 
 	/**
 	 * Send the data to the default topic with the provided key and partition.
 	 * @param partition the partition.
 	 * @param key the key.
 	 * @param data the data.
-	 * @return a Future for the {@link RecordMetadata}.
+	 * @return a Future for the {@link SendResult}.
 	 */
-	Future<RecordMetadata> convertAndSend(int partition, K key, V data);
+	ListenableFuture<SendResult<K, V>> convertAndSend(int partition, K key, V data);
 
 	/**
 	 * Send the data to the provided topic with no key or partition.
 	 * @param topic the topic.
 	 * @param data The data.
-	 * @return a Future for the {@link RecordMetadata}.
+	 * @return a Future for the {@link SendResult}.
 	 */
-	Future<RecordMetadata> convertAndSend(String topic, V data);
+	ListenableFuture<SendResult<K, V>> convertAndSend(String topic, V data);
 
 	/**
 	 * Send the data to the provided topic with the provided key and no partition.
 	 * @param topic the topic.
 	 * @param key the key.
 	 * @param data The data.
-	 * @return a Future for the {@link RecordMetadata}.
+	 * @return a Future for the {@link SendResult}.
 	 */
-	Future<RecordMetadata> convertAndSend(String topic, K key, V data);
+	ListenableFuture<SendResult<K, V>> convertAndSend(String topic, K key, V data);
 
 	/**
 	 * Send the data to the provided topic with the provided key and partition.
@@ -81,9 +88,35 @@ public interface KafkaOperations<K, V> {
 	 * @param partition the partition.
 	 * @param key the key.
 	 * @param data the data.
-	 * @return a Future for the {@link RecordMetadata}.
+	 * @return a Future for the {@link SendResult}.
+	 */
+	ListenableFuture<SendResult<K, V>> convertAndSend(String topic, int partition, K key, V data);
+
+	// Batch methods
+
+	/**
+	 * Send the records; the result completes when all the records have completed.
+	 * @param records the records.
+	 * @return the aggregate result.
+	 */
+	BatchSendResult<K, V> sendAll(Collection<ProducerRecord<K, V>> records);
+
+	/**
+	 * Send each entry to the default topic, with the entry key as the record key and no
+	 * partition; the result completes when all the records have completed.
+	 * @param data the keys and data.
+	 * @return the aggregate result.
+	 */
+	BatchSendResult<K, V> convertAndSendAll(Map<K, V> data);
+
+	/**
+	 * Send each entry to the provided topic, with the entry key as the record key and no
+	 * partition; the result completes when all the records have completed.
+	 * @param topic the topic.
+	 * @param data the keys and data.
+	 * @return the aggregate result.
 	 */
-	Future<RecordMetadata> convertAndSend(String topic, int partition, K key, V data);
+	BatchSendResult<K, V> convertAndSendAll(String topic, Map<K, V> data);
 
 
 	// Sync methods
@@ -159,6 +192,21 @@ public interface KafkaOperations<K, V> {
 	RecordMetadata syncConvertAndSend(String topic, int partition, K key, V data)
 		throws InterruptedException, ExecutionException;
 
+	/**
+	 * Send the record; wait for the result, for up to the timeout. The timeout does not
+	 * apply to a flush of the producer performed by the implementation to send the
+	 * record, which can take longer.
+	 * @param record the record.
+	 * @param timeout the timeout.
+	 * @param unit the timeout unit.
+	 * @return a {@link RecordMetadata}.
+	 * @throws ExecutionException execution exception while awaiting result.
+	 * @throws InterruptedException thread interrupted while awaiting result.
+	 * @throws TimeoutException if the timeout elapsed before the result was received.
+	 */
+	RecordMetadata syncSend(ProducerRecord<K, V> record, long timeout, TimeUnit unit)
+		throws InterruptedException, ExecutionException, TimeoutException;
+
 	/**
 	 * Flush the producer.
 	 */
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * A local, durable outbox for records that a {@link KafkaTemplate} cannot send because
+ * the cluster is unreachable. Records are serialized and appended to a journal of
+ * memory-mapped segment files in a directory; a relay thread replays them, in order,
+ * through a separate producer once the cluster is available again, and deletes each
+ * segment when all its records have been acknowledged.
+ * <p>
+ * While the outbox holds records, the template appends new records to it instead of
+ * sending them. Delivery is at least once, with best-effort ordering: a record is
+ * relayed again if the outbox is restarted before it was acknowledged, and a record
+ * whose send fails is only appended when the producer reports the failure, so records
+ * sent directly in the meantime (before the outbox held any records) can be delivered
+ * before it.
+ * <p>
+ * The relay retries records whose send fails with a {@link RetriableException} (or times
+ * out), replacing its producer after {@link #setRelayFailuresBeforeReset(int) repeated
+ * failures}; a record whose send fails with any other exception (for example, because it
+ * is too large or the topic is not authorized) can never be relayed, so it is logged and
+ * discarded rather than blocking the records behind it.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ * @see KafkaTemplate#setOutbox(KafkaOutbox)
+ */
+public class KafkaOutbox<K, V> implements SmartLifecycle {
+
+	/**
+	 * The default segment size (16Mb).
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	private final Log logger = LogFactory.getLog(this.getClass());
+
+	private final Object lifecycleMonitor = new Object();
+
+	private final Object relayMonitor = new Object();
+
+	private final File directory;
+
+	private final int segmentSize;
+
+	private final ProducerFactory<byte[], byte[]> producerFactory;
+
+	private final Serializer<K> keySerializer;
+
+	private final Serializer<V> valueSerializer;
+
+	private volatile OutboxJournal journal;
+
+	private Executor taskExecutor = new SimpleAsyncTaskExecutor("kafka-outbox-");
+
+	private long relayInterval = 1000;
+
+	private int relayBatchSize = 500;
+
+	private long relayTimeout = 30000;
+
+	private int relayFailuresBeforeReset = 3;
+
+	private boolean force;
+
+	private boolean autoStartup = true;
+
+	private int phase;
+
+	private volatile boolean running;
+
+	private volatile boolean relaying;
+
+	/**
+	 * Construct an instance with the default segment size.
+	 * @param directory the directory for the segment files.
+	 * @param producerFactory the factory for the producer used to relay the records.
+	 * @param keySerializer the serializer for record keys.
+	 * @param valueSerializer the serializer for record values.
+	 */
+	public KafkaOutbox(File directory, ProducerFactory<byte[], byte[]> producerFactory,
+			Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		this(directory, DEFAULT_SEGMENT_SIZE, producerFactory, keySerializer, valueSerializer);
+	}
+
+	/**
+	 * Construct an instance with the provided segment size; a record (serialized) must
+	 * fit in a segment.
+	 * @param directory the directory for the segment files.
+	 * @param segmentSize the segment size.
+	 * @param producerFactory the factory for the producer used to relay the records.
+	 * @param keySerializer the serializer for record keys.
+	 * @param valueSerializer the serializer for record values.
+	 */
+	public KafkaOutbox(File directory, int segmentSize, ProducerFactory<byte[], byte[]> producerFactory,
+			Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		Assert.notNull(directory, "'directory' cannot be null");
+		Assert.notNull(producerFactory, "'producerFactory' cannot be null");
+		Assert.notNull(keySerializer, "'keySerializer' cannot be null");
+		Assert.notNull(valueSerializer, "'valueSerializer' cannot be null");
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.producerFactory = producerFactory;
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+	}
+
+	/**
+	 * Set the executor for the relay thread.
+	 * @param taskExecutor the executor.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		Assert.notNull(taskExecutor, "'taskExecutor' cannot be null");
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set the time (ms) the relay waits before retrying after a failure, and the
+	 * maximum time it waits for new records when the outbox is empty.
+	 * @param relayInterval the interval; default 1000.
+	 */
+	public void setRelayInterval(long relayInterval) {
+		this.relayInterval = relayInterval;
+	}
+
+	/**
+	 * Set the maximum number of records relayed before waiting for their
+	 * acknowledgments.
+	 * @param relayBatchSize the batch size; default 500.
+	 */
+	public void setRelayBatchSize(int relayBatchSize) {
+		Assert.isTrue(relayBatchSize > 0, "'relayBatchSize' must be positive");
+		this.relayBatchSize = relayBatchSize;
+	}
+
+	/**
+	 * Set the time (ms) the relay waits for a batch to be acknowledged before retrying
+	 * the unacknowledged records.
+	 * @param relayTimeout the timeout; default 30000.
+	 */
+	public void setRelayTimeout(long relayTimeout) {
+		this.relayTimeout = relayTimeout;
+	}
+
+	/**
+	 * Set the number of consecutive failed relay attempts after which the relay closes
+	 * its producer and creates a new one.
+	 * @param relayFailuresBeforeReset the number of failures; default 3.
+	 */
+	public void setRelayFailuresBeforeReset(int relayFailuresBeforeReset) {
+		Assert.isTrue(relayFailuresBeforeReset > 0, "'relayFailuresBeforeReset' must be positive");
+		this.relayFailuresBeforeReset = relayFailuresBeforeReset;
+	}
+
+	/**
+	 * Set to true to force each change to the segment files to the storage device, so
+	 * records survive an operating system failure, not just a process failure; this
+	 * adds considerable overhead to each record. Must be set before the outbox is
+	 * started.
+	 * @param force true to force writes; default false.
+	 */
+	public void setForce(boolean force) {
+		this.force = force;
+	}
+
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	@Override
+	public int getPhase() {
+		return this.phase;
+	}
+
+	@Override
+	public final void start() {
+		synchronized (this.lifecycleMonitor) {
+			if (this.running) {
+				return;
+			}
+			this.journal = new OutboxJournal(this.directory, this.segmentSize, this.force);
+			this.running = true;
+			this.relaying = true;
+			this.taskExecutor.execute(new Relay());
+		}
+	}
+
+	@Override
+	public final void stop() {
+		synchronized (this.lifecycleMonitor) {
+			this.running = false;
+			synchronized (this.relayMonitor) {
+				this.relayMonitor.notifyAll();
+				while (this.relaying) {
+					try {
+						this.relayMonitor.wait(this.relayInterval);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			OutboxJournal journal = this.journal;
+			if (journal != null) {
+				journal.close();
+				this.journal = null;
+			}
+		}
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Return true if the outbox holds records that have not yet been acknowledged.
+	 * @return true if the outbox holds records.
+	 */
+	public boolean isBacklogged() {
+		OutboxJournal journal = this.journal;
+		return journal != null && !journal.isEmpty();
+	}
+
+	/**
+	 * Append a record to the outbox.
+	 * @param record the record.
+	 */
+	public void append(ProducerRecord<K, V> record) {
+		OutboxJournal journal = obtainJournal();
+		journal.append(serialize(record));
+		wakeRelay();
+	}
+
+	/**
+	 * Append a record to the outbox if it holds records that have not yet been
+	 * acknowledged, so that the record is relayed after them.
+	 * @param record the record.
+	 * @return true if the record was appended.
+	 */
+	public boolean appendIfBacklogged(ProducerRecord<K, V> record) {
+		OutboxJournal journal = this.journal;
+		if (journal == null) {
+			return false;
+		}
+		synchronized (journal) {
+			if (journal.isEmpty()) {
+				return false;
+			}
+			journal.append(serialize(record));
+		}
+		wakeRelay();
+		return true;
+	}
+
+	private OutboxJournal obtainJournal() {
+		OutboxJournal journal = this.journal;
+		Assert.state(journal != null, "The outbox is not running");
+		return journal;
+	}
+
+	private ProducerRecord<byte[], byte[]> serialize(ProducerRecord<K, V> record) {
+		return new ProducerRecord<>(record.topic(), record.partition(),
+				this.keySerializer.serialize(record.topic(), record.key()),
+				this.valueSerializer.serialize(record.topic(), record.value()));
+	}
+
+	private void wakeRelay() {
+		synchronized (this.relayMonitor) {
+			this.relayMonitor.notifyAll();
+		}
+	}
+
+	private void pause() {
+		synchronized (this.relayMonitor) {
+			if (this.running) {
+				try {
+					this.relayMonitor.wait(this.relayInterval);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					this.running = false;
+				}
+			}
+		}
+	}
+
+	private final class Relay implements Runnable {
+
+		private Producer<byte[], byte[]> producer;
+
+		private int failures;
+
+		@Override
+		public void run() {
+			try {
+				while (KafkaOutbox.this.running) {
+					List<OutboxJournal.Entry> entries = KafkaOutbox.this.journal.read(KafkaOutbox.this.relayBatchSize);
+					if (entries.isEmpty()) {
+						pause();
+					}
+					else if (relay(entries)) {
+						this.failures = 0;
+					}
+					else {
+						KafkaOutbox.this.journal.rewind();
+						if (++this.failures >= KafkaOutbox.this.relayFailuresBeforeReset) {
+							KafkaOutbox.this.logger.warn("Failed to relay outbox records " + this.failures
+									+ " times; replacing the relay producer");
+							closeProducer();
+							this.failures = 0;
+						}
+						pause();
+					}
+				}
+			}
+			finally {
+				closeProducer();
+				synchronized (KafkaOutbox.this.relayMonitor) {
+					KafkaOutbox.this.relaying = false;
+					KafkaOutbox.this.relayMonitor.notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Send the entries and acknowledge those, in order, that were sent successfully or
+		 * failed with a non-retriable exception (and are discarded).
+		 * @param entries the entries.
+		 * @return true if all the entries were acknowledged.
+		 */
+		private boolean relay(List<OutboxJournal.Entry> entries) {
+			List<Future<RecordMetadata>> futures = new ArrayList<>(entries.size());
+			OutboxJournal.Entry acknowledged = null;
+			boolean sent = true;
+			try {
+				if (this.producer == null) {
+					this.producer = KafkaOutbox.this.producerFactory.createProducer();
+				}
+				for (OutboxJournal.Entry entry : entries) {
+					futures.add(this.producer.send(entry.getRecord()));
+				}
+				this.producer.flush();
+				long deadline = System.currentTimeMillis() + KafkaOutbox.this.relayTimeout;
+				for (int i = 0; i < futures.size(); i++) {
+					try {
+						futures.get(i).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+					}
+					catch (ExecutionException e) {
+						if (e.getCause() instanceof RetriableException) {
+							throw e;
+						}
+						ProducerRecord<byte[], byte[]> record = entries.get(i).getRecord();
+						KafkaOutbox.this.logger.error("Discarding an outbox record for " + record.topic() + "-"
+								+ record.partition() + " that cannot be relayed", e.getCause());
+					}
+					acknowledged = entries.get(i);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				KafkaOutbox.this.running = false;
+				sent = false;
+			}
+			catch (ExecutionException | TimeoutException | RuntimeException e) {
+				if (KafkaOutbox.this.logger.isDebugEnabled()) {
+					KafkaOutbox.this.logger.debug("Failed to relay outbox records; will retry", e);
+				}
+				sent = false;
+			}
+			if (acknowledged != null) {
+				KafkaOutbox.this.journal.acknowledge(acknowledged);
+			}
+			return sent;
+		}
+
+		private void closeProducer() {
+			if (this.producer != null) {
+				try {
+					this.producer.close();
+				}
+				catch (RuntimeException e) {
+					KafkaOutbox.this.logger.debug("Failed to close the relay producer", e);
+				}
+				this.producer = null;
+			}
+		}
+
+	}
+
+}
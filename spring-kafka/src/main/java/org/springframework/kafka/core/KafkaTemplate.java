@@ -16,17 +16,36 @@
 
 package org.springframework.kafka.core;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.utils.Utils;
 
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.support.ProducerListener;
 import org.springframework.kafka.support.ProducerListenerInvokingCallback;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
 
 /**
@@ -40,6 +59,8 @@ import org.springframework.kafka.support.ProducerListenerInvokingCallback;
  */
 public class KafkaTemplate<K, V> implements KafkaOperations<K, V> {
 
+	private static final ThreadLocal<Boolean> IN_RELEASING_CALLBACK = new ThreadLocal<>();
+
 	protected final Log logger = LogFactory.getLog(this.getClass()); //NOSONAR
 
 	private final ProducerFactory<K, V> producerFactory;
@@ -50,6 +71,38 @@ public class KafkaTemplate<K, V> implements KafkaOperations<K, V> {
 
 	private volatile ProducerListener<K, V> producerListener;
 
+	private volatile SyncSendMode syncSendMode = SyncSendMode.FLUSH;
+
+	private final AtomicLong syncSends = new AtomicLong();
+
+	private final Object flushMonitor = new Object();
+
+	private boolean flushing;
+
+	private long flushed;
+
+	private volatile int maxInFlightRecords;
+
+	private volatile long maxInFlightBytes;
+
+	private volatile InFlightLimiter inFlightLimiter;
+
+	private volatile BackPressurePolicy backPressurePolicy = BackPressurePolicy.BLOCK;
+
+	private volatile long backPressureTimeout = 60000;
+
+	private volatile KafkaOutbox<K, V> outbox;
+
+	private volatile int orderedRetries;
+
+	private volatile long orderedRetryBackOff = 100;
+
+	private volatile Executor orderedRetryExecutor = new SimpleAsyncTaskExecutor("kafka-template-retry-");
+
+	private volatile OrderedRetrySender<K, V> orderedRetrySender;
+
+	private final AtomicInteger partitionCounter = new AtomicInteger();
+
 	/**
 	 * Create an instance using the supplied producer factory.
 	 * @param producerFactory the producer factory.
@@ -85,109 +138,356 @@ public class KafkaTemplate<K, V> implements KafkaOperations<K, V> {
 		this.producerListener = producerListener;
 	}
 
+	/**
+	 * Set how synchronous sends ensure that their record is sent.
+	 * @param syncSendMode the mode; default {@link SyncSendMode#FLUSH}.
+	 */
+	public void setSyncSendMode(SyncSendMode syncSendMode) {
+		Assert.notNull(syncSendMode, "'syncSendMode' cannot be null");
+		this.syncSendMode = syncSendMode;
+	}
+
+	/**
+	 * Set the maximum number of records that have been sent but not yet acknowledged;
+	 * when reached, further sends are subject to the {@link BackPressurePolicy}.
+	 * Must be set before the template is used.
+	 * @param maxInFlightRecords the limit; default 0 - no limit.
+	 */
+	public void setMaxInFlightRecords(int maxInFlightRecords) {
+		this.maxInFlightRecords = maxInFlightRecords;
+		updateInFlightLimiter();
+	}
+
+	/**
+	 * Set the maximum (estimated) size in bytes of the records that have been sent but
+	 * not yet acknowledged; when reached, further sends are subject to the
+	 * {@link BackPressurePolicy}. Must be set before the template is used.
+	 * @param maxInFlightBytes the limit; default 0 - no limit.
+	 * @see #estimateSize(ProducerRecord)
+	 */
+	public void setMaxInFlightBytes(long maxInFlightBytes) {
+		this.maxInFlightBytes = maxInFlightBytes;
+		updateInFlightLimiter();
+	}
+
+	private void updateInFlightLimiter() {
+		this.inFlightLimiter = this.maxInFlightRecords > 0 || this.maxInFlightBytes > 0
+				? new InFlightLimiter(this.maxInFlightRecords, this.maxInFlightBytes)
+				: null;
+	}
+
+	/**
+	 * Set the policy applied to sends when an in-flight limit has been reached.
+	 * @param backPressurePolicy the policy; default {@link BackPressurePolicy#BLOCK}.
+	 */
+	public void setBackPressurePolicy(BackPressurePolicy backPressurePolicy) {
+		Assert.notNull(backPressurePolicy, "'backPressurePolicy' cannot be null");
+		this.backPressurePolicy = backPressurePolicy;
+	}
+
+	/**
+	 * Set the time (ms) that a send waits for an in-flight slot with
+	 * {@link BackPressurePolicy#BLOCK}; an {@link InFlightLimitExceededException} is
+	 * thrown if none becomes available. Sends from the callback of a previous send never
+	 * wait.
+	 * @param backPressureTimeout the timeout; default 60000.
+	 */
+	public void setBackPressureTimeout(long backPressureTimeout) {
+		this.backPressureTimeout = backPressureTimeout;
+	}
+
+	/**
+	 * Set the number of times a record that fails with a retriable exception is resent
+	 * by the template; later records with the same partition (or, when no partition is
+	 * specified, the same key) that have not yet been sent are held back until it has
+	 * been resent. This allows the producer's
+	 * {@code max.in.flight.requests.per.connection} to be greater than 1 when order
+	 * matters; the producer's own {@code retries} should then be 0. Only records that
+	 * were not yet sent when the failure is reported keep their order: records that were
+	 * already in flight, and succeed, are not held back, so they can be written before
+	 * the failed record. Applies to the {@code send} and
+	 * {@code convertAndSend} methods, not {@code sendAll}. Must be set before the
+	 * template is used.
+	 * @param orderedRetries the number of retries; default 0 - no ordered retries.
+	 */
+	public void setOrderedRetries(int orderedRetries) {
+		this.orderedRetries = orderedRetries;
+	}
+
+	/**
+	 * Set the time (ms) to wait between ordered retries of a record.
+	 * @param orderedRetryBackOff the back off; default 100.
+	 * @see #setOrderedRetries(int)
+	 */
+	public void setOrderedRetryBackOff(long orderedRetryBackOff) {
+		this.orderedRetryBackOff = orderedRetryBackOff;
+	}
+
+	/**
+	 * Set the executor on which failed and held records are resent; records are resent
+	 * one at a time, so a task occupies a thread until its sequence has recovered.
+	 * @param orderedRetryExecutor the executor; default a {@link SimpleAsyncTaskExecutor}.
+	 * @see #setOrderedRetries(int)
+	 */
+	public void setOrderedRetryExecutor(Executor orderedRetryExecutor) {
+		Assert.notNull(orderedRetryExecutor, "'orderedRetryExecutor' cannot be null");
+		this.orderedRetryExecutor = orderedRetryExecutor;
+	}
+
+	/**
+	 * Set a {@link KafkaOutbox} to which records are appended when the producer fails to
+	 * send them with a retriable exception, such as when the cluster cannot be reached
+	 * within the producer's {@code max.block.ms} and {@code request.timeout.ms}; while
+	 * the outbox holds records, further records are appended to it rather than sent.
+	 * Delivery is at least once, with best-effort ordering (see {@link KafkaOutbox}).
+	 * The futures for such records complete with a {@link SendResult} that has no
+	 * {@link RecordMetadata}, and the {@link ProducerListener} is not invoked for them.
+	 * Applies to the {@code send} and {@code convertAndSend} methods, not
+	 * {@code sendAll}.
+	 * @param outbox the outbox.
+	 */
+	public void setOutbox(KafkaOutbox<K, V> outbox) {
+		this.outbox = outbox;
+	}
+
+	/**
+	 * Return the number of records that have been sent but not yet acknowledged; only
+	 * tracked when an in-flight limit is set.
+	 * @return the number of records.
+	 */
+	public int getInFlightRecords() {
+		InFlightLimiter limiter = this.inFlightLimiter;
+		return limiter == null ? 0 : limiter.getRecords();
+	}
+
+	/**
+	 * Return the estimated size of the records that have been sent but not yet
+	 * acknowledged; only tracked when an in-flight limit is set.
+	 * @return the size in bytes.
+	 */
+	public long getInFlightBytes() {
+		InFlightLimiter limiter = this.inFlightLimiter;
+		return limiter == null ? 0 : limiter.getBytes();
+	}
+
 	@Override
-	public Future<RecordMetadata>  convertAndSend(V data) {
+	public ListenableFuture<SendResult<K, V>> convertAndSend(V data) {
 		return convertAndSend(this.defaultTopic, data);
 	}
 
 	@Override
-	public Future<RecordMetadata>  convertAndSend(K key, V data) {
+	public ListenableFuture<SendResult<K, V>> convertAndSend(K key, V data) {
 		return convertAndSend(this.defaultTopic, key, data);
 	}
 
 	@Override
-	public Future<RecordMetadata>  convertAndSend(int partition, K key, V data) {
+	public ListenableFuture<SendResult<K, V>> convertAndSend(int partition, K key, V data) {
 		return convertAndSend(this.defaultTopic, partition, key, data);
 	}
 
 	@Override
-	public Future<RecordMetadata>  convertAndSend(String topic, V data) {
+	public ListenableFuture<SendResult<K, V>> convertAndSend(String topic, V data) {
 		ProducerRecord<K, V> producerRecord = new ProducerRecord<>(topic, data);
 		return doSend(producerRecord);
 	}
 
 	@Override
-	public Future<RecordMetadata>  convertAndSend(String topic, K key, V data) {
+	public ListenableFuture<SendResult<K, V>> convertAndSend(String topic, K key, V data) {
 		ProducerRecord<K, V> producerRecord = new ProducerRecord<>(topic, key, data);
 		return doSend(producerRecord);
 	}
 
 	@Override
-	public Future<RecordMetadata>  convertAndSend(String topic, int partition, K key, V data) {
+	public ListenableFuture<SendResult<K, V>> convertAndSend(String topic, int partition, K key, V data) {
 		ProducerRecord<K, V> producerRecord = new ProducerRecord<>(topic, partition, key, data);
 		return doSend(producerRecord);
 	}
 
+	@Override
+	public BatchSendResult<K, V> sendAll(Collection<ProducerRecord<K, V>> records) {
+		return doSendAll(new ArrayList<>(records));
+	}
+
+	@Override
+	public BatchSendResult<K, V> convertAndSendAll(Map<K, V> data) {
+		return convertAndSendAll(this.defaultTopic, data);
+	}
+
+	@Override
+	public BatchSendResult<K, V> convertAndSendAll(String topic, Map<K, V> data) {
+		List<ProducerRecord<K, V>> records = new ArrayList<>(data.size());
+		for (Entry<K, V> entry : data.entrySet()) {
+			records.add(new ProducerRecord<>(topic, entry.getKey(), entry.getValue()));
+		}
+		return doSendAll(records);
+	}
+
 
 	@Override
 	public RecordMetadata syncConvertAndSend(V data) throws InterruptedException, ExecutionException {
-		Future<RecordMetadata> future = convertAndSend(data);
-		flush();
-		return future.get();
+		return awaitSync(convertAndSend(data));
 	}
 
 	@Override
 	public RecordMetadata syncConvertAndSend(K key, V data) throws InterruptedException, ExecutionException {
-		Future<RecordMetadata> future = convertAndSend(key, data);
-		flush();
-		return future.get();
+		return awaitSync(convertAndSend(key, data));
 	}
 
 	@Override
 	public RecordMetadata syncConvertAndSend(int partition, K key, V data)
 			throws InterruptedException, ExecutionException {
-		Future<RecordMetadata> future = convertAndSend(partition, key, data);
-		flush();
-		return future.get();
+		return awaitSync(convertAndSend(partition, key, data));
 	}
 
 	@Override
 	public RecordMetadata syncConvertAndSend(String topic, V data) throws InterruptedException, ExecutionException {
-		Future<RecordMetadata> future = convertAndSend(topic, data);
-		flush();
-		return future.get();
+		return awaitSync(convertAndSend(topic, data));
 	}
 
 	@Override
 	public RecordMetadata syncConvertAndSend(String topic, K key, V data)
 			throws InterruptedException, ExecutionException {
-		Future<RecordMetadata> future = convertAndSend(topic, key, data);
-		flush();
-		return future.get();
+		return awaitSync(convertAndSend(topic, key, data));
 	}
 
 	@Override
 	public RecordMetadata syncConvertAndSend(String topic, int partition, K key, V data)
 			throws InterruptedException, ExecutionException {
-		Future<RecordMetadata> future = convertAndSend(topic, partition, key, data);
-		flush();
-		return future.get();
+		return awaitSync(convertAndSend(topic, partition, key, data));
+	}
+
+	@Override
+	public RecordMetadata syncSend(ProducerRecord<K, V> record, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		ListenableFuture<SendResult<K, V>> future = doSend(record);
+		long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+		if (!flushForSync(this.syncSends.incrementAndGet(), deadline)) {
+			throw new TimeoutException("Timed out waiting for a flush");
+		}
+		return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)
+				.getRecordMetadata();
+	}
+
+	private RecordMetadata awaitSync(Future<SendResult<K, V>> future)
+			throws InterruptedException, ExecutionException {
+		flushForSync(this.syncSends.incrementAndGet(), 0);
+		return future.get().getRecordMetadata();
 	}
 
 	/**
-	 * Send the producer record.
-	 * @param producerRecord the producer record.
-	 * @return a Future for the {@link RecordMetadata}.
+	 * Flush the producer, if necessary for the {@link SyncSendMode}.
+	 * @param sequence the sequence of the synchronous send, allocated after the record
+	 * was passed to the producer.
+	 * @param deadline the time until which to wait for another thread's flush; 0 to
+	 * wait indefinitely.
+	 * @return false if the deadline passed.
+	 * @throws InterruptedException if the thread is interrupted.
 	 */
-	protected Future<RecordMetadata> doSend(ProducerRecord<K, V> producerRecord) {
-		if (this.producer == null) {
-			synchronized (this) {
-				if (this.producer == null) {
-					this.producer = this.producerFactory.createProducer();
+	private boolean flushForSync(long sequence, long deadline) throws InterruptedException {
+		if (SyncSendMode.FLUSH.equals(this.syncSendMode)) {
+			flush();
+		}
+		else if (SyncSendMode.GROUP_FLUSH.equals(this.syncSendMode)) {
+			long target;
+			synchronized (this.flushMonitor) {
+				while (this.flushing && this.flushed < sequence) {
+					long wait = deadline == 0 ? 0 : deadline - System.currentTimeMillis();
+					if (deadline > 0 && wait <= 0) {
+						return false;
+					}
+					this.flushMonitor.wait(wait);
+				}
+				if (this.flushed >= sequence) {
+					return true;
+				}
+				// lead a flush for all the synchronous sends so far
+				this.flushing = true;
+				target = this.syncSends.get();
+			}
+			boolean flushedOk = false;
+			try {
+				flush();
+				flushedOk = true;
+			}
+			finally {
+				synchronized (this.flushMonitor) {
+					this.flushing = false;
+					if (flushedOk && target > this.flushed) {
+						this.flushed = target;
+					}
+					this.flushMonitor.notifyAll();
 				}
 			}
 		}
+		return true;
+	}
+
+	/**
+	 * Send the producer record.
+	 * @param producerRecord the producer record.
+	 * @return a Future for the {@link SendResult}, completed from the producer's callback.
+	 */
+	protected ListenableFuture<SendResult<K, V>> doSend(final ProducerRecord<K, V> producerRecord) {
+		initProducerIfNecessary();
 		if (this.logger.isTraceEnabled()) {
 			this.logger.trace("Sending: " + producerRecord);
 		}
-		Future<RecordMetadata> future;
-		if (this.producerListener == null) {
-			future = this.producer.send(producerRecord);
+		final SettableListenableFuture<SendResult<K, V>> future = new SettableListenableFuture<>();
+		final KafkaOutbox<K, V> outbox = this.outbox;
+		if (outbox != null && outbox.appendIfBacklogged(producerRecord)) {
+			future.set(new SendResult<>(producerRecord, null));
+			return future;
+		}
+		final InFlightLimiter limiter = this.inFlightLimiter;
+		final long size = limiter == null ? 0 : estimateSize(producerRecord);
+		if (limiter != null && !acquireInFlight(limiter, size)) {
+			future.setException(new InFlightLimitExceededException("In-flight limit reached"));
+			return future;
 		}
-		else {
-			future = this.producer.send(producerRecord,
-					new ProducerListenerInvokingCallback<>(producerRecord.topic(), producerRecord.partition(),
-							producerRecord.key(), producerRecord.value(), this.producerListener));
+		final ProducerListener<K, V> producerListener = this.producerListener;
+		final Callback listenerCallback = producerListener == null ? null
+				: new ProducerListenerInvokingCallback<>(producerRecord.topic(), producerRecord.partition(),
+						producerRecord.key(), producerRecord.value(), producerListener);
+		Callback callback = new Callback() {
+
+			@Override
+			public void onCompletion(RecordMetadata metadata, Exception exception) {
+				if (exception == null) {
+					future.set(new SendResult<>(producerRecord, metadata));
+					if (listenerCallback != null) {
+						listenerCallback.onCompletion(metadata, null);
+					}
+				}
+				else if (outbox != null && exception instanceof RetriableException
+						&& appendToOutbox(outbox, producerRecord)) {
+					future.set(new SendResult<>(producerRecord, null));
+				}
+				else {
+					future.setException(exception);
+					if (listenerCallback != null) {
+						listenerCallback.onCompletion(null, exception);
+					}
+				}
+			}
+
+		};
+		if (limiter != null) {
+			callback = releasing(callback, limiter, size);
+		}
+		try {
+			OrderedRetrySender<K, V> sender = this.orderedRetrySender;
+			if (sender == null) {
+				this.producer.send(producerRecord, callback);
+			}
+			else {
+				sender.send(producerRecord, callback);
+			}
+		}
+		catch (RuntimeException e) {
+			if (limiter != null) {
+				limiter.release(size);
+			}
+			throw e;
 		}
 		if (this.logger.isTraceEnabled()) {
 			this.logger.trace("Sent: " + producerRecord);
@@ -195,9 +495,245 @@ public class KafkaTemplate<K, V> implements KafkaOperations<K, V> {
 		return future;
 	}
 
+	private boolean appendToOutbox(KafkaOutbox<K, V> outbox, ProducerRecord<K, V> producerRecord) {
+		try {
+			outbox.append(producerRecord);
+			return true;
+		}
+		catch (RuntimeException e) {
+			this.logger.error("Failed to append to the outbox: " + producerRecord, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Send the producer records, aggregating the results.
+	 * @param producerRecords the producer records.
+	 * @return the aggregate result.
+	 */
+	protected BatchSendResult<K, V> doSendAll(List<ProducerRecord<K, V>> producerRecords) {
+		initProducerIfNecessary();
+		if (this.logger.isTraceEnabled()) {
+			this.logger.trace("Sending: " + producerRecords.size() + " records");
+		}
+		BatchSendResult<K, V> result = new BatchSendResult<>(producerRecords, this.producerListener);
+		InFlightLimiter limiter = this.inFlightLimiter;
+		for (int i = 0; i < producerRecords.size(); i++) {
+			ProducerRecord<K, V> producerRecord = producerRecords.get(i);
+			try {
+				if (limiter == null) {
+					this.producer.send(producerRecord, result.callbackFor(i));
+				}
+				else {
+					long size = estimateSize(producerRecord);
+					if (acquireInFlight(limiter, size)) {
+						sendReleasing(producerRecord, result.callbackFor(i), limiter, size);
+					}
+					else {
+						result.failed(i, new InFlightLimitExceededException("In-flight limit reached"));
+					}
+				}
+			}
+			catch (Exception e) {
+				result.failed(i, e);
+			}
+		}
+		result.sendComplete();
+		return result;
+	}
+
+	/**
+	 * Estimate the size of a record for the {@link #setMaxInFlightBytes(long)
+	 * maxInFlightBytes} limit, before it is serialized. This implementation counts the
+	 * length of {@code byte[]} and {@link String} keys and values (one byte per
+	 * character); override it for other types.
+	 * @param producerRecord the record.
+	 * @return the estimated size.
+	 */
+	protected long estimateSize(ProducerRecord<K, V> producerRecord) {
+		return sizeOf(producerRecord.key()) + sizeOf(producerRecord.value());
+	}
+
+	private static long sizeOf(Object object) {
+		if (object instanceof byte[]) {
+			return ((byte[]) object).length;
+		}
+		else if (object instanceof String) {
+			return ((String) object).length();
+		}
+		return 0;
+	}
+
+	/**
+	 * Acquire an in-flight slot according to the {@link BackPressurePolicy}.
+	 * @param limiter the limiter.
+	 * @param size the record size.
+	 * @return false if the record must not be sent ({@link BackPressurePolicy#SIGNAL}).
+	 */
+	private boolean acquireInFlight(InFlightLimiter limiter, long size) {
+		if (limiter.tryAcquire(size)) {
+			return true;
+		}
+		switch (this.backPressurePolicy) {
+			case BLOCK:
+				if (IN_RELEASING_CALLBACK.get() != null) {
+					// slots are released by callbacks on this thread; waiting would stall the producer
+					throw new InFlightLimitExceededException("In-flight limit reached; "
+							+ "cannot block on the producer network thread");
+				}
+				try {
+					if (limiter.acquire(size, this.backPressureTimeout)) {
+						return true;
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new KafkaException("Interrupted while waiting for an in-flight slot", e);
+				}
+				throw new InFlightLimitExceededException("Timed out waiting for an in-flight slot");
+			case FAIL:
+				throw new InFlightLimitExceededException("In-flight limit reached");
+			default:
+				return false;
+		}
+	}
+
+	private Future<RecordMetadata> sendReleasing(ProducerRecord<K, V> producerRecord, Callback callback,
+			InFlightLimiter limiter, long size) {
+		try {
+			return this.producer.send(producerRecord, releasing(callback, limiter, size));
+		}
+		catch (RuntimeException e) {
+			limiter.release(size);
+			throw e;
+		}
+	}
+
+	private Callback releasing(final Callback callback, final InFlightLimiter limiter, final long size) {
+		return new Callback() {
+
+			@Override
+			public void onCompletion(RecordMetadata metadata, Exception exception) {
+				limiter.release(size);
+				boolean nested = IN_RELEASING_CALLBACK.get() != null;
+				IN_RELEASING_CALLBACK.set(Boolean.TRUE);
+				try {
+					callback.onCompletion(metadata, exception);
+				}
+				finally {
+					if (!nested) {
+						IN_RELEASING_CALLBACK.remove();
+					}
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Return the partitions of the topic, obtained from the producer.
+	 * @param topic the topic.
+	 * @return the partitions.
+	 */
+	protected List<PartitionInfo> partitionsFor(String topic) {
+		initProducerIfNecessary();
+		return this.producer.partitionsFor(topic);
+	}
+
+	/**
+	 * Return the partition that the default partitioner would assign to a record with
+	 * this (serialized) key; for a null key, the partitions are assigned in turn.
+	 * @param topic the topic.
+	 * @param key the key.
+	 * @return the partition.
+	 */
+	protected int partitionFor(String topic, byte[] key) {
+		int partitions = partitionsFor(topic).size();
+		if (key == null) {
+			return (this.partitionCounter.getAndIncrement() & 0x7fffffff) % partitions;
+		}
+		return (Utils.murmur2(key) & 0x7fffffff) % partitions;
+	}
+
+	private void initProducerIfNecessary() {
+		if (this.producer == null) {
+			synchronized (this) {
+				if (this.producer == null) {
+					Producer<K, V> producer = this.producerFactory.createProducer();
+					if (this.orderedRetries > 0) {
+						this.orderedRetrySender = new OrderedRetrySender<>(producer, this.orderedRetries,
+								this.orderedRetryBackOff, this.orderedRetryExecutor);
+					}
+					this.producer = producer;
+				}
+			}
+		}
+	}
+
 	@Override
 	public void flush() {
 		this.producer.flush();
 	}
 
+	/**
+	 * The action taken when a record is sent while an in-flight limit has been reached.
+	 */
+	public enum BackPressurePolicy {
+
+		/**
+		 * Block the sending thread until a slot is released or the
+		 * {@link KafkaTemplate#setBackPressureTimeout(long) backPressureTimeout} elapses,
+		 * in which case an {@link InFlightLimitExceededException} is thrown. Slots are
+		 * released on the producer's network thread before it invokes the send's callbacks,
+		 * so a send from such a callback (for example, one chained to the result of a
+		 * previous send) cannot block; it fails immediately, as with {@link #FAIL}.
+		 */
+		BLOCK,
+
+		/**
+		 * Throw an {@link InFlightLimitExceededException} immediately.
+		 */
+		FAIL,
+
+		/**
+		 * Don't send the record and don't throw; the future returned by the send
+		 * method is failed with an {@link InFlightLimitExceededException}.
+		 */
+		SIGNAL
+
+	}
+
+	/**
+	 * How synchronous sends ensure that their record is sent without waiting for the
+	 * producer's {@code linger.ms}.
+	 */
+	public enum SyncSendMode {
+
+		/**
+		 * Flush the producer after each send; this sends all the records buffered by the
+		 * producer, including those of other threads. The flush has no timeout, so it is
+		 * not bounded by the timeout of
+		 * {@link KafkaTemplate#syncSend(ProducerRecord, long, TimeUnit) syncSend()}.
+		 */
+		FLUSH,
+
+		/**
+		 * Don't flush; just wait for the record's own future. The record is sent when the
+		 * producer's {@code linger.ms} expires or its batch is full. The only mode in which
+		 * the timeout of {@link KafkaTemplate#syncSend(ProducerRecord, long, TimeUnit)
+		 * syncSend()} is always honored.
+		 */
+		WAIT,
+
+		/**
+		 * Concurrent synchronous sends share flushes: a thread whose record was passed to
+		 * the producer while another thread is flushing waits for that flush to complete,
+		 * then a single thread flushes for all the records sent meanwhile. The timeout of
+		 * {@link KafkaTemplate#syncSend(ProducerRecord, long, TimeUnit) syncSend()} bounds
+		 * the wait for another thread's flush, but not a flush led by the sending thread.
+		 */
+		GROUP_FLUSH
+
+	}
+
 }
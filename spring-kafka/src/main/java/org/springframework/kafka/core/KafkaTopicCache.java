@@ -0,0 +1,461 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.SchedulingAwareRunnable;
+import org.springframework.util.Assert;
+
+/**
+ * A local, read-only view of a (typically compacted) topic, materialized in memory as the
+ * latest value for each key. Records with a null value (tombstones) remove the key.
+ * <p>
+ * When started, all partitions of the topic are assigned (no consumer group management
+ * is used) and read from the beginning, using {@link #setConcurrency(int) concurrency}
+ * consumers in parallel; the cache is {@link #isReady() ready} when each partition has
+ * been read up to the end offset captured at startup. It then continues to apply new
+ * records. Set a {@link #setStartupTimeout(long) startupTimeout} to have {@link #start()}
+ * block until the cache is ready, so that components in later lifecycle phases only
+ * start once the cache is warm; if a reader fails to start (for example, because no
+ * partitions are found for the topic), the cache is stopped and {@link #start()} throws
+ * a {@link KafkaException}. After an error while reading, a reader backs off for the
+ * {@link #setPollTimeout(long) pollTimeout} before polling again.
+ * <p>
+ * The consumer factory should be configured with {@code enable.auto.commit=false}; no
+ * offsets are committed by the cache. Keys must implement {@code equals()} and
+ * {@code hashCode()} based on their value; for example, use a {@code StringDeserializer}
+ * rather than a {@code ByteArrayDeserializer} for keys. Records with a null key cannot be
+ * cached; they are skipped and counted (see {@link #getSkippedRecords()}).
+ * <p>
+ * The values are held in a {@link ConcurrentHashMap} rather than a more compact
+ * (open-addressing) map: the partitions are applied by several consumer threads while
+ * {@link #get(Object)} is called concurrently, and {@code ConcurrentHashMap} provides
+ * lock-free reads with a modest per-entry overhead; the footprint is dominated by the
+ * keys and values themselves.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class KafkaTopicCache<K, V> implements SmartLifecycle, BeanNameAware {
+
+	protected final Log logger = LogFactory.getLog(this.getClass()); //NOSONAR
+
+	private final Object lifecycleMonitor = new Object();
+
+	private final ConsumerFactory<K, V> consumerFactory;
+
+	private final String topic;
+
+	private final Map<K, V> cache = new ConcurrentHashMap<>();
+
+	private final List<CacheReader> readers = new ArrayList<>();
+
+	private final AtomicLong skippedRecords = new AtomicLong();
+
+	private String beanName;
+
+	private int concurrency = 1;
+
+	private long pollTimeout = 1000;
+
+	private long startupTimeout;
+
+	private Executor taskExecutor;
+
+	private boolean autoStartup = true;
+
+	private int phase = 0;
+
+	private volatile CountDownLatch readyLatch = new CountDownLatch(1);
+
+	private volatile Exception failure;
+
+	private volatile boolean running;
+
+	/**
+	 * Construct an instance for the supplied topic.
+	 * @param consumerFactory the consumer factory.
+	 * @param topic the topic.
+	 */
+	public KafkaTopicCache(ConsumerFactory<K, V> consumerFactory, String topic) {
+		Assert.notNull(consumerFactory, "'consumerFactory' cannot be null");
+		Assert.notNull(topic, "'topic' cannot be null");
+		this.consumerFactory = consumerFactory;
+		this.topic = topic;
+	}
+
+	@Override
+	public void setBeanName(String name) {
+		this.beanName = name;
+	}
+
+	/**
+	 * Set the number of consumers used to read the topic; the partitions are distributed
+	 * across them.
+	 * @param concurrency the concurrency; default 1.
+	 */
+	public void setConcurrency(int concurrency) {
+		Assert.isTrue(concurrency > 0, "concurrency must be greater than 0");
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * The max time to block in the consumers waiting for records.
+	 * @param pollTimeout the timeout in ms; default 1000.
+	 */
+	public void setPollTimeout(long pollTimeout) {
+		this.pollTimeout = pollTimeout;
+	}
+
+	/**
+	 * Set the time (ms) that {@link #start()} blocks waiting for the cache to be ready.
+	 * If the cache is not ready in that time, a warning is logged and the cache
+	 * continues to load in the background.
+	 * @param startupTimeout the timeout; default 0 - don't block.
+	 */
+	public void setStartupTimeout(long startupTimeout) {
+		this.startupTimeout = startupTimeout;
+	}
+
+	/**
+	 * Set the executor used to run the consumers; it must provide at least
+	 * {@link #setConcurrency(int) concurrency} threads.
+	 * @param taskExecutor the executor.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	@Override
+	public int getPhase() {
+		return this.phase;
+	}
+
+	/**
+	 * Return the topic.
+	 * @return the topic.
+	 */
+	public String getTopic() {
+		return this.topic;
+	}
+
+	/**
+	 * Return the current value for the key.
+	 * @param key the key.
+	 * @return the value, or null if there is no value for the key.
+	 */
+	public V get(K key) {
+		return this.cache.get(key);
+	}
+
+	/**
+	 * Return true if there is a value for the key.
+	 * @param key the key.
+	 * @return true if present.
+	 */
+	public boolean containsKey(K key) {
+		return this.cache.containsKey(key);
+	}
+
+	/**
+	 * Return the number of keys.
+	 * @return the size.
+	 */
+	public int size() {
+		return this.cache.size();
+	}
+
+	/**
+	 * Return the number of records that were skipped because they had a null key.
+	 * @return the number of skipped records.
+	 */
+	public long getSkippedRecords() {
+		return this.skippedRecords.get();
+	}
+
+	/**
+	 * Return a read-only, live view of the cache.
+	 * @return the map.
+	 */
+	public Map<K, V> asMap() {
+		return Collections.unmodifiableMap(this.cache);
+	}
+
+	/**
+	 * Return true when all partitions have been read up to the end offsets that existed
+	 * when the cache was started.
+	 * @return true if ready.
+	 */
+	public boolean isReady() {
+		return this.readyLatch.getCount() == 0 && this.failure == null;
+	}
+
+	/**
+	 * Wait for the cache to be {@link #isReady() ready}. A {@link KafkaException} is
+	 * thrown if a reader failed to start, for example because no partitions were found
+	 * for the topic.
+	 * @param timeout the timeout.
+	 * @param unit the timeout unit.
+	 * @return true if the cache is ready, false if the time elapsed first.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		boolean ready = this.readyLatch.await(timeout, unit);
+		Exception startFailure = this.failure;
+		if (startFailure != null) {
+			throw new KafkaException("Cache for " + this.topic + " failed to start", startFailure);
+		}
+		return ready;
+	}
+
+	@Override
+	public void start() {
+		synchronized (this.lifecycleMonitor) {
+			if (this.running) {
+				return;
+			}
+			this.running = true;
+			this.cache.clear();
+			this.failure = null;
+			this.readyLatch = new CountDownLatch(this.concurrency);
+			if (this.taskExecutor == null) {
+				this.taskExecutor = new SimpleAsyncTaskExecutor(
+						this.beanName == null ? "kafka-cache-" : (this.beanName + "-kafka-cache-"));
+			}
+			for (int i = 0; i < this.concurrency; i++) {
+				CacheReader reader = new CacheReader(i);
+				this.readers.add(reader);
+				this.taskExecutor.execute(reader);
+			}
+		}
+		if (this.startupTimeout > 0) {
+			try {
+				if (!awaitReady(this.startupTimeout, TimeUnit.MILLISECONDS)) {
+					this.logger.warn("Cache for " + this.topic + " not ready after " + this.startupTimeout
+							+ "ms; continuing to load in the background");
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			catch (KafkaException e) {
+				stop();
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		synchronized (this.lifecycleMonitor) {
+			if (this.running) {
+				this.running = false;
+				for (CacheReader reader : this.readers) {
+					reader.running = false;
+					reader.consumer.wakeup();
+				}
+				this.readers.clear();
+			}
+		}
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	private void apply(ConsumerRecords<K, V> records) {
+		for (ConsumerRecord<K, V> record : records) {
+			if (record.key() == null) {
+				this.skippedRecords.incrementAndGet();
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Skipped record with a null key: " + record);
+				}
+			}
+			else if (record.value() == null) {
+				this.cache.remove(record.key());
+			}
+			else {
+				this.cache.put(record.key(), record.value());
+			}
+		}
+	}
+
+
+	private final class CacheReader implements SchedulingAwareRunnable {
+
+		private final Consumer<K, V> consumer = KafkaTopicCache.this.consumerFactory.createConsumer();
+
+		private final int index;
+
+		private final CountDownLatch readyLatch = KafkaTopicCache.this.readyLatch;
+
+		private volatile boolean running = true;
+
+		private CacheReader(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public boolean isLongLived() {
+			return true;
+		}
+
+		@Override
+		public void run() {
+			try {
+				Map<TopicPartition, Long> endOffsets = assignPartitions();
+				while (this.running) {
+					try {
+						ConsumerRecords<K, V> records = this.consumer.poll(KafkaTopicCache.this.pollTimeout);
+						if (records != null && this.running) {
+							apply(records);
+						}
+						if (!endOffsets.isEmpty()) {
+							checkCaughtUp(endOffsets);
+						}
+					}
+					catch (WakeupException e) {
+						// No-op; the loop exits if stopped
+					}
+					catch (Exception e) {
+						KafkaTopicCache.this.logger.error("Failed to update cache for " + KafkaTopicCache.this.topic, e);
+						backOff();
+					}
+				}
+			}
+			catch (WakeupException e) {
+				// stopped during initialization
+			}
+			catch (Exception e) {
+				KafkaTopicCache.this.logger.error("Cache reader " + this.index + " for " + KafkaTopicCache.this.topic
+						+ " failed to start", e);
+				if (this.running) {
+					KafkaTopicCache.this.failure = e;
+				}
+				while (this.readyLatch.getCount() > 0) {
+					this.readyLatch.countDown();
+				}
+			}
+			finally {
+				this.consumer.close();
+			}
+		}
+
+		private void backOff() {
+			try {
+				Thread.sleep(KafkaTopicCache.this.pollTimeout);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.running = false;
+			}
+		}
+
+		private Map<TopicPartition, Long> assignPartitions() {
+			List<TopicPartition> partitions = new ArrayList<>();
+			List<PartitionInfo> partitionInfos = this.consumer.partitionsFor(KafkaTopicCache.this.topic);
+			Assert.state(partitionInfos != null && !partitionInfos.isEmpty(), "No partitions found for " + KafkaTopicCache.this.topic);
+			for (PartitionInfo partitionInfo : partitionInfos) {
+				if (partitionInfo.partition() % KafkaTopicCache.this.concurrency == this.index) {
+					partitions.add(new TopicPartition(partitionInfo.topic(), partitionInfo.partition()));
+				}
+			}
+			Map<TopicPartition, Long> endOffsets = new HashMap<>();
+			if (partitions.isEmpty()) {
+				this.readyLatch.countDown();
+				return endOffsets;
+			}
+			TopicPartition[] partitionArray = partitions.toArray(new TopicPartition[partitions.size()]);
+			this.consumer.assign(partitions);
+			this.consumer.seekToEnd(partitionArray);
+			for (TopicPartition partition : partitions) {
+				endOffsets.put(partition, this.consumer.position(partition));
+			}
+			this.consumer.seekToBeginning(partitionArray);
+			if (KafkaTopicCache.this.logger.isDebugEnabled()) {
+				KafkaTopicCache.this.logger.debug("Loading " + KafkaTopicCache.this.topic + " up to " + endOffsets);
+			}
+			checkCaughtUp(endOffsets);
+			return endOffsets;
+		}
+
+		private void checkCaughtUp(Map<TopicPartition, Long> endOffsets) {
+			Iterator<Entry<TopicPartition, Long>> iterator = endOffsets.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Entry<TopicPartition, Long> entry = iterator.next();
+				if (this.consumer.position(entry.getKey()) >= entry.getValue()) {
+					iterator.remove();
+				}
+			}
+			if (endOffsets.isEmpty()) {
+				this.readyLatch.countDown();
+				if (KafkaTopicCache.this.logger.isInfoEnabled()) {
+					KafkaTopicCache.this.logger.info("Cache reader " + this.index + " for "
+							+ KafkaTopicCache.this.topic + " is up to date");
+				}
+			}
+		}
+
+	}
+
+}
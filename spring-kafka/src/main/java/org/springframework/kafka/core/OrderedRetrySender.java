@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.RetriableException;
+
+/**
+ * Sends records, retrying those that fail with a retriable exception ahead of later
+ * records of the same sequence that have not yet been sent.
+ * <p>
+ * Records are tracked in sequences: one per explicit partition or, when no partition
+ * is specified, one per key (the partition is not known until the producer's partitioner
+ * has been invoked); records with neither are sent directly. When a record fails, later
+ * records of its sequence are held back; once the sequence has no records in flight,
+ * the failed and held records are resent, in order and one at a time, on a recovery
+ * thread, after which records are again pipelined normally. Records of the sequence
+ * that were already in flight and succeed are not affected. Each resent record waits for
+ * its own result; the producer, which may be shared, is not flushed, so each resend is
+ * subject to the producer's {@code linger.ms}.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+final class OrderedRetrySender<K, V> {
+
+	private final Map<List<Object>, Sequence> sequences = new HashMap<>();
+
+	private final Producer<K, V> producer;
+
+	private final int retries;
+
+	private final long backOff;
+
+	private final Executor executor;
+
+	OrderedRetrySender(Producer<K, V> producer, int retries, long backOff, Executor executor) {
+		this.producer = producer;
+		this.retries = retries;
+		this.backOff = backOff;
+		this.executor = executor;
+	}
+
+	/**
+	 * Send the record, or hold it back if its sequence is recovering from a failure.
+	 * @param record the record.
+	 * @param callback the callback, invoked when the record has been sent or has finally
+	 * failed.
+	 */
+	void send(ProducerRecord<K, V> record, Callback callback) {
+		List<Object> id = sequenceId(record);
+		if (id == null) {
+			this.producer.send(record, callback);
+			return;
+		}
+		Pending pending = new Pending(record, callback);
+		Sequence sequence;
+		synchronized (this.sequences) {
+			sequence = this.sequences.get(id);
+			if (sequence == null) {
+				sequence = new Sequence(id);
+				this.sequences.put(id, sequence);
+			}
+			sequence.pending.add(pending);
+			if (sequence.held) {
+				return;
+			}
+			sequence.inFlight++;
+		}
+		try {
+			this.producer.send(record, new SequenceCallback(sequence, pending));
+		}
+		catch (RuntimeException e) {
+			synchronized (this.sequences) {
+				sequence.inFlight--;
+				sequence.pending.remove(pending);
+				removeIfIdle(sequence);
+			}
+			throw e;
+		}
+	}
+
+	private List<Object> sequenceId(ProducerRecord<K, V> record) {
+		if (record.partition() != null) {
+			return Arrays.<Object>asList(record.topic(), record.partition());
+		}
+		else if (record.key() != null) {
+			return Arrays.<Object>asList(record.topic(), null, record.key());
+		}
+		return null;
+	}
+
+	// must be called while synchronized on the sequences
+	private void removeIfIdle(Sequence sequence) {
+		if (sequence.pending.isEmpty() && !sequence.held) {
+			this.sequences.remove(sequence.id);
+		}
+	}
+
+	private static boolean isRetriable(Exception exception) {
+		return exception instanceof RetriableException;
+	}
+
+	private final class SequenceCallback implements Callback {
+
+		private final Sequence sequence;
+
+		private final Pending pending;
+
+		SequenceCallback(Sequence sequence, Pending pending) {
+			this.sequence = sequence;
+			this.pending = pending;
+		}
+
+		@Override
+		public void onCompletion(RecordMetadata metadata, Exception exception) {
+			boolean recover = false;
+			boolean complete = true;
+			synchronized (OrderedRetrySender.this.sequences) {
+				this.sequence.inFlight--;
+				if (exception != null && isRetriable(exception) && OrderedRetrySender.this.retries > 0) {
+					this.sequence.held = true;
+					complete = false;
+				}
+				else {
+					this.sequence.pending.remove(this.pending);
+				}
+				if (this.sequence.held && this.sequence.inFlight == 0 && !this.sequence.recovering) {
+					this.sequence.recovering = true;
+					recover = true;
+				}
+				removeIfIdle(this.sequence);
+			}
+			if (complete) {
+				this.pending.callback.onCompletion(metadata, exception);
+			}
+			if (recover) {
+				OrderedRetrySender.this.executor.execute(new Recovery(this.sequence));
+			}
+		}
+
+	}
+
+	/**
+	 * Resends the failed and held records of a sequence, in order, one at a time.
+	 */
+	private final class Recovery implements Runnable {
+
+		private final Sequence sequence;
+
+		Recovery(Sequence sequence) {
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Pending pending;
+				synchronized (OrderedRetrySender.this.sequences) {
+					pending = this.sequence.pending.peekFirst();
+					if (pending == null) {
+						this.sequence.held = false;
+						this.sequence.recovering = false;
+						removeIfIdle(this.sequence);
+						return;
+					}
+				}
+				RecordMetadata metadata = null;
+				Exception exception = null;
+				int attempts = 0;
+				do {
+					if (exception != null && !backOff()) {
+						break;
+					}
+					exception = null;
+					try {
+						metadata = OrderedRetrySender.this.producer.send(pending.record).get();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						exception = e;
+						break;
+					}
+					catch (ExecutionException | RuntimeException e) {
+						exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+				}
+				while (exception != null && isRetriable(exception) && ++attempts < OrderedRetrySender.this.retries);
+				synchronized (OrderedRetrySender.this.sequences) {
+					this.sequence.pending.removeFirst();
+				}
+				pending.callback.onCompletion(metadata, exception);
+			}
+		}
+
+		private boolean backOff() {
+			try {
+				Thread.sleep(OrderedRetrySender.this.backOff);
+				return true;
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+	}
+
+	private final class Sequence {
+
+		private final List<Object> id;
+
+		private final LinkedList<Pending> pending = new LinkedList<>();
+
+		private int inFlight;
+
+		private boolean held;
+
+		private boolean recovering;
+
+		Sequence(List<Object> id) {
+			this.id = id;
+		}
+
+	}
+
+	private final class Pending {
+
+		private final ProducerRecord<K, V> record;
+
+		private final Callback callback;
+
+		Pending(ProducerRecord<K, V> record, Callback callback) {
+			this.record = record;
+			this.callback = callback;
+		}
+
+	}
+
+}
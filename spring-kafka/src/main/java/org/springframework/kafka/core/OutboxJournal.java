@@ -0,0 +1,396 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import org.springframework.util.Assert;
+
+/**
+ * A journal of serialized producer records, held in a directory of fixed-size
+ * memory-mapped segment files.
+ * <p>
+ * Each segment has a header containing the position up to which its entries have been
+ * acknowledged, followed by the entries; each entry is a length and a checksum followed by
+ * the record. The length is written last, so an entry torn by a failure is either not
+ * visible or fails the checksum, and is treated as the end of the journal. Segments are
+ * deleted when all their entries have been acknowledged.
+ *
+ * @author Gary Russell
+ */
+final class OutboxJournal implements Closeable {
+
+	private static final int MAGIC = 0x4b4f424a;
+
+	private static final int SEGMENT_HEADER_SIZE = 16; // magic, segment size, acknowledged position, reserved
+
+	private static final int ENTRY_HEADER_SIZE = 8; // length, crc
+
+	private static final String SUFFIX = ".outbox";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final LinkedList<Segment> segments = new LinkedList<>();
+
+	private final File directory;
+
+	private final int segmentSize;
+
+	private final boolean force;
+
+	private long nextSegment;
+
+	private Segment readSegment;
+
+	private int readPosition;
+
+	private boolean closed;
+
+	OutboxJournal(File directory, int segmentSize, boolean force) {
+		Assert.isTrue(segmentSize > SEGMENT_HEADER_SIZE + ENTRY_HEADER_SIZE, "'segmentSize' is too small");
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.force = force;
+		Assert.state(directory.isDirectory() || directory.mkdirs(), "Cannot create outbox directory " + directory);
+		File[] files = directory.listFiles(new FileFilter() {
+
+			@Override
+			public boolean accept(File file) {
+				return file.getName().endsWith(SUFFIX);
+			}
+
+		});
+		Arrays.sort(files);
+		for (File file : files) {
+			Segment segment = new Segment(file, Long.parseLong(file.getName().substring(0,
+					file.getName().length() - SUFFIX.length())));
+			if (segment.isAcknowledged() && files.length > 1) {
+				segment.delete();
+			}
+			else {
+				this.segments.add(segment);
+			}
+			this.nextSegment = segment.id + 1;
+		}
+		rewind();
+	}
+
+	/**
+	 * Append a record.
+	 * @param record the serialized record.
+	 */
+	synchronized void append(ProducerRecord<byte[], byte[]> record) {
+		Assert.state(!this.closed, "The outbox journal is closed");
+		byte[] entry = encode(record);
+		Assert.isTrue(entry.length <= this.segmentSize - SEGMENT_HEADER_SIZE - ENTRY_HEADER_SIZE,
+				"Record is too large for the outbox segment size");
+		Segment segment = this.segments.isEmpty() ? null : this.segments.getLast();
+		if (segment == null || segment.writePosition + ENTRY_HEADER_SIZE + entry.length > this.segmentSize) {
+			segment = new Segment(new File(this.directory, String.format("%020d", this.nextSegment++) + SUFFIX),
+					this.nextSegment - 1);
+			this.segments.add(segment);
+			if (this.readSegment == null) {
+				rewind();
+			}
+		}
+		segment.write(entry);
+	}
+
+	/**
+	 * Read entries that have not yet been read since they were appended, or since the last
+	 * {@link #rewind()}.
+	 * @param max the maximum number of entries.
+	 * @return the entries.
+	 */
+	synchronized List<Entry> read(int max) {
+		List<Entry> entries = new ArrayList<>();
+		while (entries.size() < max && this.readSegment != null) {
+			if (this.readPosition < this.readSegment.writePosition) {
+				ByteBuffer buffer = this.readSegment.buffer.duplicate();
+				buffer.position(this.readPosition);
+				int length = buffer.getInt();
+				buffer.getInt(); // crc
+				byte[] bytes = new byte[length];
+				buffer.get(bytes);
+				this.readPosition = buffer.position();
+				entries.add(new Entry(decode(bytes), this.readSegment, this.readPosition));
+			}
+			else {
+				int index = this.segments.indexOf(this.readSegment);
+				if (index + 1 < this.segments.size()) {
+					this.readSegment = this.segments.get(index + 1);
+					this.readPosition = this.readSegment.acknowledgedPosition();
+				}
+				else {
+					break;
+				}
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Acknowledge all the entries up to and including this one.
+	 * @param entry the entry.
+	 */
+	synchronized void acknowledge(Entry entry) {
+		while (!this.segments.isEmpty() && this.segments.getFirst() != entry.segment) {
+			Segment segment = this.segments.removeFirst();
+			segment.delete();
+		}
+		entry.segment.acknowledge(entry.position);
+		if (this.segments.size() > 1 && entry.segment.isAcknowledged()) {
+			this.segments.removeFirst().delete();
+		}
+		if (!this.segments.contains(this.readSegment)) {
+			rewind();
+		}
+	}
+
+	/**
+	 * Reposition to the first entry that has not been acknowledged.
+	 */
+	synchronized void rewind() {
+		if (this.segments.isEmpty()) {
+			this.readSegment = null;
+			this.readPosition = 0;
+		}
+		else {
+			this.readSegment = this.segments.getFirst();
+			this.readPosition = this.readSegment.acknowledgedPosition();
+		}
+	}
+
+	/**
+	 * Return true if all the entries have been acknowledged.
+	 * @return true if empty.
+	 */
+	synchronized boolean isEmpty() {
+		for (Segment segment : this.segments) {
+			if (!segment.isAcknowledged()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized void close() {
+		for (Segment segment : this.segments) {
+			segment.close();
+		}
+		this.segments.clear();
+		this.readSegment = null;
+		this.closed = true;
+	}
+
+	private static byte[] encode(ProducerRecord<byte[], byte[]> record) {
+		byte[] topic = record.topic().getBytes(UTF_8);
+		byte[] key = record.key();
+		byte[] value = record.value();
+		ByteBuffer buffer = ByteBuffer.allocate(2 + topic.length + 4 + 4 + (key == null ? 0 : key.length) + 4
+				+ (value == null ? 0 : value.length));
+		buffer.putShort((short) topic.length);
+		buffer.put(topic);
+		buffer.putInt(record.partition() == null ? -1 : record.partition());
+		putBytes(buffer, key);
+		putBytes(buffer, value);
+		return buffer.array();
+	}
+
+	private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+		if (bytes == null) {
+			buffer.putInt(-1);
+		}
+		else {
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+	}
+
+	private static ProducerRecord<byte[], byte[]> decode(byte[] entry) {
+		ByteBuffer buffer = ByteBuffer.wrap(entry);
+		byte[] topic = new byte[buffer.getShort()];
+		buffer.get(topic);
+		int partition = buffer.getInt();
+		byte[] key = getBytes(buffer);
+		byte[] value = getBytes(buffer);
+		return new ProducerRecord<>(new String(topic, UTF_8), partition < 0 ? null : partition, key, value);
+	}
+
+	private static byte[] getBytes(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static int checksum(byte[] entry) {
+		CRC32 crc = new CRC32();
+		crc.update(entry);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * A journal entry.
+	 */
+	static final class Entry {
+
+		private final ProducerRecord<byte[], byte[]> record;
+
+		private final Segment segment;
+
+		private final int position;
+
+		Entry(ProducerRecord<byte[], byte[]> record, Segment segment, int position) {
+			this.record = record;
+			this.segment = segment;
+			this.position = position;
+		}
+
+		ProducerRecord<byte[], byte[]> getRecord() {
+			return this.record;
+		}
+
+	}
+
+	private final class Segment {
+
+		private final File file;
+
+		private final long id;
+
+		private final RandomAccessFile randomAccessFile;
+
+		private final MappedByteBuffer buffer;
+
+		private int writePosition;
+
+		Segment(File file, long id) {
+			this.file = file;
+			this.id = id;
+			try {
+				boolean exists = file.length() >= SEGMENT_HEADER_SIZE;
+				this.randomAccessFile = new RandomAccessFile(file, "rw");
+				int size = OutboxJournal.this.segmentSize;
+				if (exists) {
+					Assert.state(this.randomAccessFile.readInt() == MAGIC, file + " is not an outbox segment");
+					size = this.randomAccessFile.readInt();
+				}
+				this.buffer = this.randomAccessFile.getChannel().map(MapMode.READ_WRITE, 0, size);
+				if (exists) {
+					recover();
+				}
+				else {
+					this.buffer.putInt(0, MAGIC);
+					this.buffer.putInt(4, size);
+					this.buffer.putInt(8, SEGMENT_HEADER_SIZE);
+					this.writePosition = SEGMENT_HEADER_SIZE;
+				}
+			}
+			catch (IOException e) {
+				throw new KafkaException("Failed to open outbox segment " + file, e);
+			}
+		}
+
+		private void recover() {
+			int position = SEGMENT_HEADER_SIZE;
+			int capacity = this.buffer.capacity();
+			while (position + ENTRY_HEADER_SIZE <= capacity) {
+				int length = this.buffer.getInt(position);
+				if (length <= 0 || position + ENTRY_HEADER_SIZE + length > capacity) {
+					break;
+				}
+				byte[] entry = new byte[length];
+				ByteBuffer source = this.buffer.duplicate();
+				source.position(position + ENTRY_HEADER_SIZE);
+				source.get(entry);
+				if (checksum(entry) != this.buffer.getInt(position + 4)) {
+					break;
+				}
+				position += ENTRY_HEADER_SIZE + length;
+			}
+			this.writePosition = position;
+			if (acknowledgedPosition() > position) {
+				this.buffer.putInt(8, position);
+			}
+		}
+
+		void write(byte[] entry) {
+			ByteBuffer target = this.buffer.duplicate();
+			target.position(this.writePosition + ENTRY_HEADER_SIZE);
+			target.put(entry);
+			this.buffer.putInt(this.writePosition + 4, checksum(entry));
+			this.buffer.putInt(this.writePosition, entry.length);
+			if (OutboxJournal.this.force) {
+				this.buffer.force();
+			}
+			this.writePosition += ENTRY_HEADER_SIZE + entry.length;
+		}
+
+		int acknowledgedPosition() {
+			return this.buffer.getInt(8);
+		}
+
+		void acknowledge(int position) {
+			this.buffer.putInt(8, position);
+			if (OutboxJournal.this.force) {
+				this.buffer.force();
+			}
+		}
+
+		boolean isAcknowledged() {
+			return acknowledgedPosition() >= this.writePosition;
+		}
+
+		void close() {
+			try {
+				this.randomAccessFile.close();
+			}
+			catch (IOException e) {
+				throw new KafkaException("Failed to close outbox segment " + this.file, e);
+			}
+		}
+
+		void delete() {
+			close();
+			if (!this.file.delete()) {
+				this.file.deleteOnExit();
+			}
+		}
+
+	}
+
+}
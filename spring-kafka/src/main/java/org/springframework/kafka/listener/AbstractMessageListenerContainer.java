@@ -16,11 +16,17 @@
 
 package org.springframework.kafka.listener;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.context.SmartLifecycle;
@@ -87,6 +93,36 @@ public abstract class AbstractMessageListenerContainer<K, V>
 
 	}
 
+	/**
+	 * The handling of the records remaining from the current poll when the container is
+	 * stopped with a {@link AbstractMessageListenerContainer#setDrainTimeout(long)
+	 * drainTimeout}.
+	 */
+	public enum DrainPolicy {
+
+		/**
+		 * Continue to pass the remaining records to the listener until the drain timeout
+		 * has elapsed; records remaining after that are abandoned.
+		 */
+		FINISH,
+
+		/**
+		 * Abandon the remaining records as soon as the listener returns from the current
+		 * record.
+		 */
+		ABANDON
+
+	}
+
+	private static final Runnable NO_OP_CALLBACK = new Runnable() {
+
+		@Override
+		public void run() {
+			// no-op
+		}
+
+	};
+
 	private final Object lifecycleMonitor = new Object();
 
 	private String beanName;
@@ -111,6 +147,23 @@ public abstract class AbstractMessageListenerContainer<K, V>
 
 	private ErrorHandler errorHandler = new LoggingErrorHandler();
 
+	private boolean conflateKeys;
+
+	private long conflationWindow;
+
+	private ConsumerRebalanceListener consumerRebalanceListener;
+
+	private OffsetStore offsetStore;
+
+	private long startupSettleTime;
+
+	private long shutdownTimeout = 10000;
+
+	private long drainTimeout;
+
+	private DrainPolicy drainPolicy = DrainPolicy.FINISH;
+
+	private Map<String, Object> consumerProperties = Collections.emptyMap();
 
 	@Override
 	public void setBeanName(String name) {
@@ -225,6 +278,183 @@ public abstract class AbstractMessageListenerContainer<K, V>
 		return this.ackTime;
 	}
 
+	/**
+	 * Set to true to deliver only the latest record for each key (within each partition)
+	 * of the records returned by a poll or, if a {@link #setConflationWindow(long)
+	 * conflationWindow} is set, received during that window. Intended for listeners
+	 * that only need the current value for a key, such as those consuming compacted
+	 * topics. The offsets of skipped records are committed along with those of the
+	 * delivered records. Records with null keys are always delivered.
+	 * @param conflateKeys true to conflate.
+	 */
+	public void setConflateKeys(boolean conflateKeys) {
+		this.conflateKeys = conflateKeys;
+	}
+
+	/**
+	 * Return true if key conflation is enabled.
+	 * @return true to conflate.
+	 * @see #setConflateKeys(boolean)
+	 */
+	public boolean isConflateKeys() {
+		return this.conflateKeys;
+	}
+
+	/**
+	 * Set the time (ms) over which records from multiple polls are conflated before
+	 * being delivered, when {@link #setConflateKeys(boolean) conflateKeys} is true. Held
+	 * records are not committed until delivered; they are discarded (and will be
+	 * redelivered) if their partitions are revoked or the container is stopped.
+	 * Requires that auto commit is disabled in the consumer configuration.
+	 * @param conflationWindow the window; default 0 - conflate each poll individually.
+	 */
+	public void setConflationWindow(long conflationWindow) {
+		this.conflationWindow = conflationWindow;
+	}
+
+	/**
+	 * Return the conflation window.
+	 * @return the conflation window.
+	 * @see #setConflationWindow(long)
+	 */
+	public long getConflationWindow() {
+		return this.conflationWindow;
+	}
+
+	/**
+	 * Set a user defined {@link ConsumerRebalanceListener}, invoked (on the consumer
+	 * thread) when partitions are assigned to or revoked from the consumer; for example,
+	 * to bind partition-scoped state to the consumer's assignment.
+	 * @param consumerRebalanceListener the listener.
+	 */
+	public void setConsumerRebalanceListener(ConsumerRebalanceListener consumerRebalanceListener) {
+		this.consumerRebalanceListener = consumerRebalanceListener;
+	}
+
+	/**
+	 * Return the user defined {@link ConsumerRebalanceListener}.
+	 * @return the listener, or null.
+	 */
+	public ConsumerRebalanceListener getConsumerRebalanceListener() {
+		return this.consumerRebalanceListener;
+	}
+
+	/**
+	 * Set an {@link OffsetStore}; offsets are then saved to the store instead of being
+	 * committed to Kafka, and consumers are positioned from the store when partitions are
+	 * assigned. Requires that the consumer is not configured for auto commit.
+	 * @param offsetStore the offset store.
+	 */
+	public void setOffsetStore(OffsetStore offsetStore) {
+		this.offsetStore = offsetStore;
+	}
+
+	/**
+	 * Return the {@link OffsetStore}.
+	 * @return the offset store, or null.
+	 */
+	public OffsetStore getOffsetStore() {
+		return this.offsetStore;
+	}
+
+	/**
+	 * Set consumer properties that override (or add to) the consumer factory's
+	 * configuration for the consumers created by this container; for example, to tune
+	 * {@code fetch.min.bytes} or {@code session.timeout.ms} for this listener only.
+	 * @param consumerProperties the properties.
+	 */
+	public void setConsumerProperties(Map<String, Object> consumerProperties) {
+		Assert.notNull(consumerProperties, "'consumerProperties' cannot be null");
+		this.consumerProperties = new HashMap<>(consumerProperties);
+	}
+
+	/**
+	 * Return the consumer property overrides.
+	 * @return the properties; never null.
+	 */
+	public Map<String, Object> getConsumerProperties() {
+		return Collections.unmodifiableMap(this.consumerProperties);
+	}
+
+	/**
+	 * Set the time (ms) for which partition assignments must remain stable after startup
+	 * before records are fetched. Consumers join the group as usual, but pause their
+	 * partitions until no consumer of this container has been rebalanced for this time,
+	 * avoiding the processing (and redelivery) of records from partitions that are
+	 * reassigned while a group of consumers is starting. Only applies when partitions
+	 * are assigned by Kafka.
+	 * @param startupSettleTime the settle time; default 0 - fetch immediately.
+	 */
+	public void setStartupSettleTime(long startupSettleTime) {
+		this.startupSettleTime = startupSettleTime;
+	}
+
+	/**
+	 * Return the startup settle time.
+	 * @return the settle time.
+	 */
+	public long getStartupSettleTime() {
+		return this.startupSettleTime;
+	}
+
+	/**
+	 * Set the time (ms) that {@link #stop()} waits for the consumer(s) to stop.
+	 * @param shutdownTimeout the timeout; default 10000.
+	 */
+	public void setShutdownTimeout(long shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
+	/**
+	 * Return the shutdown timeout.
+	 * @return the timeout.
+	 */
+	public long getShutdownTimeout() {
+		return this.shutdownTimeout;
+	}
+
+	/**
+	 * Set the time (ms) allowed for the consumer to drain when the container is stopped.
+	 * When greater than zero, a stop ends fetching, the records remaining from the
+	 * current poll are handled according to the {@link #setDrainPolicy(DrainPolicy)
+	 * drainPolicy}, the offsets of the records passed to the listener are committed
+	 * synchronously and only then is the consumer closed. Abandoned records are not
+	 * committed and are redelivered after a restart or rebalance. The
+	 * {@link #setShutdownTimeout(long) shutdownTimeout} should allow for the drain time.
+	 * @param drainTimeout the drain timeout; default 0 - no drain; the remaining records
+	 * are delivered and offsets are committed asynchronously before the consumer is
+	 * closed.
+	 */
+	public void setDrainTimeout(long drainTimeout) {
+		this.drainTimeout = drainTimeout;
+	}
+
+	/**
+	 * Return the drain timeout.
+	 * @return the timeout.
+	 */
+	public long getDrainTimeout() {
+		return this.drainTimeout;
+	}
+
+	/**
+	 * Set the policy for the records remaining from the current poll when draining.
+	 * @param drainPolicy the policy; default {@link DrainPolicy#FINISH}.
+	 * @see #setDrainTimeout(long)
+	 */
+	public void setDrainPolicy(DrainPolicy drainPolicy) {
+		Assert.notNull(drainPolicy, "'drainPolicy' cannot be null");
+		this.drainPolicy = drainPolicy;
+	}
+
+	/**
+	 * Return the drain policy.
+	 * @return the policy.
+	 */
+	public DrainPolicy getDrainPolicy() {
+		return this.drainPolicy;
+	}
+
 	@Override
 	public boolean isAutoStartup() {
 		return this.autoStartup;
@@ -243,23 +473,56 @@ public abstract class AbstractMessageListenerContainer<K, V>
 
 	protected abstract void doStart();
 
+	/**
+	 * Stop the container, waiting up to the {@link #setShutdownTimeout(long) shutdown
+	 * timeout} for the consumer(s) to stop.
+	 */
 	@Override
 	public final void stop() {
-		stop(null);
+		final CountDownLatch latch = new CountDownLatch(1);
+		stop(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+
+		});
+		try {
+			if (!latch.await(this.shutdownTimeout, TimeUnit.MILLISECONDS)) {
+				this.logger.warn("Container did not stop within " + this.shutdownTimeout + "ms");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
 
+	/**
+	 * Stop the container; the callback is invoked when the consumer(s) have actually
+	 * stopped, which may be after this method returns.
+	 * @param callback the callback; may be null.
+	 */
 	@Override
 	public void stop(Runnable callback) {
 		synchronized (this.lifecycleMonitor) {
-			doStop();
-		}
-		if (callback != null) {
-			callback.run();
+			doStop(callback == null ? NO_OP_CALLBACK : callback);
 		}
 	}
 
 	protected abstract void doStop();
 
+	/**
+	 * Stop the container and invoke the callback when it has stopped. The default
+	 * implementation invokes {@link #doStop()} then the callback; subclasses with
+	 * asynchronous consumers invoke the callback when the consumers have stopped.
+	 * @param callback the callback.
+	 */
+	protected void doStop(Runnable callback) {
+		doStop();
+		callback.run();
+	}
+
 	protected void setRunning(boolean running) {
 		this.running = running;
 	}
@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.kafka.common.TopicPartition;
@@ -33,7 +34,9 @@ import org.springframework.util.Assert;
  * {@link #setConcurrency(int) concurrency}. If the
  * {@link #ConcurrentMessageListenerContainer(ConsumerFactory, TopicPartition...)}
  * constructor is used, the {@link TopicPartition}s are distributed evenly across the
- * instances.
+ * instances. Otherwise, Kafka assigns the partitions; consider configuring the consumers
+ * with the {@link org.springframework.kafka.support.StickyPartitionAssignor} to
+ * minimize partition movement when the group membership changes.
  *
  * @param <K> the key type.
  * @param <V> the value type.
@@ -57,6 +60,8 @@ public class ConcurrentMessageListenerContainer<K, V> extends AbstractMessageLis
 
 	private int concurrency = 1;
 
+	private volatile long startTime;
+
 	/**
 	 * Construct an instance with the supplied configuration properties and specific
 	 * topics/partitions - when using this constructor, {@link #setRecentOffset(long)
@@ -143,6 +148,25 @@ public class ConcurrentMessageListenerContainer<K, V> extends AbstractMessageLis
 		return Collections.unmodifiableList(this.containers);
 	}
 
+	/**
+	 * Return the time (ms) from starting this container until the first record was
+	 * received by any of its consumers.
+	 * @return the time, or -1 if no record has been received since starting.
+	 */
+	public long getTimeToFirstRecord() {
+		long timeToFirstRecord = -1;
+		for (KafkaMessageListenerContainer<K, V> container : this.containers) {
+			long time = container.getTimeToFirstRecord();
+			if (time >= 0) {
+				time += container.getStartTime() - this.startTime;
+				if (timeToFirstRecord < 0 || time < timeToFirstRecord) {
+					timeToFirstRecord = time;
+				}
+			}
+		}
+		return timeToFirstRecord;
+	}
+
 	/*
 	 * Under lifecycle lock.
 	 */
@@ -156,6 +180,10 @@ public class ConcurrentMessageListenerContainer<K, V> extends AbstractMessageLis
 				this.concurrency = this.partitions.length;
 			}
 			setRunning(true);
+			this.startTime = System.currentTimeMillis();
+			StartupCoordinator coordinator = getStartupSettleTime() > 0
+					? new StartupCoordinator(getStartupSettleTime())
+					: null;
 			for (int i = 0; i < this.concurrency; i++) {
 				KafkaMessageListenerContainer<K, V> container;
 				if (this.partitions == null) {
@@ -170,6 +198,16 @@ public class ConcurrentMessageListenerContainer<K, V> extends AbstractMessageLis
 				container.setAckCount(getAckCount());
 				container.setAckTime(getAckTime());
 				container.setRecentOffset(this.recentOffset);
+				container.setConflateKeys(isConflateKeys());
+				container.setConflationWindow(getConflationWindow());
+				container.setConsumerRebalanceListener(getConsumerRebalanceListener());
+				container.setOffsetStore(getOffsetStore());
+				container.setStartupSettleTime(getStartupSettleTime());
+				container.setDrainTimeout(getDrainTimeout());
+				container.setConsumerProperties(getConsumerProperties());
+				container.setDrainPolicy(getDrainPolicy());
+				container.setShutdownTimeout(getShutdownTimeout());
+				container.setStartupCoordinator(coordinator);
 				container.setAutoStartup(false);
 				container.setMessageListener(getMessageListener());
 				if (getTaskExecutor() != null) {
@@ -178,9 +216,11 @@ public class ConcurrentMessageListenerContainer<K, V> extends AbstractMessageLis
 				if (getBeanName() != null) {
 					container.setBeanName(getBeanName() + "-" + i);
 				}
-				container.start();
 				this.containers.add(container);
 			}
+			for (KafkaMessageListenerContainer<K, V> container : this.containers) {
+				container.start();
+			}
 		}
 	}
 
@@ -212,13 +252,50 @@ public class ConcurrentMessageListenerContainer<K, V> extends AbstractMessageLis
 	 */
 	@Override
 	protected void doStop() {
+		doStop(null);
+	}
+
+	/*
+	 * Under lifecycle lock.
+	 */
+	@Override
+	protected void doStop(Runnable callback) {
 		if (isRunning()) {
 			setRunning(false);
+			Runnable aggregatingCallback = null;
+			if (callback != null) {
+				aggregatingCallback = this.containers.isEmpty()
+						? callback
+						: new AggregatingCallback(this.containers.size(), callback);
+			}
 			for (KafkaMessageListenerContainer<K, V> container : this.containers) {
-				container.stop();
+				container.stop(aggregatingCallback);
 			}
 			this.containers.clear();
 		}
+		else if (callback != null) {
+			callback.run();
+		}
+	}
+
+	private static final class AggregatingCallback implements Runnable {
+
+		private final AtomicInteger count;
+
+		private final Runnable finishCallback;
+
+		private AggregatingCallback(int count, Runnable finishCallback) {
+			this.count = new AtomicInteger(count);
+			this.finishCallback = finishCallback;
+		}
+
+		@Override
+		public void run() {
+			if (this.count.decrementAndGet() == 0) {
+				this.finishCallback.run();
+			}
+		}
+
 	}
 
 }
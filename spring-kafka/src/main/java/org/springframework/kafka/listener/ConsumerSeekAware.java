@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener;
+
+/**
+ * Optional interface for message listeners that need to reposition the consumer; for
+ * example, to replay records after restoring a cache, or to skip records. Typically
+ * combined with {@link PartitionAwareListener}.
+ *
+ * @author Gary Russell
+ */
+public interface ConsumerSeekAware {
+
+	/**
+	 * Register the callback to use to perform seeks; invoked on the consumer thread
+	 * before the first poll. With a concurrent container, it is invoked once for each
+	 * consumer thread (each callback affecting only the partitions assigned to its
+	 * consumer); listeners can, for example, hold the callback in a {@link ThreadLocal}
+	 * for use in the other callbacks.
+	 * @param callback the callback.
+	 */
+	void registerSeekCallback(ConsumerSeekCallback callback);
+
+	/**
+	 * A callback that a listener can invoke to seek to a specific offset.
+	 */
+	interface ConsumerSeekCallback {
+
+		/**
+		 * Queue a seek operation to the consumer. The seek occurs immediately when invoked
+		 * on the consumer thread (e.g. from
+		 * {@link PartitionAwareListener#onPartitionsAssigned(java.util.Collection)}),
+		 * otherwise before the next poll.
+		 * @param topic the topic.
+		 * @param partition the partition.
+		 * @param offset the offset (absolute).
+		 */
+		void seek(String topic, int partition, long offset);
+
+	}
+
+}
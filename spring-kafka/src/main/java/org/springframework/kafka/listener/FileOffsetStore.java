@@ -0,0 +1,282 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import org.apache.kafka.common.TopicPartition;
+
+import org.springframework.kafka.core.KafkaException;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link OffsetStore} that checkpoints positions to a local memory-mapped file, for
+ * consumers with explicitly assigned partitions or a single instance per group, where
+ * the positions must survive restarts without committing to Kafka.
+ * <p>
+ * The file contains two slots, each holding a complete checkpoint with a sequence number
+ * and checksum; saves alternate between the slots so that a torn write can never
+ * corrupt the previous checkpoint. On startup, the valid checkpoint with the highest
+ * sequence number is loaded. Each partition's position has a fixed place in the
+ * checkpoint, so a save only writes the positions that changed since the slot was last
+ * written (and the slot header).
+ * <p>
+ * By default, writing the changes to the storage device is left to the operating system,
+ * so checkpoints survive a process failure but not necessarily an operating system
+ * failure; set {@link #setForce(boolean) force} to true to force each save to the
+ * device, at a considerable cost in throughput.
+ *
+ * @author Gary Russell
+ */
+public class FileOffsetStore implements OffsetStore, Closeable {
+
+	private static final int MAGIC = 0x4b4f4653;
+
+	private static final int FILE_HEADER_SIZE = 8; // magic, slot size
+
+	private static final int SLOT_HEADER_SIZE = 16; // sequence, length, crc
+
+	private static final int DEFAULT_SLOT_SIZE = 512 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Map<TopicPartition, Long> positions = new HashMap<>();
+
+	private final Map<TopicPartition, Integer> entryOffsets = new HashMap<>();
+
+	private final BitSet[] dirty = { new BitSet(), new BitSet() };
+
+	private final boolean[] rewrite = { true, true };
+
+	private final CRC32 crc = new CRC32();
+
+	private final ByteBuffer sequenceBytes = ByteBuffer.allocate(8);
+
+	private final File file;
+
+	private final RandomAccessFile randomAccessFile;
+
+	private final MappedByteBuffer buffer;
+
+	private final int slotSize;
+
+	private final ByteBuffer payload;
+
+	private int length = 4;
+
+	private long sequence;
+
+	private volatile boolean force;
+
+	/**
+	 * Create a store using the file, with 512KB per checkpoint.
+	 * @param file the file; created if necessary.
+	 */
+	public FileOffsetStore(File file) {
+		this(file, DEFAULT_SLOT_SIZE);
+	}
+
+	/**
+	 * Create a store using the file. The slot size is ignored if the file already exists.
+	 * @param file the file; created if necessary.
+	 * @param slotSize the maximum size of a checkpoint; a partition position requires
+	 * 14 bytes plus the length of the topic name.
+	 */
+	public FileOffsetStore(File file, int slotSize) {
+		Assert.notNull(file, "'file' cannot be null");
+		Assert.isTrue(slotSize > SLOT_HEADER_SIZE + 4, "'slotSize' is too small");
+		this.file = file;
+		try {
+			this.randomAccessFile = new RandomAccessFile(file, "rw");
+			boolean exists = this.randomAccessFile.length() >= FILE_HEADER_SIZE;
+			if (exists) {
+				Assert.state(this.randomAccessFile.readInt() == MAGIC, file + " is not an offset store");
+				slotSize = this.randomAccessFile.readInt();
+			}
+			this.slotSize = slotSize;
+			this.payload = ByteBuffer.allocate(slotSize - SLOT_HEADER_SIZE);
+			this.buffer = this.randomAccessFile.getChannel().map(MapMode.READ_WRITE, 0,
+					FILE_HEADER_SIZE + 2L * slotSize);
+			if (exists) {
+				load();
+			}
+			else {
+				this.buffer.putInt(0, MAGIC);
+				this.buffer.putInt(4, slotSize);
+			}
+		}
+		catch (IOException e) {
+			throw new KafkaException("Failed to open offset store " + file, e);
+		}
+	}
+
+	/**
+	 * Set to true to force changes to the storage device on each save.
+	 * @param force true to force; default false.
+	 */
+	public void setForce(boolean force) {
+		this.force = force;
+	}
+
+	@Override
+	public synchronized Map<TopicPartition, Long> load(Collection<TopicPartition> partitions) {
+		Map<TopicPartition, Long> loaded = new HashMap<>();
+		for (TopicPartition partition : partitions) {
+			Long position = this.positions.get(partition);
+			if (position != null) {
+				loaded.put(partition, position);
+			}
+		}
+		return loaded;
+	}
+
+	@Override
+	public synchronized void save(Map<TopicPartition, Long> positions) {
+		int required = this.length;
+		for (TopicPartition partition : positions.keySet()) {
+			if (!this.entryOffsets.containsKey(partition)) {
+				required += 14 + partition.topic().getBytes(UTF_8).length;
+			}
+		}
+		if (required > this.payload.capacity()) {
+			throw new KafkaException("Offset store " + this.file + " is too small for "
+					+ (this.entryOffsets.size() + positions.size()) + " partitions");
+		}
+		for (Entry<TopicPartition, Long> entry : positions.entrySet()) {
+			Integer offset = this.entryOffsets.get(entry.getKey());
+			if (offset == null) {
+				append(entry.getKey(), entry.getValue());
+			}
+			else if (this.payload.getLong(offset) != entry.getValue()) {
+				this.payload.putLong(offset, entry.getValue());
+				this.dirty[0].set(offset);
+				this.dirty[1].set(offset);
+			}
+			this.positions.put(entry.getKey(), entry.getValue());
+		}
+		long nextSequence = this.sequence + 1;
+		int slot = (int) (nextSequence % 2);
+		int offset = slotOffset(nextSequence) + SLOT_HEADER_SIZE;
+		if (this.rewrite[slot]) {
+			ByteBuffer source = this.payload.duplicate();
+			source.position(0).limit(this.length);
+			ByteBuffer target = this.buffer.duplicate();
+			target.position(offset);
+			target.put(source);
+			this.rewrite[slot] = false;
+		}
+		else {
+			BitSet changed = this.dirty[slot];
+			for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+				this.buffer.putLong(offset + i, this.payload.getLong(i));
+			}
+		}
+		this.dirty[slot].clear();
+		offset -= SLOT_HEADER_SIZE;
+		this.buffer.putInt(offset + 12, (int) checksum(nextSequence, this.payload.array(), this.length));
+		this.buffer.putInt(offset + 8, this.length);
+		this.buffer.putLong(offset, nextSequence);
+		if (this.force) {
+			this.buffer.force();
+		}
+		this.sequence = nextSequence;
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			this.randomAccessFile.close();
+		}
+		catch (IOException e) {
+			throw new KafkaException("Failed to close offset store " + this.file, e);
+		}
+	}
+
+	private void load() {
+		byte[] best = null;
+		for (int slot = 0; slot < 2; slot++) {
+			int offset = FILE_HEADER_SIZE + slot * this.slotSize;
+			long slotSequence = this.buffer.getLong(offset);
+			int length = this.buffer.getInt(offset + 8);
+			if (slotSequence <= this.sequence || length < 4 || length > this.slotSize - SLOT_HEADER_SIZE
+					|| slotOffset(slotSequence) != offset) {
+				continue;
+			}
+			byte[] payload = new byte[length];
+			ByteBuffer source = this.buffer.duplicate();
+			source.position(offset + SLOT_HEADER_SIZE);
+			source.get(payload);
+			if ((int) checksum(slotSequence, payload, length) == this.buffer.getInt(offset + 12)) {
+				best = payload;
+				this.sequence = slotSequence;
+			}
+		}
+		if (best != null) {
+			ByteBuffer payload = ByteBuffer.wrap(best);
+			int count = payload.getInt();
+			for (int i = 0; i < count; i++) {
+				byte[] topic = new byte[payload.getShort()];
+				payload.get(topic);
+				TopicPartition partition = new TopicPartition(new String(topic, UTF_8), payload.getInt());
+				this.entryOffsets.put(partition, payload.position());
+				this.positions.put(partition, payload.getLong());
+			}
+			this.payload.put(best);
+			this.length = best.length;
+		}
+	}
+
+	// adds an entry at the end of the payload; both slots then need to be rewritten
+	private void append(TopicPartition partition, long position) {
+		byte[] topic = partition.topic().getBytes(UTF_8);
+		this.payload.position(this.length);
+		this.payload.putShort((short) topic.length);
+		this.payload.put(topic);
+		this.payload.putInt(partition.partition());
+		this.entryOffsets.put(partition, this.payload.position());
+		this.payload.putLong(position);
+		this.length = this.payload.position();
+		this.payload.putInt(0, this.entryOffsets.size());
+		this.rewrite[0] = true;
+		this.rewrite[1] = true;
+	}
+
+	private int slotOffset(long sequence) {
+		return FILE_HEADER_SIZE + (int) (sequence % 2) * this.slotSize;
+	}
+
+	private long checksum(long sequence, byte[] payload, int length) {
+		this.crc.reset();
+		this.crc.update(this.sequenceBytes.putLong(0, sequence).array());
+		this.crc.update(payload, 0, length);
+		return this.crc.getValue();
+	}
+
+}
@@ -16,22 +16,28 @@
 
 package org.springframework.kafka.listener;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.regex.Pattern;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
@@ -75,6 +81,18 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 
 	private AcknowledgingMessageListener<K, V> acknowledgingMessageListener;
 
+	private PartitionAwareListener partitionAwareListener;
+
+	private ConsumerSeekAware consumerSeekAware;
+
+	private StartupCoordinator startupCoordinator;
+
+	private volatile long startTime;
+
+	private volatile long timeToFirstRecord = -1;
+
+	private volatile long stopRequested;
+
 	/**
 	 * Construct an instance with the supplied configuration properties and specific
 	 * topics/partitions - when using this constructor, {@link #setRecentOffset(long)
@@ -135,6 +153,32 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 		this.recentOffset = recentOffset;
 	}
 
+	/**
+	 * Set the coordinator shared by the consumers of a concurrent container.
+	 * @param startupCoordinator the coordinator.
+	 */
+	void setStartupCoordinator(StartupCoordinator startupCoordinator) {
+		this.startupCoordinator = startupCoordinator;
+	}
+
+	/**
+	 * Return the time this container was last started.
+	 * @return the start time.
+	 */
+	long getStartTime() {
+		return this.startTime;
+	}
+
+	/**
+	 * Return the time (ms) from starting this container until the first record was
+	 * received; this includes the time taken to join the group and, if configured, the
+	 * {@link #setStartupSettleTime(long) startup settle time}.
+	 * @return the time, or -1 if no record has been received since starting.
+	 */
+	public long getTimeToFirstRecord() {
+		return this.timeToFirstRecord;
+	}
+
 	/**
 	 * Return the {@link TopicPartition}s currently assigned to this container,
 	 * either explicitly or by Kafka; may be null if not assigned yet.
@@ -160,6 +204,8 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 			return;
 		}
 		setRunning(true);
+		this.startTime = System.currentTimeMillis();
+		this.timeToFirstRecord = -1;
 		Object messageListener = getMessageListener();
 		Assert.state(messageListener != null, "A MessageListener is required");
 		if (messageListener instanceof AcknowledgingMessageListener) {
@@ -172,25 +218,47 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 			throw new IllegalStateException("messageListener must be 'MessageListener' "
 					+ "or 'AcknowledgingMessageListener', not " + messageListener.getClass().getName());
 		}
+		this.partitionAwareListener = messageListener instanceof PartitionAwareListener
+				? (PartitionAwareListener) messageListener
+				: null;
+		this.consumerSeekAware = messageListener instanceof ConsumerSeekAware
+				? (ConsumerSeekAware) messageListener
+				: null;
 		if (getTaskExecutor() == null) {
 			setTaskExecutor(
 					new SimpleAsyncTaskExecutor(getBeanName() == null ? "kafka-" : (getBeanName() + "-kafka-")));
 		}
+		StartupCoordinator coordinator = this.startupCoordinator;
+		if (coordinator == null && getStartupSettleTime() > 0) {
+			coordinator = new StartupCoordinator(getStartupSettleTime());
+		}
 		this.listenerConsumer = new ListenerConsumer(this.listener, this.acknowledgingMessageListener,
-				this.recentOffset);
+				this.recentOffset, coordinator);
 		getTaskExecutor().execute(this.listenerConsumer);
 	}
 
 	@Override
 	protected void doStop() {
 		if (isRunning()) {
+			this.stopRequested = System.currentTimeMillis();
 			setRunning(false);
 			this.listenerConsumer.consumer.wakeup();
 		}
 	}
 
+	@Override
+	protected void doStop(Runnable callback) {
+		if (this.listenerConsumer != null) {
+			this.listenerConsumer.addStopCallback(callback);
+			doStop();
+		}
+		else {
+			callback.run();
+		}
+	}
+
 
-	private class ListenerConsumer implements SchedulingAwareRunnable {
+	private class ListenerConsumer implements SchedulingAwareRunnable, ConsumerSeekAware.ConsumerSeekCallback {
 
 		private final Log logger = LogFactory.getLog(ListenerConsumer.class);
 
@@ -206,9 +274,40 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 
 		private final AcknowledgingMessageListener<K, V> acknowledgingMessageListener;
 
+		private final PartitionAwareListener partitionAwareListener =
+				KafkaMessageListenerContainer.this.partitionAwareListener;
+
+		private final ConsumerSeekAware consumerSeekAware = KafkaMessageListenerContainer.this.consumerSeekAware;
+
+		private final BlockingQueue<TopicPartitionOffset> seeks = new LinkedBlockingQueue<>();
+
+		private final StartupCoordinator startupCoordinator;
+
+		private final List<Runnable> stopCallbacks = new ArrayList<>();
+
+		private boolean stopped;
+
+		private boolean settled;
+
+		private final long drainTimeout = getDrainTimeout();
+
+		private final DrainPolicy drainPolicy = getDrainPolicy();
+
 		private final long recentOffset;
 
-		private final boolean autoCommit = KafkaMessageListenerContainer.this.consumerFactory.isAutoCommit();
+		private final Map<String, Object> consumerProperties = getConsumerProperties();
+
+		private final boolean autoCommit = determineAutoCommit();
+
+		private final boolean conflateKeys = isConflateKeys();
+
+		private final long conflationWindow = getConflationWindow();
+
+		private final OffsetStore offsetStore = getOffsetStore();
+
+		private final Map<TopicPartition, Map<Object, ConsumerRecord<K, V>>> conflated = new LinkedHashMap<>();
+
+		private long conflationStart;
 
 		private Thread consumerThread;
 
@@ -221,15 +320,29 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 		private long last;
 
 		ListenerConsumer(MessageListener<K, V> listener, AcknowledgingMessageListener<K, V> ackListener,
-				long recentOffset) {
+				long recentOffset, StartupCoordinator startupCoordinator) {
 			Assert.state(!(getAckMode().equals(AckMode.MANUAL) || getAckMode().equals(AckMode.MANUAL_IMMEDIATE))
 					|| !this.autoCommit,
 					"Consumer cannot be configured for auto commit for ackMode " + getAckMode());
-			Consumer<K, V> consumer = KafkaMessageListenerContainer.this.consumerFactory.createConsumer();
+			Assert.state(!isConflateKeys() || getConflationWindow() <= 0 || !this.autoCommit,
+					"Consumer cannot be configured for auto commit with a conflation window");
+			Assert.state(getOffsetStore() == null || !this.autoCommit,
+					"Consumer cannot be configured for auto commit with an OffsetStore");
+			Consumer<K, V> consumer = this.consumerProperties.isEmpty()
+					? KafkaMessageListenerContainer.this.consumerFactory.createConsumer()
+					: KafkaMessageListenerContainer.this.consumerFactory.createConsumer(this.consumerProperties);
 			ConsumerRebalanceListener rebalanceListener = new ConsumerRebalanceListener() {
 
 				@Override
 				public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+					// held records are not committed; the new owner will receive them
+					ListenerConsumer.this.conflated.keySet().removeAll(partitions);
+					if (ListenerConsumer.this.partitionAwareListener != null) {
+						ListenerConsumer.this.partitionAwareListener.onPartitionsRevoked(partitions);
+					}
+					if (getConsumerRebalanceListener() != null) {
+						getConsumerRebalanceListener().onPartitionsRevoked(partitions);
+					}
 					KafkaMessageListenerContainer.this.logger.info("partitions revoked:" + partitions);
 				}
 
@@ -237,6 +350,20 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 				public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
 					ListenerConsumer.this.assignedPartitions = partitions;
 					KafkaMessageListenerContainer.this.logger.info("partitions assigned:" + partitions);
+					if (!ListenerConsumer.this.settled) {
+						// don't fetch until the group has settled
+						ListenerConsumer.this.startupCoordinator.rebalanced();
+						ListenerConsumer.this.consumer.pause(partitions.toArray(new TopicPartition[partitions.size()]));
+					}
+					if (ListenerConsumer.this.offsetStore != null) {
+						seekToStoredOffsets(partitions);
+					}
+					if (getConsumerRebalanceListener() != null) {
+						getConsumerRebalanceListener().onPartitionsAssigned(partitions);
+					}
+					if (ListenerConsumer.this.partitionAwareListener != null) {
+						ListenerConsumer.this.partitionAwareListener.onPartitionsAssigned(partitions);
+					}
 				}
 
 			};
@@ -257,6 +384,8 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 			this.listener = listener;
 			this.acknowledgingMessageListener = ackListener;
 			this.recentOffset = recentOffset;
+			this.startupCoordinator = startupCoordinator;
+			this.settled = startupCoordinator == null || this.definedPartitions != null;
 		}
 
 		@Override
@@ -266,68 +395,158 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 
 		@Override
 		public void run() {
-			this.consumerThread = Thread.currentThread();
-			this.count = 0;
-			this.last = System.currentTimeMillis();
-			if (isRunning() && this.definedPartitions != null) {
-				initPartitionsIfNeeded();
-			}
-			final AckMode ackMode = getAckMode();
-			while (isRunning()) {
-				try {
-					if (this.logger.isTraceEnabled()) {
-						this.logger.trace("Polling...");
-					}
-					ConsumerRecords<K, V> records = this.consumer.poll(getPollTimeout());
-					if (records != null) {
-						if (this.logger.isDebugEnabled()) {
-							this.logger.debug("Received: " + records.count() + " records");
+			try {
+				this.consumerThread = Thread.currentThread();
+				this.count = 0;
+				this.last = System.currentTimeMillis();
+				if (isRunning() && this.definedPartitions != null) {
+					initPartitionsIfNeeded();
+				}
+				if (this.consumerSeekAware != null) {
+					this.consumerSeekAware.registerSeekCallback(this);
+				}
+				final AckMode ackMode = getAckMode();
+				while (isRunning()) {
+					try {
+						if (!this.settled) {
+							resumeIfSettled();
+						}
+						processSeeks();
+						if (this.logger.isTraceEnabled()) {
+							this.logger.trace("Polling...");
+						}
+						ConsumerRecords<K, V> records = this.consumer.poll(getPollTimeout());
+						if (records != null && this.conflateKeys) {
+							records = conflate(records);
 						}
-						Iterator<ConsumerRecord<K, V>> iterator = records.iterator();
-						while (iterator.hasNext()) {
-							final ConsumerRecord<K, V> record = iterator.next();
-							invokeListener(record);
-							if (!this.autoCommit && ackMode.equals(AckMode.RECORD)) {
-								this.consumer.commitAsync(
-										Collections.singletonMap(new TopicPartition(record.topic(), record.partition()),
-												new OffsetAndMetadata(record.offset() + 1)), this.callback);
+						if (this.partitionAwareListener != null && (records == null || records.isEmpty())) {
+							this.partitionAwareListener.onIdle();
+						}
+						if (records != null) {
+							if (this.logger.isDebugEnabled()) {
+								this.logger.debug("Received: " + records.count() + " records");
+							}
+							if (KafkaMessageListenerContainer.this.timeToFirstRecord < 0 && !records.isEmpty()) {
+								recordTimeToFirstRecord();
+							}
+							List<ConsumerRecord<K, V>> processed = this.drainTimeout > 0
+									? new ArrayList<ConsumerRecord<K, V>>(records.count())
+									: null;
+							Iterator<ConsumerRecord<K, V>> iterator = records.iterator();
+							while (iterator.hasNext()) {
+								if (processed != null && !isRunning() && !continueDraining()) {
+									this.logger.info("Abandoned " + (records.count() - processed.size())
+											+ " records while draining");
+									break;
+								}
+								final ConsumerRecord<K, V> record = iterator.next();
+								invokeListener(record);
+								if (!this.autoCommit && ackMode.equals(AckMode.RECORD)) {
+									commit(Collections.singletonMap(new TopicPartition(record.topic(), record.partition()),
+											new OffsetAndMetadata(record.offset() + 1)));
+								}
+								if (processed != null) {
+									processed.add(record);
+								}
+							}
+							if (!this.autoCommit) {
+								if (processed != null && !isRunning()) {
+									// only the processed records are committed, when the consumer closes
+									if (!ackMode.equals(AckMode.RECORD) && !ackMode.equals(AckMode.MANUAL)
+											&& !ackMode.equals(AckMode.MANUAL_IMMEDIATE)) {
+										updatePendingOffsets(processed);
+									}
+								}
+								else {
+									processCommits(ackMode, records);
+								}
 							}
 						}
-						if (!this.autoCommit) {
-							processCommits(ackMode, records);
+						else {
+							if (this.logger.isDebugEnabled()) {
+								this.logger.debug("No records");
+							}
 						}
 					}
-					else {
-						if (this.logger.isDebugEnabled()) {
-							this.logger.debug("No records");
+					catch (WakeupException e) {
+						// No-op. Continue process
+					}
+					catch (Exception e) {
+						if (getErrorHandler() != null) {
+							getErrorHandler().handle(e, null);
+						}
+						else {
+							this.logger.error("Container exception", e);
 						}
 					}
 				}
+				if (this.drainTimeout > 0 && !this.autoCommit) {
+					commitOnDrain();
+				}
+				else if (this.offsets.size() > 0) {
+					commitIfNecessary();
+				}
+				try {
+					this.consumer.unsubscribe();
+				}
 				catch (WakeupException e) {
 					// No-op. Continue process
 				}
-				catch (Exception e) {
-					if (getErrorHandler() != null) {
-						getErrorHandler().handle(e, null);
+				this.consumer.close();
+				if (this.logger.isInfoEnabled()) {
+					this.logger.info("Consumer stopped");
+				}
+			}
+			finally {
+				stopped();
+			}
+		}
+
+		/**
+		 * Add the records to the pending conflation map, replacing any record with the same
+		 * key in the same partition; return the conflated records when the window (if any)
+		 * has elapsed, otherwise an empty result.
+		 * @param records the records from the last poll.
+		 * @return the records to deliver.
+		 */
+		private ConsumerRecords<K, V> conflate(ConsumerRecords<K, V> records) {
+			long now = System.currentTimeMillis();
+			if (this.conflated.isEmpty()) {
+				this.conflationStart = now;
+			}
+			for (TopicPartition topicPartition : records.partitions()) {
+				Map<Object, ConsumerRecord<K, V>> latest = this.conflated.get(topicPartition);
+				if (latest == null) {
+					latest = new LinkedHashMap<>();
+					this.conflated.put(topicPartition, latest);
+				}
+				for (ConsumerRecord<K, V> record : records.records(topicPartition)) {
+					Object key = record.key();
+					if (key == null) {
+						key = new Object(); // never conflated
 					}
-					else {
-						this.logger.error("Container exception", e);
+					else if (key instanceof byte[]) {
+						key = ByteBuffer.wrap((byte[]) key);
 					}
+					// remove first so the iteration order follows the offsets of the survivors
+					latest.remove(key);
+					latest.put(key, record);
 				}
 			}
-			if (this.offsets.size() > 0) {
-				commitIfNecessary();
+			if (this.conflated.isEmpty()
+					|| (this.conflationWindow > 0 && now - this.conflationStart < this.conflationWindow)) {
+				return ConsumerRecords.empty();
 			}
-			try {
-				this.consumer.unsubscribe();
+			Map<TopicPartition, List<ConsumerRecord<K, V>>> toDeliver = new LinkedHashMap<>();
+			for (Entry<TopicPartition, Map<Object, ConsumerRecord<K, V>>> entry : this.conflated.entrySet()) {
+				toDeliver.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
 			}
-			catch (WakeupException e) {
-				// No-op. Continue process
-			}
-			this.consumer.close();
-			if (this.logger.isInfoEnabled()) {
-				this.logger.info("Consumer stopped");
+			this.conflated.clear();
+			ConsumerRecords<K, V> conflatedRecords = new ConsumerRecords<>(toDeliver);
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Conflated to: " + conflatedRecords.count() + " records");
 			}
+			return conflatedRecords;
 		}
 
 		private void invokeListener(final ConsumerRecord<K, V> record) {
@@ -348,7 +567,7 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 									if (ListenerConsumer.this.logger.isDebugEnabled()) {
 										ListenerConsumer.this.logger.debug("Committing: " + commits);
 									}
-									ListenerConsumer.this.consumer.commitAsync(commits, ListenerConsumer.this.callback);
+									commit(commits);
 								}
 								else {
 									throw new IllegalStateException(
@@ -388,7 +607,18 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 			long now;
 			if (ackMode.equals(AckMode.BATCH)) {
 				if (!records.isEmpty()) {
-					this.consumer.commitAsync(this.callback);
+					if (this.offsetStore != null) {
+						Map<TopicPartition, OffsetAndMetadata> commits = new HashMap<>();
+						for (TopicPartition topicPartition : records.partitions()) {
+							List<ConsumerRecord<K, V>> partitionRecords = records.records(topicPartition);
+							commits.put(topicPartition,
+									new OffsetAndMetadata(partitionRecords.get(partitionRecords.size() - 1).offset() + 1));
+						}
+						commit(commits);
+					}
+					else {
+						this.consumer.commitAsync(this.callback);
+					}
 				}
 			}
 			else if (!ackMode.equals(AckMode.MANUAL_IMMEDIATE)) {
@@ -434,9 +664,144 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 					}
 				}
 			}
+			if (this.offsetStore != null) {
+				seekToStoredOffsets(this.definedPartitions);
+			}
+		}
+
+		/**
+		 * Add a callback to be invoked when the consumer has been closed; invoked
+		 * immediately if already closed or if invoked on the consumer thread (e.g. when
+		 * the listener stops the container), since the consumer cannot close until the
+		 * listener returns.
+		 * @param callback the callback.
+		 */
+		private void addStopCallback(Runnable callback) {
+			synchronized (this.stopCallbacks) {
+				if (!this.stopped && !Thread.currentThread().equals(this.consumerThread)) {
+					this.stopCallbacks.add(callback);
+					return;
+				}
+			}
+			callback.run();
+		}
+
+		private void stopped() {
+			List<Runnable> callbacks;
+			synchronized (this.stopCallbacks) {
+				this.stopped = true;
+				callbacks = new ArrayList<>(this.stopCallbacks);
+				this.stopCallbacks.clear();
+			}
+			for (Runnable callback : callbacks) {
+				try {
+					callback.run();
+				}
+				catch (Exception e) {
+					this.logger.error("Stop callback failed", e);
+				}
+			}
 		}
 
-		private void updatePendingOffsets(ConsumerRecords<K, V> records) {
+		private boolean determineAutoCommit() {
+			Object auto = this.consumerProperties.get(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG);
+			if (auto != null) {
+				return auto instanceof Boolean ? (Boolean) auto : Boolean.valueOf(auto.toString());
+			}
+			return KafkaMessageListenerContainer.this.consumerFactory.isAutoCommit();
+		}
+
+		private boolean continueDraining() {
+			return this.drainPolicy.equals(DrainPolicy.FINISH)
+					&& System.currentTimeMillis() - KafkaMessageListenerContainer.this.stopRequested < this.drainTimeout;
+		}
+
+		/**
+		 * Synchronously commit the offsets of the records passed to the listener, before
+		 * the consumer is closed.
+		 */
+		private void commitOnDrain() {
+			try {
+				commitIfNecessary();
+			}
+			catch (Exception e) {
+				this.logger.error("Failed to commit offsets while draining", e);
+			}
+		}
+
+		private void commitSyncRetryingWakeup(Map<TopicPartition, OffsetAndMetadata> commits) {
+			try {
+				this.consumer.commitSync(commits);
+			}
+			catch (WakeupException e) {
+				// a wakeup from stop() that was not consumed by a poll
+				this.consumer.commitSync(commits);
+			}
+		}
+
+		private void resumeIfSettled() {
+			Collection<TopicPartition> partitions = this.assignedPartitions;
+			if (partitions != null && this.startupCoordinator.isSettled()) {
+				this.consumer.resume(partitions.toArray(new TopicPartition[partitions.size()]));
+				this.settled = true;
+				if (this.logger.isInfoEnabled()) {
+					this.logger.info("Assignment settled; fetching from " + partitions);
+				}
+			}
+		}
+
+		private void recordTimeToFirstRecord() {
+			long time = System.currentTimeMillis() - KafkaMessageListenerContainer.this.startTime;
+			KafkaMessageListenerContainer.this.timeToFirstRecord = time;
+			if (this.logger.isInfoEnabled()) {
+				this.logger.info("First record received " + time + "ms after start");
+			}
+		}
+
+		@Override
+		public void seek(String topic, int partition, long offset) {
+			if (Thread.currentThread().equals(this.consumerThread)) {
+				doSeek(new TopicPartition(topic, partition), offset);
+			}
+			else {
+				this.seeks.add(new TopicPartitionOffset(new TopicPartition(topic, partition), offset));
+				this.consumer.wakeup();
+			}
+		}
+
+		private void processSeeks() {
+			TopicPartitionOffset seek = this.seeks.poll();
+			while (seek != null) {
+				doSeek(seek.topicPartition, seek.offset);
+				seek = this.seeks.poll();
+			}
+		}
+
+		private void doSeek(TopicPartition topicPartition, long offset) {
+			try {
+				this.consumer.seek(topicPartition, offset);
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Seeked " + topicPartition + " to offset " + offset);
+				}
+			}
+			catch (Exception e) {
+				this.logger.error("Failed to seek " + topicPartition + " to " + offset, e);
+			}
+		}
+
+		private void seekToStoredOffsets(Collection<TopicPartition> partitions) {
+			Map<TopicPartition, Long> positions = this.offsetStore.load(partitions);
+			if (positions != null) {
+				for (Entry<TopicPartition, Long> position : positions.entrySet()) {
+					this.consumer.seek(position.getKey(), position.getValue());
+					if (this.logger.isDebugEnabled()) {
+						this.logger.debug("Reset " + position.getKey() + " to stored offset " + position.getValue());
+					}
+				}
+			}
+		}
+
+		private void updatePendingOffsets(Iterable<ConsumerRecord<K, V>> records) {
 			for (ConsumerRecord<K, V> record : records) {
 				if (!this.offsets.containsKey(record.topic())) {
 					this.offsets.put(record.topic(), new HashMap<Integer, Long>());
@@ -478,11 +843,40 @@ public class KafkaMessageListenerContainer<K, V> extends AbstractMessageListener
 				this.logger.debug("Committing: " + commits);
 			}
 			if (!commits.isEmpty()) {
+				commit(commits);
+			}
+		}
+
+		private void commit(Map<TopicPartition, OffsetAndMetadata> commits) {
+			if (this.offsetStore != null) {
+				Map<TopicPartition, Long> positions = new HashMap<>();
+				for (Entry<TopicPartition, OffsetAndMetadata> entry : commits.entrySet()) {
+					positions.put(entry.getKey(), entry.getValue().offset());
+				}
+				this.offsetStore.save(positions);
+			}
+			else if (this.drainTimeout > 0 && !isRunning()) {
+				commitSyncRetryingWakeup(commits);
+			}
+			else {
 				this.consumer.commitAsync(commits, this.callback);
 			}
 		}
 	}
 
+	private static final class TopicPartitionOffset {
+
+		private final TopicPartition topicPartition;
+
+		private final long offset;
+
+		TopicPartitionOffset(TopicPartition topicPartition, long offset) {
+			this.topicPartition = topicPartition;
+			this.offset = offset;
+		}
+
+	}
+
 	private static final class CommitCallback implements OffsetCommitCallback {
 
 		private static final Log logger = LogFactory.getLog(OffsetCommitCallback.class);
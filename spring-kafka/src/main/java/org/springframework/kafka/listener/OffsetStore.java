@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Strategy for storing consumer positions outside of Kafka. When an {@code OffsetStore}
+ * is configured on a listener container, the container saves offsets to the store
+ * instead of committing them to Kafka, and positions the consumer from the store
+ * whenever partitions are assigned.
+ * <p>
+ * Listeners that write to a transactional sink can store offsets in the same
+ * transaction as their data, for exactly-once results; in that case, {@link #save(Map)}
+ * may be a no-op and {@link #load(Collection)} reads the offsets from the sink.
+ * <p>
+ * Both methods are invoked on the consumer thread; with a concurrent container, a store
+ * is shared by the consumer threads (each handling distinct partitions).
+ *
+ * @author Gary Russell
+ */
+public interface OffsetStore {
+
+	/**
+	 * Return the stored positions (the offsets of the next records to consume) of the
+	 * supplied partitions.
+	 * @param partitions the partitions.
+	 * @return the positions; partitions with no stored position are omitted and are
+	 * positioned according to the consumer's committed offsets and
+	 * {@code auto.offset.reset} policy.
+	 */
+	Map<TopicPartition, Long> load(Collection<TopicPartition> partitions);
+
+	/**
+	 * Store the positions (the offsets of the next records to consume) of the supplied
+	 * partitions.
+	 * @param positions the positions.
+	 */
+	void save(Map<TopicPartition, Long> positions);
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener;
+
+import java.util.Collection;
+
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Optional interface for message listeners that need to be notified of partition
+ * assignment changes and of polls that return no records. Callbacks are invoked on the
+ * consumer thread.
+ *
+ * @author Gary Russell
+ */
+public interface PartitionAwareListener {
+
+	/**
+	 * Invoked when partitions are assigned to the consumer, before any records from them
+	 * are delivered.
+	 * @param partitions the assigned partitions.
+	 */
+	void onPartitionsAssigned(Collection<TopicPartition> partitions);
+
+	/**
+	 * Invoked when partitions are revoked from the consumer, before the new owner
+	 * receives records from them.
+	 * @param partitions the revoked partitions.
+	 */
+	void onPartitionsRevoked(Collection<TopicPartition> partitions);
+
+	/**
+	 * Invoked when a poll returns no records.
+	 */
+	void onIdle();
+
+}
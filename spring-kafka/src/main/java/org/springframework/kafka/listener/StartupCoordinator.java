@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks partition assignments across the consumers of a container during startup,
+ * so that fetching starts only when no rebalance has occurred for the settle time.
+ *
+ * @author Gary Russell
+ */
+final class StartupCoordinator {
+
+	private final long settleTime;
+
+	private final AtomicLong lastRebalance = new AtomicLong(System.currentTimeMillis());
+
+	StartupCoordinator(long settleTime) {
+		this.settleTime = settleTime;
+	}
+
+	/**
+	 * Record that a consumer's partitions have been (re)assigned.
+	 */
+	void rebalanced() {
+		this.lastRebalance.set(System.currentTimeMillis());
+	}
+
+	/**
+	 * Return true if no rebalance has occurred for the settle time.
+	 * @return true if settled.
+	 */
+	boolean isSettled() {
+		return System.currentTimeMillis() - this.lastRebalance.get() >= this.settleTime;
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import java.util.Collection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.PartitionAwareListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.Assert;
+
+/**
+ * Top level class for message listener adapters that wrap another listener, which
+ * may be a {@link MessageListener} or an {@link AcknowledgingMessageListener}.
+ * <p>
+ * The adapter implements both interfaces; the container always invokes the
+ * acknowledging variant and the adapter invokes the delegate with or without the
+ * {@link Acknowledgment} as appropriate. {@link PartitionAwareListener} and
+ * {@link ConsumerSeekAware} callbacks are passed to the delegate if it implements those
+ * interfaces.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public abstract class AbstractDelegatingMessageListenerAdapter<K, V>
+		implements MessageListener<K, V>, AcknowledgingMessageListener<K, V>, PartitionAwareListener,
+			ConsumerSeekAware {
+
+	protected final Log logger = LogFactory.getLog(this.getClass()); //NOSONAR
+
+	private final Object delegate;
+
+	private final MessageListener<K, V> listener;
+
+	private final AcknowledgingMessageListener<K, V> acknowledgingListener;
+
+	/**
+	 * Construct an instance with the supplied delegate.
+	 * @param delegate the delegate; must be a {@link MessageListener} or an
+	 * {@link AcknowledgingMessageListener}.
+	 */
+	@SuppressWarnings("unchecked")
+	protected AbstractDelegatingMessageListenerAdapter(Object delegate) {
+		Assert.notNull(delegate, "'delegate' cannot be null");
+		this.delegate = delegate;
+		if (delegate instanceof AcknowledgingMessageListener) {
+			this.acknowledgingListener = (AcknowledgingMessageListener<K, V>) delegate;
+			this.listener = null;
+		}
+		else if (delegate instanceof MessageListener) {
+			this.listener = (MessageListener<K, V>) delegate;
+			this.acknowledgingListener = null;
+		}
+		else {
+			throw new IllegalArgumentException("delegate must be 'MessageListener' "
+					+ "or 'AcknowledgingMessageListener', not " + delegate.getClass().getName());
+		}
+	}
+
+	/**
+	 * Return the delegate.
+	 * @return the delegate.
+	 */
+	public Object getDelegate() {
+		return this.delegate;
+	}
+
+	@Override
+	public void onMessage(ConsumerRecord<K, V> record) {
+		onMessage(record, null);
+	}
+
+	@Override
+	public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+		if (this.delegate instanceof PartitionAwareListener) {
+			((PartitionAwareListener) this.delegate).onPartitionsAssigned(partitions);
+		}
+	}
+
+	@Override
+	public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+		if (this.delegate instanceof PartitionAwareListener) {
+			((PartitionAwareListener) this.delegate).onPartitionsRevoked(partitions);
+		}
+	}
+
+	@Override
+	public void onIdle() {
+		if (this.delegate instanceof PartitionAwareListener) {
+			((PartitionAwareListener) this.delegate).onIdle();
+		}
+	}
+
+	@Override
+	public void registerSeekCallback(ConsumerSeekCallback callback) {
+		if (this.delegate instanceof ConsumerSeekAware) {
+			((ConsumerSeekAware) this.delegate).registerSeekCallback(callback);
+		}
+	}
+
+	/**
+	 * Invoke the delegate, passing the acknowledgment if it is an
+	 * {@link AcknowledgingMessageListener}.
+	 * @param record the record.
+	 * @param acknowledgment the acknowledgment; may be null.
+	 */
+	protected void invokeDelegate(ConsumerRecord<K, V> record, Acknowledgment acknowledgment) {
+		if (this.acknowledgingListener != null) {
+			this.acknowledgingListener.onMessage(record, acknowledgment);
+		}
+		else {
+			this.listener.onMessage(record);
+		}
+	}
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.PartitionAwareListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link AcknowledgingMessageListener} adapter that accumulates records, across
+ * multiple polls if necessary, and delivers them to a {@link BatchMessageListener}
+ * when {@link #setBatchSize(int) batchSize} records, {@link #setBatchBytes(long)
+ * batchBytes} bytes or {@link #setBatchTimeout(long) batchTimeout} milliseconds is
+ * reached, whichever happens first.
+ * <p>
+ * The records of a batch are acknowledged only after the batch listener returns (only the
+ * last record for each partition is acknowledged, which commits the others), so the
+ * container must be configured with {@code AckMode.MANUAL} or
+ * {@code AckMode.MANUAL_IMMEDIATE}. If the batch listener throws an exception, the
+ * records are not acknowledged, but note that acknowledging a subsequent batch will
+ * commit offsets beyond them.
+ * <p>
+ * Batches are accumulated separately for each consumer thread, so the adapter can be
+ * used with a {@code ConcurrentMessageListenerContainer}. Since the timeout is only
+ * evaluated when a record is received or a poll returns no records, the actual delay
+ * can exceed the timeout by up to the container's poll timeout. Records from revoked
+ * partitions are discarded without being delivered; they will be redelivered to the
+ * new owner. Any records still held for a thread when its consumer starts or is assigned
+ * partitions (for example, after the container is stopped and restarted on a pooled
+ * executor) are discarded without being delivered or acknowledged.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class BatchingMessageListenerAdapter<K, V> implements AcknowledgingMessageListener<K, V>,
+		PartitionAwareListener, ConsumerSeekAware {
+
+	protected final Log logger = LogFactory.getLog(this.getClass()); //NOSONAR
+
+	private final BatchMessageListener<K, V> delegate;
+
+	private final ThreadLocal<Batch> batches = new ThreadLocal<Batch>() {
+
+		@Override
+		protected Batch initialValue() {
+			return new Batch();
+		}
+
+	};
+
+	private int batchSize = 100;
+
+	private long batchBytes;
+
+	private long batchTimeout = 1000;
+
+	/**
+	 * Construct an instance with the supplied batch listener.
+	 * @param delegate the listener.
+	 */
+	public BatchingMessageListenerAdapter(BatchMessageListener<K, V> delegate) {
+		Assert.notNull(delegate, "'delegate' cannot be null");
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Set the maximum number of records in a batch.
+	 * @param batchSize the batch size; default 100.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the number of bytes, as determined by {@link #sizeOf(ConsumerRecord)}, after
+	 * which the batch is delivered.
+	 * @param batchBytes the number of bytes; default 0 - no limit.
+	 */
+	public void setBatchBytes(long batchBytes) {
+		this.batchBytes = batchBytes;
+	}
+
+	/**
+	 * Set the time (ms) after the first record is added to a batch, after which the
+	 * batch is delivered.
+	 * @param batchTimeout the timeout; default 1000.
+	 */
+	public void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	@Override
+	public void onMessage(ConsumerRecord<K, V> record, Acknowledgment acknowledgment) {
+		Assert.state(acknowledgment != null,
+				"The container must be configured with AckMode.MANUAL or AckMode.MANUAL_IMMEDIATE");
+		Batch batch = this.batches.get();
+		if (batch.records.isEmpty()) {
+			batch.started = System.currentTimeMillis();
+		}
+		batch.records.add(record);
+		batch.acks.put(new TopicPartition(record.topic(), record.partition()), acknowledgment);
+		batch.bytes += sizeOf(record);
+		if (batch.records.size() >= this.batchSize
+				|| (this.batchBytes > 0 && batch.bytes >= this.batchBytes)
+				|| timedOut(batch)) {
+			release(batch);
+		}
+	}
+
+	@Override
+	public void registerSeekCallback(ConsumerSeekCallback callback) {
+		// a new consumer is starting on this thread
+		discard();
+	}
+
+	@Override
+	public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+		// all partitions were revoked before this assignment, so anything still held is stale
+		discard();
+	}
+
+	@Override
+	public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+		Batch batch = this.batches.get();
+		batch.acks.keySet().removeAll(partitions);
+		Iterator<ConsumerRecord<K, V>> records = batch.records.iterator();
+		batch.bytes = 0;
+		while (records.hasNext()) {
+			ConsumerRecord<K, V> record = records.next();
+			if (partitions.contains(new TopicPartition(record.topic(), record.partition()))) {
+				records.remove();
+			}
+			else {
+				batch.bytes += sizeOf(record);
+			}
+		}
+	}
+
+	@Override
+	public void onIdle() {
+		Batch batch = this.batches.get();
+		if (!batch.records.isEmpty() && timedOut(batch)) {
+			release(batch);
+		}
+	}
+
+	/**
+	 * Return the size of the record for the purpose of the {@link #setBatchBytes(long)
+	 * batchBytes} limit. The default implementation adds the lengths of {@code byte[]}
+	 * and {@code String} keys and values; other types count as 0. Subclasses can
+	 * override this to provide an estimate for other types.
+	 * @param record the record.
+	 * @return the size.
+	 */
+	protected long sizeOf(ConsumerRecord<K, V> record) {
+		return sizeOf(record.key()) + sizeOf(record.value());
+	}
+
+	private long sizeOf(Object object) {
+		if (object instanceof byte[]) {
+			return ((byte[]) object).length;
+		}
+		else if (object instanceof String) {
+			return ((String) object).length();
+		}
+		else {
+			return 0;
+		}
+	}
+
+	private void discard() {
+		Batch batch = this.batches.get();
+		if (!batch.records.isEmpty() && this.logger.isDebugEnabled()) {
+			this.logger.debug("Discarding stale batch of " + batch.records.size() + " records");
+		}
+		this.batches.remove();
+	}
+
+	private boolean timedOut(Batch batch) {
+		return System.currentTimeMillis() - batch.started >= this.batchTimeout;
+	}
+
+	private void release(Batch batch) {
+		List<ConsumerRecord<K, V>> records = batch.records;
+		Map<TopicPartition, Acknowledgment> acks = batch.acks;
+		batch.records = new ArrayList<>();
+		batch.acks = new LinkedHashMap<>();
+		batch.bytes = 0;
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Releasing batch of " + records.size() + " records");
+		}
+		this.delegate.onMessage(records);
+		for (Acknowledgment ack : acks.values()) {
+			ack.acknowledge();
+		}
+	}
+
+	private final class Batch {
+
+		private List<ConsumerRecord<K, V>> records = new ArrayList<>();
+
+		private Map<TopicPartition, Acknowledgment> acks = new LinkedHashMap<>();
+
+		private long bytes;
+
+		private long started;
+
+	}
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.Chunk;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageListener} adapter that reassembles values split into
+ * {@link Chunk}s by a {@link org.springframework.kafka.core.ChunkingKafkaTemplate
+ * ChunkingKafkaTemplate}, and delivers each complete value to a {@link MessageListener}
+ * in a record with the key, topic, partition and offset of its final chunk; records that
+ * are not chunks (including values with an invalid chunk header) are delivered
+ * unchanged. The consumer must use {@code byte[]} deserializers.
+ * <p>
+ * The container must be configured with {@code AckMode.MANUAL} or
+ * {@code AckMode.MANUAL_IMMEDIATE}; the adapter acknowledges records after the delegate
+ * returns, but not while a value with a chunk at an earlier offset in the same partition
+ * is incomplete, so offsets are only committed beyond a chunk once its value has been
+ * delivered. Incomplete values are discarded when they have been buffered for longer
+ * than the {@link #setTimeout(long) timeout}, or when buffering a chunk would exceed
+ * {@link #setMaxBufferedBytes(long) maxBufferedBytes} (oldest first); the ids of the
+ * most recently discarded values are remembered, so that their remaining chunks are
+ * dropped (and acknowledged) rather than buffered again.
+ * <p>
+ * Chunks are buffered separately for each consumer thread, so the adapter can be used
+ * with a {@code ConcurrentMessageListenerContainer}; the memory cap applies to each
+ * thread. Since the timeout is only evaluated when a record is received or a poll returns
+ * no records, values can be discarded later than the timeout. Chunks from revoked
+ * partitions are discarded; they will be redelivered to the new owner.
+ *
+ * @author Gary Russell
+ */
+public class ChunkReassemblingMessageListenerAdapter extends AbstractDelegatingMessageListenerAdapter<byte[], byte[]> {
+
+	private static final int MAX_DISCARDED_IDS = 1000;
+
+	private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+
+	};
+
+	private long maxBufferedBytes = 64 * 1024 * 1024;
+
+	private long timeout = 60000;
+
+	/**
+	 * Construct an instance with the supplied listener.
+	 * @param delegate the listener.
+	 */
+	public ChunkReassemblingMessageListenerAdapter(MessageListener<byte[], byte[]> delegate) {
+		super(delegate);
+	}
+
+	/**
+	 * Set the maximum number of bytes of incomplete values buffered by each consumer
+	 * thread.
+	 * @param maxBufferedBytes the maximum; default 64Mb.
+	 */
+	public void setMaxBufferedBytes(long maxBufferedBytes) {
+		Assert.isTrue(maxBufferedBytes > 0, "'maxBufferedBytes' must be positive");
+		this.maxBufferedBytes = maxBufferedBytes;
+	}
+
+	/**
+	 * Set the time (ms) after the first chunk of a value is received, after which the
+	 * value is discarded if it is still incomplete.
+	 * @param timeout the timeout; default 60000.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void onMessage(ConsumerRecord<byte[], byte[]> record, Acknowledgment acknowledgment) {
+		Assert.state(acknowledgment != null,
+				"The container must be configured with AckMode.MANUAL or AckMode.MANUAL_IMMEDIATE");
+		Buffers buffers = this.buffers.get();
+		expire(buffers);
+		TopicPartition topicPartition = new TopicPartition(record.topic(), record.partition());
+		if (Chunk.isChunk(record.value())) {
+			Chunk chunk = Chunk.parse(record.value());
+			Value value = buffers.values.get(chunk.getId());
+			if (value == null) {
+				if (buffers.discarded.containsKey(chunk.getId())) {
+					if (this.logger.isDebugEnabled()) {
+						this.logger.debug("Dropping chunk " + chunk.getIndex() + " of discarded value " + chunk.getId()
+								+ " from " + topicPartition + "@" + record.offset());
+					}
+					acknowledge(buffers, topicPartition, record.offset(), acknowledgment);
+					return;
+				}
+				value = new Value(topicPartition, record.offset(), chunk.getCount());
+				buffers.values.put(chunk.getId(), value);
+			}
+			if (value.chunks.length != chunk.getCount()) {
+				this.logger.error("Dropping chunk " + chunk.getIndex() + " of value " + chunk.getId() + " from "
+						+ topicPartition + "@" + record.offset() + " because its chunk count (" + chunk.getCount()
+						+ ") differs from that of the earlier chunks (" + value.chunks.length + ")");
+			}
+			else if (value.chunks[chunk.getIndex()] == null) {
+				value.chunks[chunk.getIndex()] = chunk;
+				value.received++;
+				value.bytes += chunk.getSize();
+				buffers.bytes += chunk.getSize();
+			}
+			if (value.received == value.chunks.length) {
+				remove(buffers, chunk.getId(), value);
+				invokeDelegate(new ConsumerRecord<>(record.topic(), record.partition(), record.offset(),
+						record.key(), reassemble(value)), null);
+			}
+			else {
+				enforceLimit(buffers);
+			}
+		}
+		else {
+			invokeDelegate(record, null);
+		}
+		acknowledge(buffers, topicPartition, record.offset(), acknowledgment);
+	}
+
+	@Override
+	public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+		super.onPartitionsRevoked(partitions);
+		Buffers buffers = this.buffers.get();
+		Iterator<Value> iterator = buffers.values.values().iterator();
+		while (iterator.hasNext()) {
+			Value value = iterator.next();
+			if (partitions.contains(value.topicPartition)) {
+				iterator.remove();
+				buffers.bytes -= value.bytes;
+			}
+		}
+		buffers.deferred.keySet().removeAll(partitions);
+	}
+
+	@Override
+	public void onIdle() {
+		super.onIdle();
+		expire(this.buffers.get());
+	}
+
+	private byte[] reassemble(Value value) {
+		byte[] bytes = new byte[value.chunks[0].getLength()];
+		int position = 0;
+		for (Chunk chunk : value.chunks) {
+			chunk.copyTo(bytes, position);
+			position += chunk.getSize();
+		}
+		return bytes;
+	}
+
+	private void expire(Buffers buffers) {
+		long now = System.currentTimeMillis();
+		Iterator<Entry<UUID, Value>> iterator = buffers.values.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<UUID, Value> entry = iterator.next();
+			if (now - entry.getValue().started < this.timeout) {
+				break;
+			}
+			iterator.remove();
+			discard(buffers, entry.getKey(), entry.getValue(), "it timed out");
+		}
+	}
+
+	private void enforceLimit(Buffers buffers) {
+		Iterator<Entry<UUID, Value>> iterator = buffers.values.entrySet().iterator();
+		while (buffers.bytes > this.maxBufferedBytes && iterator.hasNext()) {
+			Entry<UUID, Value> entry = iterator.next();
+			iterator.remove();
+			discard(buffers, entry.getKey(), entry.getValue(), "the buffer limit was reached");
+		}
+	}
+
+	private void discard(Buffers buffers, UUID id, Value value, String reason) {
+		buffers.bytes -= value.bytes;
+		buffers.discarded.put(id, Boolean.TRUE);
+		this.logger.error("Discarding incomplete value " + id + " from " + value.topicPartition + "@"
+				+ value.firstOffset + " (" + value.received + " of " + value.chunks.length
+				+ " chunks received) because " + reason);
+		release(buffers, value.topicPartition);
+	}
+
+	private void remove(Buffers buffers, UUID id, Value value) {
+		buffers.values.remove(id);
+		buffers.bytes -= value.bytes;
+	}
+
+	private void acknowledge(Buffers buffers, TopicPartition topicPartition, long offset, Acknowledgment ack) {
+		TreeMap<Long, Acknowledgment> deferred = buffers.deferred.get(topicPartition);
+		if (deferred == null) {
+			deferred = new TreeMap<>();
+			buffers.deferred.put(topicPartition, deferred);
+		}
+		deferred.put(offset, ack);
+		release(buffers, topicPartition);
+	}
+
+	// acknowledge the last deferred record that precedes the first chunk of any incomplete
+	// value in the partition; this commits the earlier deferred records too
+	private void release(Buffers buffers, TopicPartition topicPartition) {
+		TreeMap<Long, Acknowledgment> deferred = buffers.deferred.get(topicPartition);
+		if (deferred == null) {
+			return;
+		}
+		long limit = Long.MAX_VALUE;
+		for (Value value : buffers.values.values()) {
+			if (value.topicPartition.equals(topicPartition) && value.firstOffset < limit) {
+				limit = value.firstOffset;
+			}
+		}
+		Entry<Long, Acknowledgment> entry = deferred.lowerEntry(limit);
+		if (entry != null) {
+			deferred.headMap(entry.getKey(), true).clear();
+			entry.getValue().acknowledge();
+		}
+	}
+
+	private static final class Buffers {
+
+		private final Map<UUID, Value> values = new LinkedHashMap<>();
+
+		private final Map<TopicPartition, TreeMap<Long, Acknowledgment>> deferred = new HashMap<>();
+
+		private final Map<UUID, Boolean> discarded = new LinkedHashMap<UUID, Boolean>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<UUID, Boolean> eldest) {
+				return size() > MAX_DISCARDED_IDS;
+			}
+
+		};
+
+		private long bytes;
+
+	}
+
+	private static final class Value {
+
+		private final TopicPartition topicPartition;
+
+		private final long firstOffset;
+
+		private final Chunk[] chunks;
+
+		private final long started = System.currentTimeMillis();
+
+		private int received;
+
+		private long bytes;
+
+		Value(TopicPartition topicPartition, long firstOffset, int count) {
+			this.topicPartition = topicPartition;
+			this.firstOffset = firstOffset;
+			this.chunks = new Chunk[count];
+		}
+
+	}
+
+}
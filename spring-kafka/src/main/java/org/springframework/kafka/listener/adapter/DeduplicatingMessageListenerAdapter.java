@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link org.springframework.kafka.listener.MessageListener MessageListener} adapter
+ * for idempotent consumers; records whose fingerprint has already been seen are not
+ * passed to the delegate. By default, the fingerprint is derived from the record's
+ * topic, partition and offset (detecting redelivery after a rebalance or restart); supply
+ * a {@link RecordFingerprintStrategy} to detect duplicates by business key instead.
+ * <p>
+ * Fingerprints are recorded only after the delegate returns normally, so failed records
+ * are not treated as duplicates. They are held in a bounded set of 64-bit values in
+ * direct (off-heap) memory: {@code generations} tables of {@code capacity} entries each,
+ * one of which receives new fingerprints. When that table is full, or after
+ * {@code expiry / generations} milliseconds, the oldest table is cleared and reused;
+ * fingerprints are therefore retained for at least {@code expiry / generations} and at
+ * most {@code expiry} milliseconds (or fewer when the capacity is exceeded), including
+ * across idle periods, since expired tables are cleared before each lookup. Since
+ * fingerprints are hashes, distinct records may (very rarely) collide.
+ * <p>
+ * Duplicates are acknowledged (with manual ack modes) and counted; the hit, miss and
+ * eviction counts are available for monitoring. An instance can be shared by the
+ * consumer threads of a concurrent container.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class DeduplicatingMessageListenerAdapter<K, V> extends AbstractDelegatingMessageListenerAdapter<K, V> {
+
+	private static final int DEFAULT_CAPACITY = 100000;
+
+	private static final int DEFAULT_GENERATIONS = 2;
+
+	private static final long DEFAULT_EXPIRY = 600000;
+
+	private final RecordFingerprintStrategy<K, V> fingerprintStrategy;
+
+	private final OffHeapFingerprintSet fingerprints;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create an instance that fingerprints the topic, partition and offset, retaining up
+	 * to 200,000 fingerprints for up to 10 minutes.
+	 * @param delegate the delegate; a {@code MessageListener} or an
+	 * {@code AcknowledgingMessageListener}.
+	 */
+	public DeduplicatingMessageListenerAdapter(Object delegate) {
+		this(delegate, null);
+	}
+
+	/**
+	 * Create an instance with the supplied fingerprint strategy, retaining up to 200,000
+	 * fingerprints for up to 10 minutes.
+	 * @param delegate the delegate; a {@code MessageListener} or an
+	 * {@code AcknowledgingMessageListener}.
+	 * @param fingerprintStrategy the fingerprint strategy; if null, the topic, partition
+	 * and offset are used.
+	 */
+	public DeduplicatingMessageListenerAdapter(Object delegate, RecordFingerprintStrategy<K, V> fingerprintStrategy) {
+		this(delegate, fingerprintStrategy, DEFAULT_CAPACITY, DEFAULT_GENERATIONS, DEFAULT_EXPIRY);
+	}
+
+	/**
+	 * Create an instance with the supplied fingerprint strategy and bounds.
+	 * @param delegate the delegate; a {@code MessageListener} or an
+	 * {@code AcknowledgingMessageListener}.
+	 * @param fingerprintStrategy the fingerprint strategy; if null, the topic, partition
+	 * and offset are used.
+	 * @param capacity the maximum number of fingerprints in each generation; each
+	 * generation uses between 16 and 32 bytes of direct memory per entry.
+	 * @param generations the number of generations (at least 2).
+	 * @param expiry the maximum time (ms) a fingerprint is retained.
+	 */
+	public DeduplicatingMessageListenerAdapter(Object delegate, RecordFingerprintStrategy<K, V> fingerprintStrategy,
+			int capacity, int generations, long expiry) {
+		super(delegate);
+		Assert.isTrue(capacity > 0 && capacity <= 1 << 26, "'capacity' must be between 1 and 2^26");
+		Assert.isTrue(generations >= 2, "'generations' must be at least 2");
+		Assert.isTrue(expiry > 0, "'expiry' must be positive");
+		this.fingerprintStrategy = fingerprintStrategy == null
+				? new TopicPartitionOffsetFingerprintStrategy<K, V>()
+				: fingerprintStrategy;
+		this.fingerprints = new OffHeapFingerprintSet(generations, capacity, expiry / generations);
+	}
+
+	/**
+	 * Return the number of duplicate records that were skipped.
+	 * @return the hits.
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Return the number of records that were not duplicates.
+	 * @return the misses.
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Return the ratio of hits to records received.
+	 * @return the hit ratio, or 0 if no records have been received.
+	 */
+	public double getHitRatio() {
+		long hits = this.hits.get();
+		long total = hits + this.misses.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Return the number of fingerprints evicted (by expiry or because the capacity was
+	 * exceeded).
+	 * @return the evictions.
+	 */
+	public long getEvictions() {
+		synchronized (this.fingerprints) {
+			return this.fingerprints.getEvictions();
+		}
+	}
+
+	/**
+	 * Return the number of fingerprints currently retained.
+	 * @return the size.
+	 */
+	public long getSize() {
+		synchronized (this.fingerprints) {
+			return this.fingerprints.size();
+		}
+	}
+
+	@Override
+	public void onMessage(ConsumerRecord<K, V> record, Acknowledgment acknowledgment) {
+		long fingerprint = this.fingerprintStrategy.fingerprint(record);
+		boolean duplicate;
+		synchronized (this.fingerprints) {
+			duplicate = this.fingerprints.contains(fingerprint);
+		}
+		if (duplicate) {
+			this.hits.incrementAndGet();
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Duplicate discarded: " + record);
+			}
+			if (acknowledgment != null) {
+				acknowledgment.acknowledge();
+			}
+		}
+		else {
+			this.misses.incrementAndGet();
+			invokeDelegate(record, acknowledgment);
+			synchronized (this.fingerprints) {
+				this.fingerprints.add(fingerprint);
+			}
+		}
+	}
+
+	private static final class TopicPartitionOffsetFingerprintStrategy<K, V> implements RecordFingerprintStrategy<K, V> {
+
+		@Override
+		public long fingerprint(ConsumerRecord<K, V> record) {
+			long hash = record.topic().hashCode();
+			hash = hash * 31 + record.partition();
+			return (hash << 40) ^ record.offset();
+		}
+
+	}
+
+}
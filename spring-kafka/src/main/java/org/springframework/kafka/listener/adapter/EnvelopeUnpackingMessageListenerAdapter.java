@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.Envelope;
+
+/**
+ * A {@link org.springframework.kafka.listener.MessageListener MessageListener} adapter
+ * that unpacks {@link Envelope} records, sent by an
+ * {@link org.springframework.kafka.core.EnvelopeKafkaTemplate EnvelopeKafkaTemplate},
+ * invoking the delegate for each logical message; records that are not envelopes
+ * (including values that start with the envelope's magic number but don't match its
+ * layout) are passed to the delegate unchanged. The consumer must use {@code byte[]} deserializers.
+ * <p>
+ * Offsets are tracked at the envelope level: each message is presented with the topic,
+ * partition and offset of its envelope. With the automatic ack modes, the envelope's
+ * offset is committed in the same way as that of any other record, after the delegate
+ * has been invoked for all its messages. With manual ack modes, the envelope is
+ * acknowledged when the delegate has acknowledged all its messages (repeated
+ * acknowledgments of a message are ignored, and messages may be acknowledged on other
+ * threads); an empty envelope is acknowledged immediately. If the delegate
+ * throws an exception, the remaining messages of the envelope are not delivered.
+ *
+ * @author Gary Russell
+ */
+public class EnvelopeUnpackingMessageListenerAdapter
+		extends AbstractDelegatingMessageListenerAdapter<byte[], byte[]> {
+
+	/**
+	 * Create an instance with the supplied delegate listener.
+	 * @param delegate the delegate; a {@code MessageListener} or an
+	 * {@code AcknowledgingMessageListener}.
+	 */
+	public EnvelopeUnpackingMessageListenerAdapter(Object delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public void onMessage(ConsumerRecord<byte[], byte[]> record, Acknowledgment acknowledgment) {
+		if (!Envelope.isEnvelope(record.value())) {
+			invokeDelegate(record, acknowledgment);
+			return;
+		}
+		List<Envelope.Message> messages = Envelope.unpack(record.value());
+		if (this.logger.isTraceEnabled()) {
+			this.logger.trace("Unpacking " + messages.size() + " messages from: " + record.topic() + "-"
+					+ record.partition() + "@" + record.offset());
+		}
+		if (messages.isEmpty() && acknowledgment != null) {
+			acknowledgment.acknowledge();
+			return;
+		}
+		EnvelopeAcknowledgment envelopeAcknowledgment = acknowledgment == null ? null
+				: new EnvelopeAcknowledgment(acknowledgment, messages.size());
+		for (int i = 0; i < messages.size(); i++) {
+			Envelope.Message message = messages.get(i);
+			invokeDelegate(new ConsumerRecord<>(record.topic(), record.partition(), record.offset(),
+					message.getKey(), message.getValue()),
+					envelopeAcknowledgment == null ? null : envelopeAcknowledgment.forMessage(i));
+		}
+	}
+
+	/**
+	 * Acknowledges the envelope when each of its messages has been acknowledged at least
+	 * once.
+	 */
+	private static final class EnvelopeAcknowledgment {
+
+		private final Acknowledgment acknowledgment;
+
+		private final BitSet acknowledged;
+
+		private final int count;
+
+		EnvelopeAcknowledgment(Acknowledgment acknowledgment, int count) {
+			this.acknowledgment = acknowledgment;
+			this.acknowledged = new BitSet(count);
+			this.count = count;
+		}
+
+		Acknowledgment forMessage(final int index) {
+			return new Acknowledgment() {
+
+				@Override
+				public void acknowledge() {
+					EnvelopeAcknowledgment.this.acknowledge(index);
+				}
+
+			};
+		}
+
+		private void acknowledge(int index) {
+			synchronized (this.acknowledged) {
+				if (this.acknowledged.get(index)) {
+					return;
+				}
+				this.acknowledged.set(index);
+				if (this.acknowledged.cardinality() < this.count) {
+					return;
+				}
+			}
+			this.acknowledgment.acknowledge();
+		}
+
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link org.springframework.kafka.listener.MessageListener MessageListener} adapter
+ * that implements filter logic via a {@link RecordFilterStrategy}; discarded records are
+ * never passed to the delegate, so no conversion or listener invocation takes place for
+ * them.
+ * <p>
+ * With the automatic ack modes, the offsets of discarded records are committed in the
+ * same way as those of delivered records. With manual ack modes, set
+ * {@code ackDiscarded} to acknowledge discarded records; otherwise their offsets are
+ * committed when a subsequent record is acknowledged.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class FilteringMessageListenerAdapter<K, V> extends AbstractDelegatingMessageListenerAdapter<K, V> {
+
+	private final RecordFilterStrategy<K, V> recordFilterStrategy;
+
+	private final boolean ackDiscarded;
+
+	/**
+	 * Create an instance with the supplied strategy and delegate listener.
+	 * @param delegate the delegate; a {@code MessageListener} or an
+	 * {@code AcknowledgingMessageListener}.
+	 * @param recordFilterStrategy the filter.
+	 */
+	public FilteringMessageListenerAdapter(Object delegate, RecordFilterStrategy<K, V> recordFilterStrategy) {
+		this(delegate, recordFilterStrategy, false);
+	}
+
+	/**
+	 * Create an instance with the supplied strategy and delegate listener.
+	 * @param delegate the delegate; a {@code MessageListener} or an
+	 * {@code AcknowledgingMessageListener}.
+	 * @param recordFilterStrategy the filter.
+	 * @param ackDiscarded true to acknowledge discarded records (manual ack modes only).
+	 */
+	public FilteringMessageListenerAdapter(Object delegate, RecordFilterStrategy<K, V> recordFilterStrategy,
+			boolean ackDiscarded) {
+		super(delegate);
+		Assert.notNull(recordFilterStrategy, "'recordFilterStrategy' cannot be null");
+		this.recordFilterStrategy = recordFilterStrategy;
+		this.ackDiscarded = ackDiscarded;
+	}
+
+	@Override
+	public void onMessage(ConsumerRecord<K, V> record, Acknowledgment acknowledgment) {
+		if (this.recordFilterStrategy.filter(record)) {
+			if (this.logger.isTraceEnabled()) {
+				this.logger.trace("Discarded: " + record);
+			}
+			if (this.ackDiscarded && acknowledgment != null) {
+				acknowledgment.acknowledge();
+			}
+		}
+		else {
+			invokeDelegate(record, acknowledgment);
+		}
+	}
+
+}
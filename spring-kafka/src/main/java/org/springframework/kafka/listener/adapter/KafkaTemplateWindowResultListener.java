@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import org.apache.kafka.common.TopicPartition;
+
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.util.Assert;
+
+import com.gs.collections.api.block.procedure.primitive.ObjectLongProcedure;
+import com.gs.collections.api.map.primitive.ObjectLongMap;
+
+/**
+ * A {@link WindowResultListener} that sends each aggregate to a topic using a
+ * {@link KafkaOperations} (e.g. {@code KafkaTemplate}), with the aggregate key as the
+ * record key. The template is flushed before the window's offsets are committed.
+ *
+ * @param <K> the key type.
+ *
+ * @author Gary Russell
+ */
+public class KafkaTemplateWindowResultListener<K> implements WindowResultListener<K> {
+
+	private final KafkaOperations<K, Long> template;
+
+	private final String topic;
+
+	/**
+	 * Construct an instance that sends the results to the supplied topic.
+	 * @param template the template.
+	 * @param topic the topic.
+	 */
+	public KafkaTemplateWindowResultListener(KafkaOperations<K, Long> template, String topic) {
+		Assert.notNull(template, "'template' cannot be null");
+		Assert.notNull(topic, "'topic' cannot be null");
+		this.template = template;
+		this.topic = topic;
+	}
+
+	@Override
+	public void onWindowClosed(TopicPartition partition, long windowStart, long windowEnd, ObjectLongMap<K> results) {
+		results.forEachKeyValue(new ObjectLongProcedure<K>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void value(K key, long value) {
+				KafkaTemplateWindowResultListener.this.template.convertAndSend(
+						KafkaTemplateWindowResultListener.this.topic, key, value);
+			}
+
+		});
+		this.template.flush();
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Incrementally folds records into a primitive {@code long} aggregate, for example a
+ * count or a sum.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ * @see WindowingMessageListenerAdapter
+ */
+public interface LongReducer<K, V> {
+
+	/**
+	 * Apply the record to the current aggregate.
+	 * @param aggregate the current aggregate for the record key and window.
+	 * @param record the record.
+	 * @return the new aggregate.
+	 */
+	long reduce(long aggregate, ConsumerRecord<K, V> record);
+
+}
@@ -16,9 +16,14 @@
 
 package org.springframework.kafka.listener.adapter;
 
+import java.util.Collection;
+
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.listener.PartitionAwareListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.converter.MessageConverter;
 import org.springframework.kafka.support.converter.MessagingMessageConverter;
@@ -36,6 +41,9 @@ import org.springframework.messaging.converter.MessageConversionException;
  * the {@link Acknowledgment} are provided as additional arguments so that these can
  * be injected as method arguments if necessary.
  *
+ * <p>{@link PartitionAwareListener} and {@link ConsumerSeekAware} callbacks are passed
+ * to the listener bean if it implements those interfaces.
+ *
  * @param <K> the key type.
  * @param <V> the value type.
  *
@@ -43,7 +51,8 @@ import org.springframework.messaging.converter.MessageConversionException;
  * @author Gary Russell
  * @author Artem Bilan
  */
-public class MessagingMessageListenerAdapter<K, V> extends AbstractAdaptableMessageListener<K, V> {
+public class MessagingMessageListenerAdapter<K, V> extends AbstractAdaptableMessageListener<K, V>
+		implements PartitionAwareListener, ConsumerSeekAware {
 
 	private HandlerAdapter handlerMethod;
 
@@ -86,6 +95,38 @@ public class MessagingMessageListenerAdapter<K, V> extends AbstractAdaptableMess
 		invokeHandler(record, acknowledgment, message);
 	}
 
+	@Override
+	public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+		Object bean = this.handlerMethod.getBean();
+		if (bean instanceof PartitionAwareListener) {
+			((PartitionAwareListener) bean).onPartitionsAssigned(partitions);
+		}
+	}
+
+	@Override
+	public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+		Object bean = this.handlerMethod.getBean();
+		if (bean instanceof PartitionAwareListener) {
+			((PartitionAwareListener) bean).onPartitionsRevoked(partitions);
+		}
+	}
+
+	@Override
+	public void onIdle() {
+		Object bean = this.handlerMethod.getBean();
+		if (bean instanceof PartitionAwareListener) {
+			((PartitionAwareListener) bean).onIdle();
+		}
+	}
+
+	@Override
+	public void registerSeekCallback(ConsumerSeekCallback callback) {
+		Object bean = this.handlerMethod.getBean();
+		if (bean instanceof ConsumerSeekAware) {
+			((ConsumerSeekAware) bean).registerSeekCallback(callback);
+		}
+	}
+
 	protected Message<?> toMessagingMessage(ConsumerRecord<K, V> record, Acknowledgment acknowledgment) {
 		return getMessageConverter().toMessage(record, acknowledgment);
 	}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A bounded set of {@code long} fingerprints held in rotating generations of
+ * open-addressing hash tables, allocated in direct (off-heap) memory. Lookups consult
+ * all generations; inserts go to the current generation. When the current generation
+ * is full, or has been current for longer than the generation time, the oldest
+ * generation is cleared (evicting its entries) and becomes the current generation.
+ * A generation that was started longer ago than the generation time multiplied by the
+ * number of generations is also cleared before any lookup or insert, so no entry is
+ * retained for longer than that, even when the set has not been used in the meantime.
+ * <p>
+ * Not thread-safe; callers must synchronize.
+ *
+ * @author Gary Russell
+ */
+final class OffHeapFingerprintSet {
+
+	private static final long EMPTY = 0L;
+
+	private final LongBuffer[] tables;
+
+	private final int[] sizes;
+
+	private final int mask;
+
+	private final int maxSize;
+
+	private final long[] started;
+
+	private final long generationTime;
+
+	private final long expiry;
+
+	private int current;
+
+	private long evictions;
+
+	/**
+	 * Create a set.
+	 * @param generations the number of generations.
+	 * @param capacity the maximum number of entries in each generation.
+	 * @param generationTime the maximum time (ms) a generation remains current.
+	 */
+	OffHeapFingerprintSet(int generations, int capacity, long generationTime) {
+		int slots = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1; // load factor <= 0.5
+		this.tables = new LongBuffer[generations];
+		for (int i = 0; i < generations; i++) {
+			this.tables[i] = ByteBuffer.allocateDirect(slots * 8).asLongBuffer();
+		}
+		this.sizes = new int[generations];
+		this.started = new long[generations];
+		this.started[0] = System.currentTimeMillis();
+		this.mask = slots - 1;
+		this.maxSize = capacity;
+		this.generationTime = generationTime;
+		this.expiry = generationTime * generations;
+	}
+
+	/**
+	 * Return true if the fingerprint is present in any unexpired generation.
+	 * @param fingerprint the fingerprint.
+	 * @return true if present.
+	 */
+	boolean contains(long fingerprint) {
+		expire(System.currentTimeMillis());
+		long value = normalize(fingerprint);
+		for (LongBuffer table : this.tables) {
+			if (table.get(slot(table, value)) == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add the fingerprint to the current generation, rotating generations first if
+	 * necessary.
+	 * @param fingerprint the fingerprint.
+	 */
+	void add(long fingerprint) {
+		long value = normalize(fingerprint);
+		long now = System.currentTimeMillis();
+		expire(now);
+		if (this.sizes[this.current] >= this.maxSize) {
+			rotate(now);
+		}
+		LongBuffer table = this.tables[this.current];
+		int slot = slot(table, value);
+		if (table.get(slot) == EMPTY) {
+			table.put(slot, value);
+			this.sizes[this.current]++;
+		}
+	}
+
+	/**
+	 * Return the number of entries in all generations (an entry may be counted in more
+	 * than one generation).
+	 * @return the size.
+	 */
+	long size() {
+		long size = 0;
+		for (int generationSize : this.sizes) {
+			size += generationSize;
+		}
+		return size;
+	}
+
+	/**
+	 * Return the number of entries evicted so far.
+	 * @return the evictions.
+	 */
+	long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Rotate if the current generation has been current for longer than the generation
+	 * time, then clear all generations started longer ago than the expiry; after an
+	 * idle period, this may clear several (or all) generations.
+	 * @param now the current time.
+	 */
+	private void expire(long now) {
+		if (now - this.started[this.current] > this.generationTime) {
+			rotate(now);
+		}
+		for (int i = 0; i < this.tables.length; i++) {
+			if (this.sizes[i] > 0 && now - this.started[i] > this.expiry) {
+				clear(i);
+			}
+		}
+	}
+
+	private void rotate(long now) {
+		this.current = (this.current + 1) % this.tables.length;
+		clear(this.current);
+		this.started[this.current] = now;
+	}
+
+	private void clear(int generation) {
+		LongBuffer table = this.tables[generation];
+		for (int i = 0; i <= this.mask; i++) {
+			table.put(i, EMPTY);
+		}
+		this.evictions += this.sizes[generation];
+		this.sizes[generation] = 0;
+	}
+
+	/**
+	 * Return the slot containing the value, or the empty slot where it would be inserted.
+	 * @param table the table.
+	 * @param value the value.
+	 * @return the slot.
+	 */
+	private int slot(LongBuffer table, long value) {
+		int slot = mix(value) & this.mask;
+		long existing = table.get(slot);
+		while (existing != EMPTY && existing != value) {
+			slot = (slot + 1) & this.mask;
+			existing = table.get(slot);
+		}
+		return slot;
+	}
+
+	private static long normalize(long fingerprint) {
+		return fingerprint == EMPTY ? 1L : fingerprint;
+	}
+
+	private static int mix(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
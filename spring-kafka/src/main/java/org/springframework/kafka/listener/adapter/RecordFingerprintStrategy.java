@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Computes a 64-bit fingerprint identifying a record for the purpose of duplicate
+ * detection; for example, from its topic, partition and offset, or from a business key.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ * @see DeduplicatingMessageListenerAdapter
+ */
+public interface RecordFingerprintStrategy<K, V> {
+
+	/**
+	 * Return the fingerprint of the record.
+	 * @param record the record.
+	 * @return the fingerprint.
+	 */
+	long fingerprint(ConsumerRecord<K, V> record);
+
+}
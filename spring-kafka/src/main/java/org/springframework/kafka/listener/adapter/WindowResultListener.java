@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import org.apache.kafka.common.TopicPartition;
+
+import com.gs.collections.api.map.primitive.ObjectLongMap;
+
+/**
+ * Receives the aggregates of closed windows from a {@link WindowingMessageListenerAdapter}.
+ *
+ * @param <K> the key type.
+ *
+ * @author Gary Russell
+ */
+public interface WindowResultListener<K> {
+
+	/**
+	 * Invoked on the consumer thread when a window closes; the offsets of the records
+	 * contributing to the window are committed after this method returns.
+	 * @param partition the partition from which the records were received.
+	 * @param windowStart the window start time (inclusive).
+	 * @param windowEnd the window end time (exclusive).
+	 * @param results the aggregates for each key; only valid during this call.
+	 */
+	void onWindowClosed(TopicPartition partition, long windowStart, long windowEnd, ObjectLongMap<K> results);
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.PartitionAwareListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.Assert;
+
+import com.gs.collections.impl.map.mutable.primitive.ObjectLongHashMap;
+
+/**
+ * An {@link AcknowledgingMessageListener} adapter that aggregates records per key into
+ * tumbling or hopping processing-time windows using a {@link LongReducer}, and passes the
+ * aggregates of each window to a {@link WindowResultListener} when the window closes.
+ * <p>
+ * Aggregates are held in primitive {@code long} maps, separately for each partition; the
+ * offsets of records are only acknowledged after all the windows they contribute to have
+ * been passed to the result listener, so the container must be configured with
+ * {@code AckMode.MANUAL} or {@code AckMode.MANUAL_IMMEDIATE}. If partitions are revoked,
+ * their open windows are discarded; the new owner receives the uncommitted records again.
+ * <p>
+ * Windows are closed when a record is received or a poll returns no records, so results
+ * can be delayed beyond the window end by up to the container's poll timeout. Keys must
+ * implement {@code equals()} and {@code hashCode()} based on their value; for example, use
+ * a {@code StringDeserializer} rather than a {@code ByteArrayDeserializer} for keys.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class WindowingMessageListenerAdapter<K, V> implements AcknowledgingMessageListener<K, V>,
+		PartitionAwareListener {
+
+	protected final Log logger = LogFactory.getLog(this.getClass()); //NOSONAR
+
+	private final LongReducer<K, V> reducer;
+
+	private final WindowResultListener<K> resultListener;
+
+	private final long windowSize;
+
+	private final long advance;
+
+	private final ThreadLocal<Map<TopicPartition, PartitionWindows>> partitions =
+			new ThreadLocal<Map<TopicPartition, PartitionWindows>>() {
+
+				@Override
+				protected Map<TopicPartition, PartitionWindows> initialValue() {
+					return new HashMap<>();
+				}
+
+			};
+
+	private long initialValue;
+
+	/**
+	 * Construct an instance with tumbling windows.
+	 * @param reducer the reducer.
+	 * @param resultListener the result listener.
+	 * @param windowSize the window size (ms).
+	 */
+	public WindowingMessageListenerAdapter(LongReducer<K, V> reducer, WindowResultListener<K> resultListener,
+			long windowSize) {
+		this(reducer, resultListener, windowSize, windowSize);
+	}
+
+	/**
+	 * Construct an instance with hopping windows; each record contributes to
+	 * {@code windowSize / advance} windows.
+	 * @param reducer the reducer.
+	 * @param resultListener the result listener.
+	 * @param windowSize the window size (ms).
+	 * @param advance the interval (ms) between the start times of consecutive windows;
+	 * must not exceed the window size.
+	 */
+	public WindowingMessageListenerAdapter(LongReducer<K, V> reducer, WindowResultListener<K> resultListener,
+			long windowSize, long advance) {
+		Assert.notNull(reducer, "'reducer' cannot be null");
+		Assert.notNull(resultListener, "'resultListener' cannot be null");
+		Assert.isTrue(windowSize > 0, "'windowSize' must be greater than 0");
+		Assert.isTrue(advance > 0 && advance <= windowSize,
+				"'advance' must be greater than 0 and not greater than 'windowSize'");
+		this.reducer = reducer;
+		this.resultListener = resultListener;
+		this.windowSize = windowSize;
+		this.advance = advance;
+	}
+
+	/**
+	 * Set the aggregate value passed to the reducer for the first record of a key in a
+	 * window.
+	 * @param initialValue the initial value; default 0.
+	 */
+	public void setInitialValue(long initialValue) {
+		this.initialValue = initialValue;
+	}
+
+	@Override
+	public void onMessage(ConsumerRecord<K, V> record, Acknowledgment acknowledgment) {
+		Assert.state(acknowledgment != null,
+				"The container must be configured with AckMode.MANUAL or AckMode.MANUAL_IMMEDIATE");
+		long now = System.currentTimeMillis();
+		closeWindows(now);
+		Map<TopicPartition, PartitionWindows> partitionWindows = this.partitions.get();
+		TopicPartition topicPartition = new TopicPartition(record.topic(), record.partition());
+		PartitionWindows windows = partitionWindows.get(topicPartition);
+		if (windows == null) {
+			windows = new PartitionWindows();
+			partitionWindows.put(topicPartition, windows);
+		}
+		long lastStart = now - (now % this.advance);
+		for (long start = lastStart; start > now - this.windowSize; start -= this.advance) {
+			ObjectLongHashMap<K> aggregates = windows.aggregates.get(start);
+			if (aggregates == null) {
+				aggregates = new ObjectLongHashMap<>();
+				windows.aggregates.put(start, aggregates);
+			}
+			K key = record.key();
+			aggregates.put(key, this.reducer.reduce(aggregates.getIfAbsent(key, this.initialValue), record));
+		}
+		windows.acks.put(lastStart + this.windowSize, acknowledgment);
+	}
+
+	@Override
+	public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+		// No-op
+	}
+
+	@Override
+	public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+		this.partitions.get().keySet().removeAll(partitions);
+	}
+
+	@Override
+	public void onIdle() {
+		closeWindows(System.currentTimeMillis());
+	}
+
+	private void closeWindows(long now) {
+		for (Entry<TopicPartition, PartitionWindows> entry : this.partitions.get().entrySet()) {
+			PartitionWindows windows = entry.getValue();
+			Iterator<Entry<Long, ObjectLongHashMap<K>>> iterator = windows.aggregates.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Entry<Long, ObjectLongHashMap<K>> window = iterator.next();
+				long start = window.getKey();
+				if (start + this.windowSize > now) {
+					break;
+				}
+				iterator.remove();
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Closing window [" + start + ", " + (start + this.windowSize) + ") for "
+							+ entry.getKey() + " with " + window.getValue().size() + " keys");
+				}
+				this.resultListener.onWindowClosed(entry.getKey(), start, start + this.windowSize, window.getValue());
+			}
+			NavigableMap<Long, Acknowledgment> closed = windows.acks.headMap(now, true);
+			if (!closed.isEmpty()) {
+				// the latest record of all windows that are now closed
+				closed.lastEntry().getValue().acknowledge();
+				closed.clear();
+			}
+		}
+	}
+
+	private final class PartitionWindows {
+
+		private final TreeMap<Long, ObjectLongHashMap<K>> aggregates = new TreeMap<>();
+
+		private final TreeMap<Long, Acknowledgment> acks = new TreeMap<>();
+
+	}
+
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaException;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.util.Assert;
+
+/**
+ * A partition-scoped key/value store held in log-structured files on local disk, with
+ * an in-memory index of key to file position, backed up to a changelog topic.
+ * <p>
+ * The store is bound to a listener container's assignment by registering it as the
+ * container's {@code ConsumerRebalanceListener}: when partitions of the source topic are
+ * assigned, the corresponding partitions of the changelog topic (which must have the
+ * same number of partitions) are read from the beginning to restore the state. The local
+ * data of revoked partitions is retained until the rebalance completes; it is reused
+ * (without restoring) if the partition is assigned again, and deleted otherwise. Since
+ * the changelog is keyed by partition number only, the store can only be used for one
+ * source topic. Each write is appended to the local file and sent to the changelog topic
+ * with the same partition; call {@link #flush()} before committing offsets if the
+ * changelog must be durable at that point.
+ * <p>
+ * The restore runs in the rebalance callback on the consumer thread, which does not
+ * send heartbeats meanwhile; it is bounded by the {@link #setRestoreTimeout(long)
+ * restoreTimeout} (and abandoned if the store is {@link #close() closed}), which must
+ * be less than the consumer's {@code session.timeout.ms}, otherwise the consumer is
+ * considered dead and its partitions are reassigned before the restore completes.
+ * Keep the changelog topic compacted so that it can be read within that time.
+ * <p>
+ * Each partition must only be accessed by the consumer thread it is assigned to. Keys
+ * are compared by their serialized form.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class LocalStateStore<K, V> implements ConsumerRebalanceListener {
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final long DEFAULT_COMPACTION_THRESHOLD = 16 * 1024 * 1024;
+
+	protected final Log logger = LogFactory.getLog(this.getClass()); //NOSONAR
+
+	private final ConcurrentMap<Integer, PartitionLog> partitions = new ConcurrentHashMap<>();
+
+	private final ThreadLocal<Collection<TopicPartition>> revoked = new ThreadLocal<>();
+
+	private final File directory;
+
+	private final String changelogTopic;
+
+	private final KafkaOperations<byte[], byte[]> changelogTemplate;
+
+	private final ConsumerFactory<byte[], byte[]> restoreConsumerFactory;
+
+	private final Serializer<K> keySerializer;
+
+	private final Serializer<V> valueSerializer;
+
+	private final Deserializer<V> valueDeserializer;
+
+	private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+	private long restorePollTimeout = 1000;
+
+	private long restoreTimeout = 20000;
+
+	private volatile String sourceTopic;
+
+	private volatile boolean closed;
+
+	/**
+	 * Construct a store.
+	 * @param directory the directory for the local files.
+	 * @param changelogTopic the changelog topic.
+	 * @param changelogTemplate the template used to send changes to the changelog topic.
+	 * @param restoreConsumerFactory the factory for consumers used to restore the state;
+	 * should be configured with {@code enable.auto.commit=false}.
+	 * @param keySerializer the key serializer.
+	 * @param valueSerializer the value serializer.
+	 * @param valueDeserializer the value deserializer.
+	 */
+	public LocalStateStore(File directory, String changelogTopic, KafkaOperations<byte[], byte[]> changelogTemplate,
+			ConsumerFactory<byte[], byte[]> restoreConsumerFactory, Serializer<K> keySerializer,
+			Serializer<V> valueSerializer, Deserializer<V> valueDeserializer) {
+		Assert.notNull(directory, "'directory' cannot be null");
+		Assert.notNull(changelogTopic, "'changelogTopic' cannot be null");
+		Assert.notNull(changelogTemplate, "'changelogTemplate' cannot be null");
+		Assert.notNull(restoreConsumerFactory, "'restoreConsumerFactory' cannot be null");
+		Assert.notNull(keySerializer, "'keySerializer' cannot be null");
+		Assert.notNull(valueSerializer, "'valueSerializer' cannot be null");
+		Assert.notNull(valueDeserializer, "'valueDeserializer' cannot be null");
+		Assert.state(directory.isDirectory() || directory.mkdirs(), "Cannot create directory " + directory);
+		this.directory = directory;
+		this.changelogTopic = changelogTopic;
+		this.changelogTemplate = changelogTemplate;
+		this.restoreConsumerFactory = restoreConsumerFactory;
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.valueDeserializer = valueDeserializer;
+	}
+
+	/**
+	 * Set the file size above which a partition's file is compacted when more than half
+	 * of it is occupied by superseded entries.
+	 * @param compactionThreshold the threshold in bytes; default 16Mb.
+	 */
+	public void setCompactionThreshold(long compactionThreshold) {
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	/**
+	 * Set the poll timeout for the restore consumer.
+	 * @param restorePollTimeout the timeout in ms; default 1000.
+	 */
+	public void setRestorePollTimeout(long restorePollTimeout) {
+		this.restorePollTimeout = restorePollTimeout;
+	}
+
+	/**
+	 * Set the maximum time to restore the state of newly assigned partitions; if the
+	 * changelog has not been read up to its end in that time, the restore fails. Must be
+	 * less than the consumer's {@code session.timeout.ms} (default 30000) since the
+	 * consumer does not send heartbeats during the restore.
+	 * @param restoreTimeout the timeout in ms; default 20000.
+	 */
+	public void setRestoreTimeout(long restoreTimeout) {
+		this.restoreTimeout = restoreTimeout;
+	}
+
+	/**
+	 * Return the value for the key in the partition.
+	 * @param partition the partition.
+	 * @param key the key.
+	 * @return the value or null.
+	 */
+	public V get(int partition, K key) {
+		byte[] value = getLog(partition).get(serializeKey(key));
+		return value == null ? null : this.valueDeserializer.deserialize(this.changelogTopic, value);
+	}
+
+	/**
+	 * Store the value for the key in the partition, and send it to the changelog.
+	 * @param partition the partition.
+	 * @param key the key.
+	 * @param value the value; null deletes the key.
+	 */
+	public void put(int partition, K key, V value) {
+		byte[] keyBytes = serializeKey(key);
+		byte[] valueBytes = value == null ? null : this.valueSerializer.serialize(this.changelogTopic, value);
+		getLog(partition).put(keyBytes, valueBytes);
+		this.changelogTemplate.convertAndSend(this.changelogTopic, partition, keyBytes, valueBytes);
+	}
+
+	/**
+	 * Delete the key from the partition, and send a tombstone to the changelog.
+	 * @param partition the partition.
+	 * @param key the key.
+	 */
+	public void delete(int partition, K key) {
+		put(partition, key, null);
+	}
+
+	/**
+	 * Return the number of keys in the partition.
+	 * @param partition the partition.
+	 * @return the number of keys.
+	 */
+	public int size(int partition) {
+		return getLog(partition).index.size();
+	}
+
+	/**
+	 * Flush the changelog template, so that all changes sent so far are durable.
+	 */
+	public void flush() {
+		this.changelogTemplate.flush();
+	}
+
+	@Override
+	public void onPartitionsAssigned(Collection<TopicPartition> assigned) {
+		Collection<TopicPartition> revoked = this.revoked.get();
+		this.revoked.remove();
+		List<TopicPartition> toRestore = new ArrayList<>();
+		synchronized (this.partitions) {
+			for (TopicPartition partition : assigned) {
+				checkSourceTopic(partition);
+				PartitionLog log = this.partitions.get(partition.partition());
+				if (log != null && log.owner == null) {
+					// retained from the revocation
+					log.owner = Thread.currentThread();
+				}
+				else {
+					if (log != null) {
+						// not revoked (e.g. the consumer was closed); it may be stale
+						this.partitions.remove(partition.partition());
+						log.delete();
+					}
+					toRestore.add(partition);
+				}
+			}
+			if (revoked != null) {
+				for (TopicPartition partition : revoked) {
+					PartitionLog log = this.partitions.get(partition.partition());
+					if (log != null && log.owner == null) {
+						this.partitions.remove(partition.partition());
+						log.delete();
+					}
+				}
+			}
+		}
+		if (!toRestore.isEmpty()) {
+			restore(toRestore);
+		}
+	}
+
+	@Override
+	public void onPartitionsRevoked(Collection<TopicPartition> revoked) {
+		synchronized (this.partitions) {
+			for (TopicPartition partition : revoked) {
+				PartitionLog log = this.partitions.get(partition.partition());
+				if (log != null && log.owner == Thread.currentThread()) {
+					log.owner = null;
+				}
+			}
+		}
+		this.revoked.set(new HashSet<>(revoked));
+	}
+
+	/**
+	 * Close and delete the local files of all partitions.
+	 */
+	public void close() {
+		this.closed = true;
+		for (PartitionLog log : this.partitions.values()) {
+			log.delete();
+		}
+		this.partitions.clear();
+	}
+
+	private void restore(List<TopicPartition> assigned) {
+		List<TopicPartition> changelogPartitions = new ArrayList<>();
+		Map<Integer, PartitionLog> restoring = new HashMap<>();
+		for (TopicPartition partition : assigned) {
+			changelogPartitions.add(new TopicPartition(this.changelogTopic, partition.partition()));
+			restoring.put(partition.partition(), new PartitionLog(partition.partition()));
+		}
+		Consumer<byte[], byte[]> consumer = this.restoreConsumerFactory.createConsumer();
+		try {
+			TopicPartition[] partitionArray = changelogPartitions.toArray(new TopicPartition[changelogPartitions.size()]);
+			consumer.assign(changelogPartitions);
+			consumer.seekToEnd(partitionArray);
+			Map<TopicPartition, Long> endOffsets = new HashMap<>();
+			for (TopicPartition partition : changelogPartitions) {
+				endOffsets.put(partition, consumer.position(partition));
+			}
+			consumer.seekToBeginning(partitionArray);
+			long deadline = System.currentTimeMillis() + this.restoreTimeout;
+			int count = 0;
+			while (!caughtUp(consumer, endOffsets)) {
+				if (this.closed || Thread.currentThread().isInterrupted()) {
+					throw new IllegalStateException("Restore abandoned; the store was closed or the thread interrupted");
+				}
+				if (System.currentTimeMillis() > deadline) {
+					throw new IllegalStateException("Restore not complete within " + this.restoreTimeout + "ms");
+				}
+				ConsumerRecords<byte[], byte[]> records = consumer.poll(this.restorePollTimeout);
+				for (ConsumerRecord<byte[], byte[]> record : records) {
+					restoring.get(record.partition()).put(record.key(), record.value());
+					count++;
+				}
+			}
+			if (this.logger.isInfoEnabled()) {
+				this.logger.info("Restored " + count + " changes for " + changelogPartitions);
+			}
+		}
+		catch (RuntimeException e) {
+			for (PartitionLog log : restoring.values()) {
+				log.delete();
+			}
+			throw new KafkaException("Failed to restore state from " + changelogPartitions, e);
+		}
+		finally {
+			consumer.close();
+		}
+		for (TopicPartition partition : assigned) {
+			PartitionLog log = restoring.get(partition.partition());
+			log.owner = Thread.currentThread();
+			this.partitions.put(partition.partition(), log);
+		}
+	}
+
+	private boolean caughtUp(Consumer<byte[], byte[]> consumer, Map<TopicPartition, Long> endOffsets) {
+		for (Entry<TopicPartition, Long> entry : endOffsets.entrySet()) {
+			if (consumer.position(entry.getKey()) < entry.getValue()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private PartitionLog getLog(int partition) {
+		PartitionLog log = this.partitions.get(partition);
+		Assert.state(log != null, "Partition " + partition + " is not assigned");
+		return log;
+	}
+
+	private void checkSourceTopic(TopicPartition assigned) {
+		if (this.sourceTopic == null) {
+			this.sourceTopic = assigned.topic();
+		}
+		Assert.state(this.sourceTopic.equals(assigned.topic()), "A store can only be used for one source topic; "
+				+ assigned + " conflicts with " + this.sourceTopic);
+	}
+
+	private byte[] serializeKey(K key) {
+		Assert.notNull(key, "'key' cannot be null");
+		return this.keySerializer.serialize(this.changelogTopic, key);
+	}
+
+
+	/**
+	 * An append-only file of [key length][value length][key][value] entries, with an
+	 * index of the position of the latest entry for each key.
+	 */
+	private final class PartitionLog {
+
+		private final Map<ByteBuffer, Long> index = new HashMap<>();
+
+		private final int partition;
+
+		private volatile Thread owner;
+
+		private File file;
+
+		private FileChannel channel;
+
+		private long end;
+
+		private long garbage;
+
+		private PartitionLog(int partition) {
+			this.partition = partition;
+			this.file = new File(LocalStateStore.this.directory,
+					LocalStateStore.this.changelogTopic + "-" + partition + ".log");
+			this.channel = open(this.file);
+		}
+
+		private byte[] get(byte[] key) {
+			Long position = this.index.get(ByteBuffer.wrap(key));
+			if (position == null) {
+				return null;
+			}
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				readFully(header, position);
+				int keyLength = header.getInt(0);
+				ByteBuffer value = ByteBuffer.allocate(header.getInt(4));
+				readFully(value, position + HEADER_SIZE + keyLength);
+				return value.array();
+			}
+			catch (IOException e) {
+				throw new KafkaException("Failed to read from " + this.file, e);
+			}
+		}
+
+		private void put(byte[] key, byte[] value) {
+			ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+			Long previous;
+			if (value == null) {
+				previous = this.index.remove(keyBuffer);
+			}
+			else {
+				previous = this.index.put(keyBuffer, append(key, value));
+			}
+			if (previous != null) {
+				this.garbage += entrySize(previous);
+				if (this.end > LocalStateStore.this.compactionThreshold && this.garbage > this.end / 2) {
+					compact();
+				}
+			}
+		}
+
+		private long append(byte[] key, byte[] value) {
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + key.length + value.length);
+			buffer.putInt(key.length).putInt(value.length).put(key).put(value);
+			buffer.flip();
+			long position = this.end;
+			try {
+				while (buffer.hasRemaining()) {
+					this.end += this.channel.write(buffer, this.end);
+				}
+			}
+			catch (IOException e) {
+				throw new KafkaException("Failed to write to " + this.file, e);
+			}
+			return position;
+		}
+
+		private long entrySize(long position) {
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				readFully(header, position);
+				return HEADER_SIZE + header.getInt(0) + header.getInt(4);
+			}
+			catch (IOException e) {
+				throw new KafkaException("Failed to read from " + this.file, e);
+			}
+		}
+
+		private void compact() {
+			File compacted = new File(this.file.getPath() + ".compacting");
+			FileChannel newChannel = open(compacted);
+			long newEnd = 0;
+			try {
+				for (Entry<ByteBuffer, Long> entry : this.index.entrySet()) {
+					long size = entrySize(entry.getValue());
+					long transferred = 0;
+					while (transferred < size) {
+						transferred += this.channel.transferTo(entry.getValue() + transferred, size - transferred,
+								newChannel.position(newEnd + transferred));
+					}
+					entry.setValue(newEnd);
+					newEnd += size;
+				}
+				this.channel.close();
+				Assert.state(this.file.delete() && compacted.renameTo(this.file), "Failed to replace " + this.file);
+			}
+			catch (IOException e) {
+				throw new KafkaException("Failed to compact " + this.file, e);
+			}
+			if (LocalStateStore.this.logger.isDebugEnabled()) {
+				LocalStateStore.this.logger.debug("Compacted " + this.file + " from " + this.end + " to " + newEnd);
+			}
+			this.channel = newChannel;
+			this.end = newEnd;
+			this.garbage = 0;
+		}
+
+		private void readFully(ByteBuffer buffer, long position) throws IOException {
+			long pos = position;
+			while (buffer.hasRemaining()) {
+				int read = this.channel.read(buffer, pos);
+				if (read < 0) {
+					throw new IOException("Unexpected end of file " + this.file);
+				}
+				pos += read;
+			}
+		}
+
+		private void delete() {
+			try {
+				this.channel.close();
+			}
+			catch (IOException e) {
+				LocalStateStore.this.logger.debug("Failed to close " + this.file, e);
+			}
+			if (!this.file.delete()) {
+				LocalStateStore.this.logger.warn("Failed to delete " + this.file);
+			}
+			this.index.clear();
+		}
+
+		private FileChannel open(File file) {
+			try {
+				@SuppressWarnings("resource")
+				RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+				randomAccessFile.setLength(0);
+				return randomAccessFile.getChannel();
+			}
+			catch (IOException e) {
+				throw new KafkaException("Failed to open " + file + " for partition " + this.partition, e);
+			}
+		}
+
+	}
+
+}
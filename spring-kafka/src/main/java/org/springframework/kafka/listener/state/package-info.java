@@ -0,0 +1,4 @@
+/**
+ * Package for kafka listener state stores.
+ */
+package org.springframework.kafka.listener.state;
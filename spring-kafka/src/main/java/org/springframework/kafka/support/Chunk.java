@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A chunk of a large record value that has been split into several records: a magic
+ * number, the id of the value, the index of the chunk, the number of chunks and the
+ * length of the value, followed by the chunk's part of the value.
+ *
+ * @author Gary Russell
+ * @see org.springframework.kafka.core.ChunkingKafkaTemplate
+ * @see org.springframework.kafka.listener.adapter.ChunkReassemblingMessageListenerAdapter
+ */
+public final class Chunk {
+
+	/**
+	 * The size of the chunk header.
+	 */
+	public static final int HEADER_SIZE = 32;
+
+	private static final int MAGIC = 0x4b43484b;
+
+	private final UUID id;
+
+	private final int index;
+
+	private final int count;
+
+	private final int length;
+
+	private final byte[] chunk;
+
+	private Chunk(UUID id, int index, int count, int length, byte[] chunk) {
+		this.id = id;
+		this.index = index;
+		this.count = count;
+		this.length = length;
+		this.chunk = chunk;
+	}
+
+	/**
+	 * Return the id of the value, common to all its chunks.
+	 * @return the id.
+	 */
+	public UUID getId() {
+		return this.id;
+	}
+
+	/**
+	 * Return the index of this chunk.
+	 * @return the index.
+	 */
+	public int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Return the number of chunks of the value.
+	 * @return the count.
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Return the length of the value.
+	 * @return the length.
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * Return the size of this chunk's part of the value.
+	 * @return the size.
+	 */
+	public int getSize() {
+		return this.chunk.length - HEADER_SIZE;
+	}
+
+	/**
+	 * Copy this chunk's part of the value to the value.
+	 * @param value the value, with the length returned by {@link #getLength()}.
+	 * @param position the position of this chunk's part.
+	 */
+	public void copyTo(byte[] value, int position) {
+		System.arraycopy(this.chunk, HEADER_SIZE, value, position, getSize());
+	}
+
+	/**
+	 * Return true if the record value is a chunk: it starts with the magic number, the
+	 * count is positive, the index is less than the count, and the length is not
+	 * negative.
+	 * @param value the record value.
+	 * @return true if a chunk.
+	 */
+	public static boolean isChunk(byte[] value) {
+		if (value == null || value.length < HEADER_SIZE) {
+			return false;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(value);
+		if (buffer.getInt() != MAGIC) {
+			return false;
+		}
+		buffer.position(20);
+		int index = buffer.getInt();
+		int count = buffer.getInt();
+		int length = buffer.getInt();
+		return count > 0 && index >= 0 && index < count && length >= 0;
+	}
+
+	/**
+	 * Parse a chunk.
+	 * @param value the record value.
+	 * @return the chunk.
+	 * @throws IllegalArgumentException if the value is not a valid chunk.
+	 */
+	public static Chunk parse(byte[] value) {
+		if (!isChunk(value)) {
+			throw new IllegalArgumentException("Not a chunk");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(value);
+		buffer.getInt();
+		UUID id = new UUID(buffer.getLong(), buffer.getLong());
+		return new Chunk(id, buffer.getInt(), buffer.getInt(), buffer.getInt(), value);
+	}
+
+	/**
+	 * Split a value into chunks.
+	 * @param value the value.
+	 * @param chunkSize the maximum size of each chunk's part of the value.
+	 * @return the chunks.
+	 */
+	public static List<byte[]> split(byte[] value, int chunkSize) {
+		UUID id = UUID.randomUUID();
+		int count = (value.length + chunkSize - 1) / chunkSize;
+		List<byte[]> chunks = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int offset = i * chunkSize;
+			int size = Math.min(chunkSize, value.length - offset);
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size);
+			buffer.putInt(MAGIC);
+			buffer.putLong(id.getMostSignificantBits());
+			buffer.putLong(id.getLeastSignificantBits());
+			buffer.putInt(i);
+			buffer.putInt(count);
+			buffer.putInt(value.length);
+			buffer.put(value, offset, size);
+			chunks.add(buffer.array());
+		}
+		return chunks;
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The format of envelope records, each of which packs several logical messages into one
+ * Kafka record value: a magic number and a message count, followed by the length-prefixed
+ * key and value of each message (a length of -1 denotes null).
+ *
+ * @author Gary Russell
+ * @see org.springframework.kafka.core.EnvelopeKafkaTemplate
+ * @see org.springframework.kafka.listener.adapter.EnvelopeUnpackingMessageListenerAdapter
+ */
+public final class Envelope {
+
+	private static final int MAGIC = 0x4b454e56;
+
+	private static final int HEADER_SIZE = 8;
+
+	private Envelope() {
+		super();
+	}
+
+	/**
+	 * Return true if the value is an envelope: it starts with the magic number, and the
+	 * message count and lengths match the size of the value exactly.
+	 * @param value the record value.
+	 * @return true if an envelope.
+	 */
+	public static boolean isEnvelope(byte[] value) {
+		if (value == null || value.length < HEADER_SIZE) {
+			return false;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(value);
+		if (buffer.getInt() != MAGIC) {
+			return false;
+		}
+		int count = buffer.getInt();
+		if (count < 0) {
+			return false;
+		}
+		for (long i = 0; i < 2L * count; i++) {
+			if (buffer.remaining() < 4) {
+				return false;
+			}
+			int length = buffer.getInt();
+			if (length < -1 || length > buffer.remaining()) {
+				return false;
+			}
+			if (length > 0) {
+				buffer.position(buffer.position() + length);
+			}
+		}
+		return !buffer.hasRemaining();
+	}
+
+	/**
+	 * Unpack the messages from an envelope.
+	 * @param value the envelope.
+	 * @return the messages.
+	 */
+	public static List<Message> unpack(byte[] value) {
+		if (!isEnvelope(value)) {
+			throw new IllegalArgumentException("Not an envelope");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(value, 4, value.length - 4);
+		int count = buffer.getInt();
+		List<Message> messages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			byte[] key = getBytes(buffer);
+			messages.add(new Message(key, getBytes(buffer)));
+		}
+		return messages;
+	}
+
+	private static byte[] getBytes(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * A logical message in an envelope.
+	 */
+	public static final class Message {
+
+		private final byte[] key;
+
+		private final byte[] value;
+
+		Message(byte[] key, byte[] value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public byte[] getKey() {
+			return this.key;
+		}
+
+		public byte[] getValue() {
+			return this.value;
+		}
+
+	}
+
+	/**
+	 * Packs messages into an envelope.
+	 */
+	public static final class Builder {
+
+		private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		private int count;
+
+		/**
+		 * Add a message.
+		 * @param key the key.
+		 * @param value the value.
+		 * @return this builder.
+		 */
+		public Builder add(byte[] key, byte[] value) {
+			putBytes(key);
+			putBytes(value);
+			this.count++;
+			return this;
+		}
+
+		/**
+		 * Return the number of messages added.
+		 * @return the count.
+		 */
+		public int getCount() {
+			return this.count;
+		}
+
+		/**
+		 * Return the size of the envelope if it were built now.
+		 * @return the size in bytes.
+		 */
+		public int getSize() {
+			return HEADER_SIZE + this.stream.size();
+		}
+
+		/**
+		 * Return the size that a message would add to the envelope.
+		 * @param key the key.
+		 * @param value the value.
+		 * @return the size in bytes.
+		 */
+		public static int sizeOf(byte[] key, byte[] value) {
+			return 8 + (key == null ? 0 : key.length) + (value == null ? 0 : value.length);
+		}
+
+		/**
+		 * Build the envelope.
+		 * @return the envelope.
+		 */
+		public byte[] build() {
+			ByteBuffer buffer = ByteBuffer.allocate(getSize());
+			buffer.putInt(MAGIC);
+			buffer.putInt(this.count);
+			buffer.put(this.stream.toByteArray());
+			return buffer.array();
+		}
+
+		private void putBytes(byte[] bytes) {
+			int length = bytes == null ? -1 : bytes.length;
+			this.stream.write(length >>> 24);
+			this.stream.write(length >>> 16);
+			this.stream.write(length >>> 8);
+			this.stream.write(length);
+			if (bytes != null) {
+				this.stream.write(bytes, 0, bytes.length);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/**
+ * Result for a send: the record that was sent and the {@link RecordMetadata} returned
+ * by the broker or, for a record that was superseded by a later record with the same key
+ * before it was sent, an indication that it was coalesced.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class SendResult<K, V> {
+
+	private final ProducerRecord<K, V> producerRecord;
+
+	private final RecordMetadata recordMetadata;
+
+	private final boolean coalesced;
+
+	public SendResult(ProducerRecord<K, V> producerRecord, RecordMetadata recordMetadata) {
+		this(producerRecord, recordMetadata, false);
+	}
+
+	public SendResult(ProducerRecord<K, V> producerRecord, RecordMetadata recordMetadata, boolean coalesced) {
+		this.producerRecord = producerRecord;
+		this.recordMetadata = recordMetadata;
+		this.coalesced = coalesced;
+	}
+
+	public ProducerRecord<K, V> getProducerRecord() {
+		return this.producerRecord;
+	}
+
+	public RecordMetadata getRecordMetadata() {
+		return this.recordMetadata;
+	}
+
+	/**
+	 * Return true if the record was not sent because it was superseded by a later
+	 * record with the same key.
+	 * @return true if coalesced.
+	 */
+	public boolean isCoalesced() {
+		return this.coalesced;
+	}
+
+	@Override
+	public String toString() {
+		return "SendResult [producerRecord=" + this.producerRecord + ", recordMetadata=" + this.recordMetadata
+				+ (this.coalesced ? ", coalesced" : "") + "]";
+	}
+
+}
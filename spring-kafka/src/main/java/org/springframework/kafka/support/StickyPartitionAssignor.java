@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.internals.PartitionAssignor;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * A {@link PartitionAssignor} that keeps partitions with their current owners as far as
+ * possible while keeping the assignment balanced, so that a change in group membership
+ * (for example, increasing the concurrency of a listener container or starting another
+ * instance) moves only as many partitions as are needed to rebalance the group. This
+ * preserves per-partition state (caches, state stores, pending batches) across
+ * rebalances.
+ * <p>
+ * Each member reports its current partitions in its subscription; the leader first
+ * retains each member's current partitions (up to its share) and then assigns the
+ * remaining partitions, in order, to the eligible member with the fewest partitions.
+ * When all members have the same subscription, the number of partitions assigned to
+ * any two members differs by at most one.
+ * <p>
+ * Configure it with the {@code partition.assignment.strategy} consumer property; all
+ * members of the group must use it.
+ *
+ * @author Gary Russell
+ */
+public class StickyPartitionAssignor implements PartitionAssignor {
+
+	/**
+	 * The name of the assignment strategy.
+	 */
+	public static final String NAME = "sticky";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Log logger = LogFactory.getLog(StickyPartitionAssignor.class);
+
+	private static final Comparator<TopicPartition> TOPIC_PARTITION_COMPARATOR = new Comparator<TopicPartition>() {
+
+		@Override
+		public int compare(TopicPartition o1, TopicPartition o2) {
+			int diff = o1.topic().compareTo(o2.topic());
+			return diff != 0 ? diff : o1.partition() - o2.partition();
+		}
+
+	};
+
+	private volatile List<TopicPartition> currentAssignment = Collections.emptyList();
+
+	@Override
+	public String name() {
+		return NAME;
+	}
+
+	@Override
+	public Subscription subscription(Set<String> topics) {
+		return new Subscription(new ArrayList<>(topics), encode(this.currentAssignment));
+	}
+
+	@Override
+	public void onAssignment(Assignment assignment) {
+		this.currentAssignment = new ArrayList<>(assignment.partitions());
+	}
+
+	@Override
+	public Map<String, Assignment> assign(Cluster metadata, Map<String, Subscription> subscriptions) {
+		Set<TopicPartition> allPartitions = new TreeSet<>(TOPIC_PARTITION_COMPARATOR);
+		for (Subscription subscription : subscriptions.values()) {
+			for (String topic : subscription.topics()) {
+				Integer partitionCount = metadata.partitionCountForTopic(topic);
+				if (partitionCount != null) {
+					for (int i = 0; i < partitionCount; i++) {
+						allPartitions.add(new TopicPartition(topic, i));
+					}
+				}
+			}
+		}
+		List<String> members = new ArrayList<>(subscriptions.keySet());
+		Collections.sort(members);
+		Map<String, List<TopicPartition>> assignments = new LinkedHashMap<>();
+		Set<TopicPartition> retained = new HashSet<>();
+		for (String member : members) {
+			List<TopicPartition> owned = new ArrayList<>();
+			Subscription subscription = subscriptions.get(member);
+			for (TopicPartition partition : decode(subscription.userData())) {
+				if (allPartitions.contains(partition) && subscription.topics().contains(partition.topic())
+						&& retained.add(partition)) {
+					owned.add(partition);
+				}
+			}
+			assignments.put(member, owned);
+		}
+		trimToShare(members, assignments, allPartitions.size(), retained);
+		for (TopicPartition partition : allPartitions) {
+			if (!retained.contains(partition)) {
+				String target = null;
+				for (String member : members) {
+					if (subscriptions.get(member).topics().contains(partition.topic())
+							&& (target == null || assignments.get(member).size() < assignments.get(target).size())) {
+						target = member;
+					}
+				}
+				if (target != null) {
+					assignments.get(target).add(partition);
+				}
+			}
+		}
+		Map<String, Assignment> result = new HashMap<>();
+		for (Entry<String, List<TopicPartition>> entry : assignments.entrySet()) {
+			Collections.sort(entry.getValue(), TOPIC_PARTITION_COMPARATOR);
+			result.put(entry.getKey(), new Assignment(entry.getValue()));
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Assignments: " + assignments);
+		}
+		return result;
+	}
+
+	/**
+	 * Remove retained partitions beyond each member's share; members currently owning
+	 * the most partitions are given the larger shares, to minimize movement.
+	 * @param members the members.
+	 * @param assignments the retained partitions of each member.
+	 * @param partitionCount the total number of partitions.
+	 * @param retained the set of all retained partitions.
+	 */
+	private static void trimToShare(List<String> members, final Map<String, List<TopicPartition>> assignments,
+			int partitionCount, Set<TopicPartition> retained) {
+		if (members.isEmpty()) {
+			return;
+		}
+		List<String> byOwned = new ArrayList<>(members);
+		Collections.sort(byOwned, new Comparator<String>() {
+
+			@Override
+			public int compare(String o1, String o2) {
+				int diff = assignments.get(o2).size() - assignments.get(o1).size();
+				return diff != 0 ? diff : o1.compareTo(o2);
+			}
+
+		});
+		int share = partitionCount / members.size();
+		int larger = partitionCount % members.size();
+		for (int i = 0; i < byOwned.size(); i++) {
+			List<TopicPartition> owned = assignments.get(byOwned.get(i));
+			int memberShare = i < larger ? share + 1 : share;
+			while (owned.size() > memberShare) {
+				retained.remove(owned.remove(owned.size() - 1));
+			}
+		}
+	}
+
+	private static ByteBuffer encode(List<TopicPartition> partitions) {
+		List<byte[]> topics = new ArrayList<>(partitions.size());
+		int size = 4;
+		for (TopicPartition partition : partitions) {
+			byte[] topic = partition.topic().getBytes(UTF_8);
+			topics.add(topic);
+			size += 2 + topic.length + 4;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(partitions.size());
+		for (int i = 0; i < partitions.size(); i++) {
+			buffer.putShort((short) topics.get(i).length);
+			buffer.put(topics.get(i));
+			buffer.putInt(partitions.get(i).partition());
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static List<TopicPartition> decode(ByteBuffer userData) {
+		List<TopicPartition> partitions = new ArrayList<>();
+		if (userData == null || !userData.hasRemaining()) {
+			return partitions;
+		}
+		ByteBuffer buffer = userData.duplicate();
+		try {
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				byte[] topic = new byte[buffer.getShort()];
+				buffer.get(topic);
+				partitions.add(new TopicPartition(new String(topic, UTF_8), buffer.getInt()));
+			}
+		}
+		catch (BufferUnderflowException | NegativeArraySizeException e) {
+			logger.warn("Ignoring invalid subscription user data", e);
+			partitions.clear();
+		}
+		return partitions;
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support.converter;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import org.springframework.kafka.support.serializer.AvroDeserializer;
+import org.springframework.kafka.support.serializer.AvroSchemaSource;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessagingMessageConverter} that decodes {@code byte[]} record values to Avro
+ * specific or generic records, for use with a {@code ByteArrayDeserializer}.
+ * Values that are not {@code byte[]} (e.g. already decoded by an
+ * {@link AvroDeserializer}) are passed through unchanged.
+ * <p>
+ * Deferring the decoding to the converter means records can be inspected (or
+ * discarded) before the cost of decoding the value is incurred.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ *
+ * @author Gary Russell
+ */
+public class AvroMessagingMessageConverter<K, V> extends MessagingMessageConverter<K, V> {
+
+	private final AvroDeserializer<?> deserializer;
+
+	/**
+	 * Construct an instance that decodes to generic records.
+	 * @param schemaSource the schema source.
+	 */
+	public AvroMessagingMessageConverter(AvroSchemaSource schemaSource) {
+		this(new AvroDeserializer<Object>(schemaSource));
+	}
+
+	/**
+	 * Construct an instance that decodes to the target type.
+	 * @param targetType the target type.
+	 * @param schemaSource the schema source; may be null for specific record types.
+	 * @param <T> the target type.
+	 */
+	public <T> AvroMessagingMessageConverter(Class<T> targetType, AvroSchemaSource schemaSource) {
+		this(new AvroDeserializer<T>(targetType, schemaSource));
+	}
+
+	/**
+	 * Construct an instance that uses the provided deserializer.
+	 * @param deserializer the deserializer.
+	 */
+	public AvroMessagingMessageConverter(AvroDeserializer<?> deserializer) {
+		Assert.notNull(deserializer, "'deserializer' cannot be null");
+		this.deserializer = deserializer;
+	}
+
+	@Override
+	protected Object extractPayload(ConsumerRecord<K, V> record) {
+		V value = extractAndConvertValue(record);
+		if (value instanceof byte[]) {
+			return this.deserializer.deserialize(record.topic(), (byte[]) value);
+		}
+		return value;
+	}
+
+}
@@ -75,7 +75,7 @@ public class MessagingMessageConverter<K, V> implements MessageConverter<K, V> {
 			rawHeaders.put(KafkaHeaders.ACKNOWLEDGMENT, acknowledgment);
 		}
 
-		return MessageBuilder.createMessage(extractAndConvertValue(record), kafkaMessageHeaders);
+		return MessageBuilder.createMessage(extractPayload(record), kafkaMessageHeaders);
 	}
 
 	/**
@@ -87,6 +87,17 @@ public class MessagingMessageConverter<K, V> implements MessageConverter<K, V> {
 		return record.value();
 	}
 
+	/**
+	 * Return the message payload for the record; by default, the result of
+	 * {@link #extractAndConvertValue(ConsumerRecord)}. Subclasses that produce a payload
+	 * of a different type than the record value can override this method.
+	 * @param record the record.
+	 * @return the payload.
+	 */
+	protected Object extractPayload(ConsumerRecord<K, V> record) {
+		return extractAndConvertValue(record);
+	}
+
 	@SuppressWarnings("serial")
 	private static class KafkaMessageHeaders extends MessageHeaders {
 
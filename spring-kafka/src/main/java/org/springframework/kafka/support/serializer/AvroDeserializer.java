@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support.serializer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A Kafka {@link Deserializer} for data written by the {@link AvroSerializer}.
+ * <p>
+ * The writer schema (and, optionally, a different reader schema) for each topic is
+ * obtained from an {@link AvroSchemaSource}. When the target type is a
+ * {@link SpecificRecord} class, specific records are returned and, if no schema source
+ * is provided, the class schema is used as both writer and reader schema; otherwise
+ * generic records are returned.
+ * <p>
+ * {@link DatumReader}s are cached per topic and decoders are reused for each thread.
+ * <p>
+ * When instantiated by the consumer from its configuration, the target type and schema
+ * source are taken from the {@code KEY_*} or {@code VALUE_*} properties; the property
+ * values can be a {@link Class}, a class name or (for the schema source) an instance.
+ *
+ * @param <T> the record type.
+ *
+ * @author Gary Russell
+ */
+public class AvroDeserializer<T> implements Deserializer<T> {
+
+	/**
+	 * Consumer property for the key {@link AvroSchemaSource}.
+	 */
+	public static final String KEY_SCHEMA_SOURCE = "spring.kafka.avro.key.schema.source";
+
+	/**
+	 * Consumer property for the value {@link AvroSchemaSource}.
+	 */
+	public static final String VALUE_SCHEMA_SOURCE = "spring.kafka.avro.value.schema.source";
+
+	/**
+	 * Consumer property for the key target type.
+	 */
+	public static final String KEY_TYPE = "spring.kafka.avro.key.type";
+
+	/**
+	 * Consumer property for the value target type.
+	 */
+	public static final String VALUE_TYPE = "spring.kafka.avro.value.type";
+
+	private final ConcurrentMap<String, DatumReader<T>> readers = new ConcurrentHashMap<>();
+
+	private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<>();
+
+	private volatile Class<T> targetType;
+
+	private volatile AvroSchemaSource schemaSource;
+
+	/**
+	 * Construct an instance to be configured from the consumer properties.
+	 */
+	public AvroDeserializer() {
+		super();
+	}
+
+	/**
+	 * Construct an instance returning generic records, using the schema source to resolve
+	 * schemas.
+	 * @param schemaSource the schema source.
+	 */
+	public AvroDeserializer(AvroSchemaSource schemaSource) {
+		this(null, schemaSource);
+	}
+
+	/**
+	 * Construct an instance returning records of the target type, using its schema as
+	 * writer and reader schema.
+	 * @param targetType the target type.
+	 */
+	public AvroDeserializer(Class<T> targetType) {
+		this(targetType, null);
+	}
+
+	/**
+	 * Construct an instance returning records of the target type, using the schema
+	 * source to resolve schemas.
+	 * @param targetType the target type; if null, generic records are returned.
+	 * @param schemaSource the schema source; may be null for specific target types.
+	 */
+	public AvroDeserializer(Class<T> targetType, AvroSchemaSource schemaSource) {
+		this.targetType = targetType;
+		this.schemaSource = schemaSource;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		Object type = configs.get(isKey ? KEY_TYPE : VALUE_TYPE);
+		if (type != null && this.targetType == null) {
+			this.targetType = (Class<T>) resolveClass(type);
+		}
+		Object source = configs.get(isKey ? KEY_SCHEMA_SOURCE : VALUE_SCHEMA_SOURCE);
+		if (source != null && this.schemaSource == null) {
+			if (source instanceof AvroSchemaSource) {
+				this.schemaSource = (AvroSchemaSource) source;
+			}
+			else {
+				Class<?> sourceClass = resolveClass(source);
+				Assert.isTrue(AvroSchemaSource.class.isAssignableFrom(sourceClass),
+						sourceClass + " is not an " + AvroSchemaSource.class.getName());
+				this.schemaSource = (AvroSchemaSource) BeanUtils.instantiateClass(sourceClass);
+			}
+		}
+	}
+
+	@Override
+	public T deserialize(String topic, byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		DatumReader<T> reader = getReader(topic);
+		BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(data, this.decoders.get());
+		this.decoders.set(decoder);
+		try {
+			return reader.read(null, decoder);
+		}
+		catch (IOException | RuntimeException e) {
+			throw new SerializationException("Can't deserialize Avro data from topic '" + topic + "'", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		// No-op
+	}
+
+	private DatumReader<T> getReader(String topic) {
+		DatumReader<T> reader = this.readers.get(topic);
+		if (reader == null) {
+			reader = createReader(topic);
+			DatumReader<T> existing = this.readers.putIfAbsent(topic, reader);
+			if (existing != null) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+
+	private DatumReader<T> createReader(String topic) {
+		boolean specific = this.targetType != null && SpecificRecord.class.isAssignableFrom(this.targetType);
+		Schema writerSchema;
+		Schema readerSchema = null;
+		if (this.schemaSource != null) {
+			writerSchema = this.schemaSource.getWriterSchema(topic);
+			readerSchema = this.schemaSource.getReaderSchema(topic);
+		}
+		else {
+			Assert.state(specific, "An AvroSchemaSource is required unless the target type is a SpecificRecord");
+			writerSchema = SpecificData.get().getSchema(this.targetType);
+		}
+		if (readerSchema == null) {
+			readerSchema = specific ? SpecificData.get().getSchema(this.targetType) : writerSchema;
+		}
+		if (specific) {
+			return new SpecificDatumReader<>(writerSchema, readerSchema);
+		}
+		else {
+			return new GenericDatumReader<>(writerSchema, readerSchema);
+		}
+	}
+
+	private static Class<?> resolveClass(Object type) {
+		if (type instanceof Class) {
+			return (Class<?>) type;
+		}
+		Assert.isTrue(type instanceof String, "Expected a Class or class name, not " + type);
+		return ClassUtils.resolveClassName((String) type, ClassUtils.getDefaultClassLoader());
+	}
+
+}
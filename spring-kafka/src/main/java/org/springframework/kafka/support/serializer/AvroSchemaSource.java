@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support.serializer;
+
+import org.apache.avro.Schema;
+
+/**
+ * Strategy for resolving the Avro {@link Schema}s used to decode the data on a topic.
+ * Implementations must resolve schemas locally (no remote registry lookups) because
+ * they are consulted on the consumer thread; results are cached by the callers.
+ *
+ * @author Gary Russell
+ */
+public interface AvroSchemaSource {
+
+	/**
+	 * Return the schema the data on the topic was written with.
+	 * @param topic the topic.
+	 * @return the writer schema; must not be null.
+	 */
+	Schema getWriterSchema(String topic);
+
+	/**
+	 * Return the schema the data on the topic should be decoded to; if null, the
+	 * writer schema (or the schema of the target specific record type) is used.
+	 * @param topic the topic.
+	 * @return the reader schema, or null.
+	 */
+	Schema getReaderSchema(String topic);
+
+}
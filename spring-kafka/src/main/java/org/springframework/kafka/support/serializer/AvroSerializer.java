@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * A Kafka {@link Serializer} that writes Avro specific or generic records using the
+ * binary encoding, without any schema information in the payload; consumers resolve
+ * the writer schema through an {@link AvroSchemaSource}.
+ * <p>
+ * {@link DatumWriter}s are cached per schema; the encoder and its buffer are reused
+ * for each thread, since producers serialize on the calling thread.
+ *
+ * @param <T> the record type.
+ *
+ * @author Gary Russell
+ */
+public class AvroSerializer<T extends GenericContainer> implements Serializer<T> {
+
+	private final ConcurrentMap<Schema, DatumWriter<T>> writers = new ConcurrentHashMap<>();
+
+	private final ThreadLocal<EncoderHolder> encoders = new ThreadLocal<EncoderHolder>() {
+
+		@Override
+		protected EncoderHolder initialValue() {
+			return new EncoderHolder();
+		}
+
+	};
+
+	@Override
+	public void configure(Map<String, ?> configs, boolean isKey) {
+		// No-op
+	}
+
+	@Override
+	public byte[] serialize(String topic, T data) {
+		if (data == null) {
+			return null;
+		}
+		DatumWriter<T> writer = getWriter(data);
+		EncoderHolder holder = this.encoders.get();
+		holder.stream.reset();
+		holder.encoder = EncoderFactory.get().binaryEncoder(holder.stream, holder.encoder);
+		try {
+			writer.write(data, holder.encoder);
+			holder.encoder.flush();
+		}
+		catch (IOException | RuntimeException e) {
+			throw new SerializationException("Can't serialize Avro data for topic '" + topic + "'", e);
+		}
+		return holder.stream.toByteArray();
+	}
+
+	@Override
+	public void close() {
+		// No-op
+	}
+
+	private DatumWriter<T> getWriter(T data) {
+		Schema schema = data.getSchema();
+		DatumWriter<T> writer = this.writers.get(schema);
+		if (writer == null) {
+			if (data instanceof SpecificRecord) {
+				writer = new SpecificDatumWriter<>(schema);
+			}
+			else {
+				writer = new GenericDatumWriter<>(schema);
+			}
+			DatumWriter<T> existing = this.writers.putIfAbsent(schema, writer);
+			if (existing != null) {
+				writer = existing;
+			}
+		}
+		return writer;
+	}
+
+	private static final class EncoderHolder {
+
+		private final ByteArrayOutputStream stream = new ByteArrayOutputStream(1024);
+
+		private BinaryEncoder encoder;
+
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+
+import org.springframework.core.io.Resource;
+import org.springframework.kafka.core.KafkaException;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link AvroSchemaSource} backed by in-memory maps of topic to schema, with
+ * optional defaults for topics that have no explicit mapping.
+ *
+ * @author Gary Russell
+ */
+public class SimpleAvroSchemaSource implements AvroSchemaSource {
+
+	private final Map<String, Schema> writerSchemas = new ConcurrentHashMap<>();
+
+	private final Map<String, Schema> readerSchemas = new ConcurrentHashMap<>();
+
+	private volatile Schema defaultWriterSchema;
+
+	private volatile Schema defaultReaderSchema;
+
+	/**
+	 * Construct an instance with no default schemas; topic mappings must be added.
+	 */
+	public SimpleAvroSchemaSource() {
+		super();
+	}
+
+	/**
+	 * Construct an instance using the supplied schema as the default writer schema.
+	 * @param defaultWriterSchema the default writer schema.
+	 */
+	public SimpleAvroSchemaSource(Schema defaultWriterSchema) {
+		this.defaultWriterSchema = defaultWriterSchema;
+	}
+
+	/**
+	 * Set the writer schema used for topics with no explicit mapping.
+	 * @param defaultWriterSchema the schema.
+	 */
+	public void setDefaultWriterSchema(Schema defaultWriterSchema) {
+		this.defaultWriterSchema = defaultWriterSchema;
+	}
+
+	/**
+	 * Set the reader schema used for topics with no explicit mapping.
+	 * @param defaultReaderSchema the schema.
+	 */
+	public void setDefaultReaderSchema(Schema defaultReaderSchema) {
+		this.defaultReaderSchema = defaultReaderSchema;
+	}
+
+	/**
+	 * Map a writer schema to a topic.
+	 * @param topic the topic.
+	 * @param schema the schema.
+	 * @return this source.
+	 */
+	public SimpleAvroSchemaSource addWriterSchema(String topic, Schema schema) {
+		Assert.notNull(topic, "'topic' cannot be null");
+		Assert.notNull(schema, "'schema' cannot be null");
+		this.writerSchemas.put(topic, schema);
+		return this;
+	}
+
+	/**
+	 * Map a reader schema to a topic.
+	 * @param topic the topic.
+	 * @param schema the schema.
+	 * @return this source.
+	 */
+	public SimpleAvroSchemaSource addReaderSchema(String topic, Schema schema) {
+		Assert.notNull(topic, "'topic' cannot be null");
+		Assert.notNull(schema, "'schema' cannot be null");
+		this.readerSchemas.put(topic, schema);
+		return this;
+	}
+
+	@Override
+	public Schema getWriterSchema(String topic) {
+		Schema schema = this.writerSchemas.get(topic);
+		if (schema == null) {
+			schema = this.defaultWriterSchema;
+		}
+		if (schema == null) {
+			throw new KafkaException("No writer schema available for topic '" + topic + "'");
+		}
+		return schema;
+	}
+
+	@Override
+	public Schema getReaderSchema(String topic) {
+		Schema schema = this.readerSchemas.get(topic);
+		return schema == null ? this.defaultReaderSchema : schema;
+	}
+
+	/**
+	 * Parse a schema from a resource, such as an {@code .avsc} file on the classpath.
+	 * @param resource the resource.
+	 * @return the schema.
+	 */
+	public static Schema parse(Resource resource) {
+		InputStream inputStream = null;
+		try {
+			inputStream = resource.getInputStream();
+			return new Schema.Parser().parse(inputStream);
+		}
+		catch (IOException e) {
+			throw new KafkaException("Failed to parse Avro schema from " + resource, e);
+		}
+		finally {
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				}
+				catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for kafka serializers and deserializers
+ */
+package org.springframework.kafka.support.serializer;
@@ -18,7 +18,10 @@ package org.springframework.kafka.annotation;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -40,8 +43,11 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.kafka.listener.KafkaMessageListenerContainer;
 import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.PartitionAwareListener;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.kafka.test.rule.KafkaEmbedded;
@@ -64,11 +70,14 @@ public class EnableKafkaIntegrationTests {
 
 	@ClassRule
 	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, "annotated1", "annotated2", "annotated3",
-			"annotated4", "annotated5", "annotated6");
+			"annotated4", "annotated5", "annotated6", "annotated7", "annotated8", "annotated9");
 
 	@Autowired
 	public Listener listener;
 
+	@Autowired
+	public SeekListener seekListener;
+
 	@Autowired
 	public KafkaTemplate<Integer, String> template;
 
@@ -110,6 +119,47 @@ public class EnableKafkaIntegrationTests {
 		assertThat(this.listener.latch5.await(10, TimeUnit.SECONDS)).isTrue();
 	}
 
+	@Test
+	public void testFilter() throws Exception {
+		waitListening("buz");
+		template.convertAndSend("annotated7", 0, "foo");
+		template.convertAndSend("annotated7", 0, "bar");
+		template.flush();
+		assertThat(this.listener.latch6.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(this.listener.filtered).isEqualTo("bar");
+	}
+
+	@Test
+	public void testSeek() throws Exception {
+		waitListening("seek");
+		assertThat(this.seekListener.assigned).isNotEmpty();
+		template.convertAndSend("annotated8", 0, "foo");
+		template.convertAndSend("annotated8", 0, "bar");
+		template.flush();
+		assertThat(this.seekListener.latch1.await(10, TimeUnit.SECONDS)).isTrue();
+		this.seekListener.callback.seek("annotated8", 0, 0);
+		assertThat(this.seekListener.latch2.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(this.seekListener.received).containsExactly("foo", "bar", "foo", "bar");
+	}
+
+	@Test
+	public void testListenerProperties() throws Exception {
+		waitListening("tuned");
+		@SuppressWarnings("unchecked")
+		ConcurrentMessageListenerContainer<Integer, String> container =
+				(ConcurrentMessageListenerContainer<Integer, String>) registry.getListenerContainer("tuned");
+		assertThat(container.getContainers()).hasSize(2);
+		assertThat(container.getPollTimeout()).isEqualTo(500L);
+		assertThat(container.getAckMode()).isEqualTo(AckMode.COUNT);
+		assertThat(container.getAckCount()).isEqualTo(10);
+		assertThat(container.getConsumerProperties()).containsEntry("fetch.max.wait.ms", "100")
+				.containsEntry("session.timeout.ms", "20000");
+		assertThat(container.getContainers().get(0).getConsumerProperties()).containsEntry("fetch.max.wait.ms", "100");
+		template.convertAndSend("annotated9", 0, "foo");
+		template.flush();
+		assertThat(this.listener.latch7.await(10, TimeUnit.SECONDS)).isTrue();
+	}
+
 	private void waitListening(String id) throws InterruptedException {
 		MessageListenerContainer container = registry.getListenerContainer(id);
 		@SuppressWarnings("unchecked")
@@ -160,11 +210,28 @@ public class EnableKafkaIntegrationTests {
 			return KafkaTestUtils.consumerProps("testAnnot", "true", embeddedKafka);
 		}
 
+		@Bean
+		public RecordFilterStrategy<Integer, String> recordFilter() {
+			return new RecordFilterStrategy<Integer, String>() {
+
+				@Override
+				public boolean filter(ConsumerRecord<Integer, String> consumerRecord) {
+					return consumerRecord.value().equals("foo");
+				}
+
+			};
+		}
+
 		@Bean
 		public Listener listener() {
 			return new Listener();
 		}
 
+		@Bean
+		public SeekListener seekListener() {
+			return new SeekListener();
+		}
+
 		@Bean
 		public ProducerFactory<Integer, String> producerFactory() {
 			return new DefaultKafkaProducerFactory<>(producerConfigs());
@@ -194,12 +261,18 @@ public class EnableKafkaIntegrationTests {
 
 		private final CountDownLatch latch5 = new CountDownLatch(1);
 
+		private final CountDownLatch latch6 = new CountDownLatch(1);
+
+		private final CountDownLatch latch7 = new CountDownLatch(1);
+
 		private volatile Integer partition;
 
 		private volatile ConsumerRecord<?, ?> record;
 
 		private volatile Acknowledgment ack;
 
+		private volatile String filtered;
+
 		@KafkaListener(id = "foo", topics = "annotated1")
 		public void listen1(String foo) {
 			this.latch1.countDown();
@@ -233,6 +306,62 @@ public class EnableKafkaIntegrationTests {
 			this.latch5.countDown();
 		}
 
+		@KafkaListener(id = "tuned", topics = "annotated9", concurrency = "2", pollTimeout = "#{500}",
+				ackMode = "COUNT", ackCount = "#{5 * 2}",
+				properties = { "fetch.max.wait.ms=100", "#{{'session.timeout.ms': '20000'}}" })
+		public void listen7(String foo) {
+			this.latch7.countDown();
+		}
+
+		@KafkaListener(id = "buz", topics = "annotated7", filter = "recordFilter")
+		public void listen6(String foo) {
+			if (this.filtered == null) {
+				this.filtered = foo;
+			}
+			this.latch6.countDown();
+		}
+
+	}
+
+	public static class SeekListener implements PartitionAwareListener, ConsumerSeekAware {
+
+		private final CountDownLatch latch1 = new CountDownLatch(2);
+
+		private final CountDownLatch latch2 = new CountDownLatch(4);
+
+		private final List<String> received = new CopyOnWriteArrayList<>();
+
+		private final List<org.apache.kafka.common.TopicPartition> assigned = new CopyOnWriteArrayList<>();
+
+		private volatile ConsumerSeekCallback callback;
+
+		@KafkaListener(id = "seek", topics = "annotated8")
+		public void listen(String foo) {
+			this.received.add(foo);
+			this.latch1.countDown();
+			this.latch2.countDown();
+		}
+
+		@Override
+		public void registerSeekCallback(ConsumerSeekCallback callback) {
+			this.callback = callback;
+		}
+
+		@Override
+		public void onPartitionsAssigned(Collection<org.apache.kafka.common.TopicPartition> partitions) {
+			this.assigned.addAll(partitions);
+		}
+
+		@Override
+		public void onPartitionsRevoked(Collection<org.apache.kafka.common.TopicPartition> partitions) {
+			this.assigned.removeAll(partitions);
+		}
+
+		@Override
+		public void onIdle() {
+			// no-op
+		}
+
 	}
 
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class KafkaOutboxTests {
+
+	private static final String OUTBOX_TOPIC = "outboxTopic";
+
+	private static final String OVERSIZED_TOPIC = "outboxOversizedTopic";
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, 1, OUTBOX_TOPIC, OVERSIZED_TOPIC);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testJournalRecovery() throws Exception {
+		File directory = this.folder.newFolder();
+		OutboxJournal journal = new OutboxJournal(directory, 64, false);
+		for (int i = 0; i < 5; i++) {
+			journal.append(new ProducerRecord<>("foo", i, new byte[] { (byte) i }, ("bar" + i).getBytes()));
+		}
+		List<OutboxJournal.Entry> entries = journal.read(10);
+		assertThat(entries).hasSize(5);
+		assertThat(directory.list()).hasSize(5);
+		journal.acknowledge(entries.get(1));
+		assertThat(directory.list()).hasSize(3);
+		journal.close();
+		journal = new OutboxJournal(directory, 64, false);
+		entries = journal.read(10);
+		assertThat(entries).hasSize(3);
+		ProducerRecord<byte[], byte[]> record = entries.get(0).getRecord();
+		assertThat(record.topic()).isEqualTo("foo");
+		assertThat(record.partition()).isEqualTo(2);
+		assertThat(record.key()).isEqualTo(new byte[] { 2 });
+		assertThat(new String(record.value())).isEqualTo("bar2");
+		journal.rewind();
+		assertThat(journal.read(10)).hasSize(3);
+		journal.acknowledge(entries.get(2));
+		assertThat(journal.isEmpty()).isTrue();
+		assertThat(directory.list()).hasSize(1);
+		journal.close();
+	}
+
+	@Test
+	public void testRelayAfterBounce() throws Exception {
+		Map<String, Object> relayProps = KafkaTestUtils.producerProps(embeddedKafka);
+		relayProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+		relayProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+		KafkaOutbox<Integer, String> outbox = new KafkaOutbox<>(this.folder.newFolder(), 1024 * 1024,
+				new DefaultKafkaProducerFactory<byte[], byte[]>(relayProps), new IntegerSerializer(),
+				new StringSerializer());
+		outbox.setRelayInterval(500);
+		outbox.setRelayTimeout(5000);
+		outbox.start();
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		senderProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 2000);
+		senderProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 2000);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(
+				new DefaultKafkaProducerFactory<Integer, String>(senderProps));
+		template.setDefaultTopic(OUTBOX_TOPIC);
+		template.setOutbox(outbox);
+		assertThat(template.syncConvertAndSend(0, "foo")).isNotNull();
+		embeddedKafka.bounce(0);
+		SendResult<Integer, String> bar = template.convertAndSend(1, "bar").get(30, TimeUnit.SECONDS);
+		SendResult<Integer, String> baz = template.convertAndSend(2, "baz").get(30, TimeUnit.SECONDS);
+		assertThat(bar.getRecordMetadata()).isNull();
+		assertThat(baz.getRecordMetadata()).isNull();
+		assertThat(outbox.isBacklogged()).isTrue();
+		embeddedKafka.restart(0);
+		int n = 0;
+		while (n++ < 600 && outbox.isBacklogged()) {
+			Thread.sleep(100);
+		}
+		assertThat(outbox.isBacklogged()).isFalse();
+		outbox.stop();
+
+		Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("testOutbox", "false", embeddedKafka);
+		consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		Consumer<Integer, String> consumer =
+				new DefaultKafkaConsumerFactory<Integer, String>(consumerProps).createConsumer();
+		consumer.subscribe(Collections.singletonList(OUTBOX_TOPIC));
+		// delivery is at least once; the relay may have sent a record more than once
+		Set<String> values = new LinkedHashSet<>();
+		n = 0;
+		while (n++ < 100 && values.size() < 3) {
+			for (ConsumerRecord<Integer, String> record : consumer.poll(100)) {
+				values.add(record.value());
+			}
+		}
+		consumer.close();
+		assertThat(values).containsExactly("foo", "bar", "baz");
+	}
+
+	@Test
+	public void testOversizedRecordDiscarded() throws Exception {
+		Map<String, Object> relayProps = KafkaTestUtils.producerProps(embeddedKafka);
+		relayProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+		relayProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+		relayProps.put(ProducerConfig.MAX_REQUEST_SIZE_CONFIG, 1024);
+		KafkaOutbox<Integer, String> outbox = new KafkaOutbox<>(this.folder.newFolder(), 1024 * 1024,
+				new DefaultKafkaProducerFactory<byte[], byte[]>(relayProps), new IntegerSerializer(),
+				new StringSerializer());
+		outbox.setRelayInterval(500);
+		outbox.setRelayTimeout(5000);
+		outbox.start();
+		char[] big = new char[2048];
+		Arrays.fill(big, 'x');
+		outbox.append(new ProducerRecord<>(OVERSIZED_TOPIC, 0, 1, "foo"));
+		outbox.append(new ProducerRecord<>(OVERSIZED_TOPIC, 0, 2, new String(big)));
+		outbox.append(new ProducerRecord<>(OVERSIZED_TOPIC, 0, 3, "bar"));
+		int n = 0;
+		while (n++ < 600 && outbox.isBacklogged()) {
+			Thread.sleep(100);
+		}
+		assertThat(outbox.isBacklogged()).isFalse();
+		outbox.stop();
+
+		Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("testOutboxOversized", "false", embeddedKafka);
+		consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		Consumer<Integer, String> consumer =
+				new DefaultKafkaConsumerFactory<Integer, String>(consumerProps).createConsumer();
+		consumer.subscribe(Collections.singletonList(OVERSIZED_TOPIC));
+		Set<String> values = new LinkedHashSet<>();
+		n = 0;
+		while (n++ < 100 && values.size() < 2) {
+			for (ConsumerRecord<Integer, String> record : consumer.poll(100)) {
+				values.add(record.value());
+			}
+		}
+		consumer.close();
+		assertThat(values).containsExactly("foo", "bar");
+	}
+
+}
@@ -17,27 +17,67 @@
 package org.springframework.kafka.core;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.kafka.test.assertj.KafkaConditions.key;
 import static org.springframework.kafka.test.assertj.KafkaConditions.partition;
 import static org.springframework.kafka.test.assertj.KafkaConditions.value;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.errors.NotLeaderForPartitionException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import org.springframework.kafka.core.KafkaTemplate.BackPressurePolicy;
+import org.springframework.kafka.core.KafkaTemplate.SyncSendMode;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
 import org.springframework.kafka.listener.ContainerTestUtils;
 import org.springframework.kafka.listener.KafkaMessageListenerContainer;
 import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.adapter.ChunkReassemblingMessageListenerAdapter;
+import org.springframework.kafka.listener.adapter.EnvelopeUnpackingMessageListenerAdapter;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.Chunk;
+import org.springframework.kafka.support.Envelope;
 import org.springframework.kafka.support.ProducerListenerAdapter;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.kafka.test.rule.KafkaEmbedded;
 import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
 
 
 /**
@@ -111,4 +151,587 @@ public class KafkaTemplateTests {
 		assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
 	}
 
+	@Test
+	public void testListenableFuture() throws Exception {
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		ProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicReference<SendResult<Integer, String>> theResult = new AtomicReference<>();
+		template.convertAndSend(0, 1, "qux").addCallback(new ListenableFutureCallback<SendResult<Integer, String>>() {
+
+			@Override
+			public void onSuccess(SendResult<Integer, String> result) {
+				theResult.set(result);
+				latch.countDown();
+			}
+
+			@Override
+			public void onFailure(Throwable ex) {
+			}
+
+		});
+		template.flush();
+		assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(theResult.get().getProducerRecord().value()).isEqualTo("qux");
+		assertThat(theResult.get().getRecordMetadata().partition()).isEqualTo(0);
+	}
+
+	@Test
+	public void testGroupFlush() throws Exception {
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		senderProps.put(ProducerConfig.LINGER_MS_CONFIG, 60000);
+		DefaultKafkaProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		final KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		template.setSyncSendMode(SyncSendMode.GROUP_FLUSH);
+		ExecutorService exec = Executors.newFixedThreadPool(10);
+		List<Future<RecordMetadata>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			final int key = i;
+			futures.add(exec.submit(new Callable<RecordMetadata>() {
+
+				@Override
+				public RecordMetadata call() throws Exception {
+					return template.syncSend(new ProducerRecord<>(TEMPLATE_TOPIC, key, "group"), 10, TimeUnit.SECONDS);
+				}
+
+			}));
+		}
+		for (Future<RecordMetadata> future : futures) {
+			assertThat(future.get(10, TimeUnit.SECONDS).topic()).isEqualTo(TEMPLATE_TOPIC);
+		}
+		exec.shutdown();
+		template.setSyncSendMode(SyncSendMode.WAIT);
+		try {
+			template.syncSend(new ProducerRecord<>(TEMPLATE_TOPIC, 1, "linger"), 500, TimeUnit.MILLISECONDS);
+			fail("Expected TimeoutException");
+		}
+		catch (TimeoutException e) {
+			// the record is still lingering
+		}
+		pf.destroy();
+	}
+
+	@Test
+	public void testInFlightLimit() throws Exception {
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		senderProps.put(ProducerConfig.LINGER_MS_CONFIG, 60000);
+		DefaultKafkaProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		template.setMaxInFlightRecords(1);
+		template.setBackPressurePolicy(BackPressurePolicy.FAIL);
+		ListenableFuture<SendResult<Integer, String>> first = template.convertAndSend(0, 1, "foo");
+		assertThat(template.getInFlightRecords()).isEqualTo(1);
+		assertThat(template.getInFlightBytes()).isEqualTo(3);
+		try {
+			template.convertAndSend(0, 1, "bar");
+			fail("Expected InFlightLimitExceededException");
+		}
+		catch (InFlightLimitExceededException e) {
+			// expected
+		}
+		template.setBackPressurePolicy(BackPressurePolicy.SIGNAL);
+		try {
+			template.convertAndSend(0, 1, "baz").get();
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(InFlightLimitExceededException.class);
+		}
+		template.setBackPressurePolicy(BackPressurePolicy.BLOCK);
+		template.setBackPressureTimeout(100);
+		try {
+			template.convertAndSend(0, 1, "qux");
+			fail("Expected InFlightLimitExceededException");
+		}
+		catch (InFlightLimitExceededException e) {
+			// expected
+		}
+		template.flush();
+		assertThat(first.get(10, TimeUnit.SECONDS).getRecordMetadata()).isNotNull();
+		assertThat(template.getInFlightRecords()).isEqualTo(0);
+		assertThat(template.getInFlightBytes()).isEqualTo(0);
+		pf.destroy();
+	}
+
+	@Test
+	public void testInFlightLimitInCallback() throws Exception {
+		MockProducer<Integer, String> producer = new MockProducer<>(false, new IntegerSerializer(),
+				new StringSerializer());
+		final KafkaTemplate<Integer, String> template = new KafkaTemplate<>(mockFactory(producer));
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		template.setMaxInFlightRecords(1);
+		template.setBackPressureTimeout(10000);
+		final AtomicReference<Exception> exception = new AtomicReference<>();
+		template.convertAndSend(0, 1, "foo").addCallback(new ListenableFutureCallback<SendResult<Integer, String>>() {
+
+			@Override
+			public void onSuccess(SendResult<Integer, String> result) {
+				// the slot of "foo" is already released
+				template.convertAndSend(0, 1, "bar");
+				try {
+					template.convertAndSend(0, 1, "baz");
+				}
+				catch (Exception e) {
+					exception.set(e);
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable ex) {
+				exception.set(new IllegalStateException(ex));
+			}
+
+		});
+		long t1 = System.currentTimeMillis();
+		assertThat(producer.completeNext()).isTrue();
+		assertThat(System.currentTimeMillis() - t1).isLessThan(5000);
+		assertThat(exception.get()).isInstanceOf(InFlightLimitExceededException.class);
+		assertThat(exception.get().getMessage()).contains("cannot block");
+		assertThat(template.getInFlightRecords()).isEqualTo(1);
+		assertThat(producer.completeNext()).isTrue();
+		assertThat(template.getInFlightRecords()).isEqualTo(0);
+	}
+
+	@Test
+	public void testSendAll() throws Exception {
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		ProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		final CountDownLatch latch = new CountDownLatch(10);
+		template.setProducerListener(new ProducerListenerAdapter<Integer, String>() {
+
+			@Override
+			public void onSuccess(String topic, Integer partition, Integer key, String value,
+					RecordMetadata recordMetadata) {
+				latch.countDown();
+			}
+
+		});
+		Map<Integer, String> data = new LinkedHashMap<>();
+		for (int i = 0; i < 10; i++) {
+			data.put(i, "foo" + i);
+		}
+		BatchSendResult<Integer, String> result = template.convertAndSendAll(data);
+		assertThat(result.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(result.getSuccessCount()).isEqualTo(10);
+		assertThat(result.getFailures()).isEmpty();
+		assertThat(result.getMetadata(9).topic()).isEqualTo(TEMPLATE_TOPIC);
+		assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+
+		List<ProducerRecord<Integer, String>> records = new ArrayList<>();
+		records.add(new ProducerRecord<>(TEMPLATE_TOPIC, 0, 1, "bar"));
+		ProducerRecord<Integer, String> bad = new ProducerRecord<>(TEMPLATE_TOPIC, 99, 1, "baz");
+		records.add(bad);
+		result = template.sendAll(records);
+		assertThat(result.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(result.getSuccessCount()).isEqualTo(1);
+		assertThat(result.getFailureCount()).isEqualTo(1);
+		assertThat(result.getFailures()).containsOnlyKeys(bad);
+	}
+
+	@Test
+	public void testSendAllAsyncFailure() throws Exception {
+		MockProducer<Integer, String> producer = new MockProducer<>(false, new IntegerSerializer(),
+				new StringSerializer());
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(mockFactory(producer));
+		final List<String> outcomes = new ArrayList<>();
+		template.setProducerListener(new ProducerListenerAdapter<Integer, String>() {
+
+			@Override
+			public void onSuccess(String topic, Integer partition, Integer key, String value,
+					RecordMetadata recordMetadata) {
+				outcomes.add(value + ":" + recordMetadata.offset());
+			}
+
+			@Override
+			public void onError(String topic, Integer partition, Integer key, String value, Exception exception) {
+				outcomes.add(value + ":" + exception.getMessage());
+			}
+
+		});
+		List<ProducerRecord<Integer, String>> records = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			records.add(new ProducerRecord<>(TEMPLATE_TOPIC, 0, i, "foo" + i));
+		}
+		BatchSendResult<Integer, String> result = template.sendAll(records);
+		assertThat(result.isDone()).isFalse();
+		assertThat(producer.completeNext()).isTrue();
+		assertThat(producer.errorNext(new RuntimeException("async"))).isTrue();
+		assertThat(producer.completeNext()).isTrue();
+		assertThat(result.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(result.getSuccessCount()).isEqualTo(2);
+		assertThat(result.getFailures()).containsOnlyKeys(records.get(1));
+		assertThat(result.getFailures().get(records.get(1))).hasMessage("async");
+		assertThat(result.getMetadata(0).offset()).isEqualTo(0L);
+		assertThat(result.getMetadata(1)).isNull();
+		assertThat(result.getMetadata(2).offset()).isEqualTo(2L);
+		assertThat(outcomes).containsExactly("foo0:0", "foo1:async", "foo2:2");
+	}
+
+	@Test
+	public void testPooledProducers() throws Exception {
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		senderProps.put(ProducerConfig.CLIENT_ID_CONFIG, "pooled");
+		DefaultKafkaProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		pf.setPoolSize(3);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		final CountDownLatch latch = new CountDownLatch(30);
+		template.setProducerListener(new ProducerListenerAdapter<Integer, String>() {
+
+			@Override
+			public void onSuccess(String topic, Integer partition, Integer key, String value,
+					RecordMetadata recordMetadata) {
+				latch.countDown();
+			}
+
+		});
+		for (int i = 0; i < 30; i++) {
+			template.convertAndSend(i, "foo" + i);
+		}
+		template.flush();
+		assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		Set<String> clientIds = new HashSet<>();
+		for (MetricName name : pf.createProducer().metrics().keySet()) {
+			clientIds.add(name.tags().get("client-id"));
+		}
+		assertThat(clientIds).containsOnly("pooled-0", "pooled-1", "pooled-2");
+		pf.destroy();
+	}
+
+	@Test
+	public void testOrderedRetries() throws Exception {
+		MockProducer<Integer, String> producer = new MockProducer<>(false, new IntegerSerializer(),
+				new StringSerializer());
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(mockFactory(producer));
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		template.setOrderedRetries(3);
+		template.setOrderedRetryBackOff(10);
+		ListenableFuture<SendResult<Integer, String>> a = template.convertAndSend(1, "a");
+		ListenableFuture<SendResult<Integer, String>> b = template.convertAndSend(1, "b");
+		ListenableFuture<SendResult<Integer, String>> c = template.convertAndSend(1, "c");
+		producer.errorNext(new org.apache.kafka.common.errors.TimeoutException());
+		ListenableFuture<SendResult<Integer, String>> d = template.convertAndSend(1, "d");
+		assertThat(producer.history()).hasSize(3);
+		producer.errorNext(new NotLeaderForPartitionException());
+		producer.completeNext();
+		assertThat(c.get(10, TimeUnit.SECONDS)).isNotNull();
+		// the failed and held records are resent one at a time
+		for (int i = 4; i <= 6; i++) {
+			awaitHistory(producer, i);
+			assertThat(producer.completeNext()).isTrue();
+		}
+		a.get(10, TimeUnit.SECONDS);
+		b.get(10, TimeUnit.SECONDS);
+		d.get(10, TimeUnit.SECONDS);
+		ListenableFuture<SendResult<Integer, String>> e = template.convertAndSend(1, "e");
+		awaitHistory(producer, 7);
+		assertThat(e.isDone()).isFalse();
+		List<String> values = new ArrayList<>();
+		for (ProducerRecord<Integer, String> record : producer.history()) {
+			values.add(record.value());
+		}
+		assertThat(values).containsExactly("a", "b", "c", "a", "b", "d", "e");
+		producer.completeNext();
+		assertThat(e.get(10, TimeUnit.SECONDS)).isNotNull();
+	}
+
+	@Test
+	public void testCoalescing() throws Exception {
+		MockProducer<Integer, String> producer = new MockProducer<>(true, new IntegerSerializer(),
+				new StringSerializer());
+		CoalescingKafkaTemplate<Integer, String> template = new CoalescingKafkaTemplate<>(mockFactory(producer));
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		template.setWindow(200);
+		template.setMaxHeld(3);
+		ListenableFuture<SendResult<Integer, String>> a = template.convertAndSend(1, "a");
+		ListenableFuture<SendResult<Integer, String>> b = template.convertAndSend(1, "b");
+		ListenableFuture<SendResult<Integer, String>> x = template.convertAndSend(2, "x");
+		assertThat(a.get(10, TimeUnit.SECONDS).isCoalesced()).isTrue();
+		assertThat(a.get().getRecordMetadata()).isNull();
+		assertThat(b.isDone()).isFalse();
+		assertThat(producer.history()).isEmpty();
+		ListenableFuture<SendResult<Integer, String>> z = template.convertAndSend(3, "z");
+		List<String> values = new ArrayList<>();
+		for (ProducerRecord<Integer, String> record : producer.history()) {
+			values.add(record.value());
+		}
+		assertThat(values).containsExactly("b", "x", "z");
+		assertThat(b.get(10, TimeUnit.SECONDS).isCoalesced()).isFalse();
+		assertThat(x.get(10, TimeUnit.SECONDS).getRecordMetadata()).isNotNull();
+		assertThat(z.get(10, TimeUnit.SECONDS).getRecordMetadata()).isNotNull();
+		ListenableFuture<SendResult<Integer, String>> c = template.convertAndSend(1, "c");
+		assertThat(c.get(10, TimeUnit.SECONDS).getRecordMetadata()).isNotNull();
+		assertThat(producer.history()).hasSize(4);
+		template.destroy();
+	}
+
+	@Test
+	public void testCoalescingDrainsSerialized() throws Exception {
+		final CountDownLatch sending = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		MockProducer<Integer, String> producer = new MockProducer<Integer, String>(true, new IntegerSerializer(),
+				new StringSerializer()) {
+
+			@Override
+			public Future<RecordMetadata> send(ProducerRecord<Integer, String> record, Callback callback) {
+				if ("v1".equals(record.value())) {
+					sending.countDown();
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.send(record, callback);
+			}
+
+		};
+		final CoalescingKafkaTemplate<Integer, String> template =
+				new CoalescingKafkaTemplate<>(mockFactory(producer));
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		template.setWindow(60000);
+		template.convertAndSend(0, 1, "v1");
+		ExecutorService exec = Executors.newFixedThreadPool(2);
+		Runnable drain = new Runnable() {
+
+			@Override
+			public void run() {
+				template.sendHeld();
+			}
+
+		};
+		Future<?> first = exec.submit(drain);
+		assertThat(sending.await(10, TimeUnit.SECONDS)).isTrue();
+		template.convertAndSend(0, 1, "v2");
+		Future<?> second = exec.submit(drain);
+		Thread.sleep(200);
+		assertThat(producer.history()).isEmpty();
+		release.countDown();
+		first.get(10, TimeUnit.SECONDS);
+		second.get(10, TimeUnit.SECONDS);
+		List<String> values = new ArrayList<>();
+		for (ProducerRecord<Integer, String> record : producer.history()) {
+			values.add(record.value());
+		}
+		assertThat(values).containsExactly("v1", "v2");
+		exec.shutdownNow();
+		template.destroy();
+	}
+
+	@Test
+	public void testEnvelopes() throws Exception {
+		MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(),
+				new ByteArraySerializer());
+		EnvelopeKafkaTemplate template = new EnvelopeKafkaTemplate(mockFactory(producer));
+		template.setLinger(10000);
+		template.setMaxEnvelopeSize(50);
+		List<ListenableFuture<SendResult<byte[], byte[]>>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(template.convertAndSend(TEMPLATE_TOPIC, 0, new byte[] { (byte) i }, "foo".getBytes()));
+		}
+		futures.add(template.convertAndSend(TEMPLATE_TOPIC, 1, null, "bar".getBytes()));
+		assertThat(producer.history()).isEmpty();
+		futures.add(template.convertAndSend(TEMPLATE_TOPIC, 0, new byte[] { 3 }, "foo".getBytes()));
+		assertThat(producer.history()).hasSize(1);
+		template.flush();
+		assertThat(producer.history()).hasSize(3);
+		RecordMetadata metadata = futures.get(0).get(10, TimeUnit.SECONDS).getRecordMetadata();
+		assertThat(futures.get(2).get(10, TimeUnit.SECONDS).getRecordMetadata()).isSameAs(metadata);
+		assertThat(futures.get(4).get(10, TimeUnit.SECONDS).getRecordMetadata()).isNotSameAs(metadata);
+
+		final List<ConsumerRecord<byte[], byte[]>> received = new ArrayList<>();
+		EnvelopeUnpackingMessageListenerAdapter adapter = new EnvelopeUnpackingMessageListenerAdapter(
+				new AcknowledgingMessageListener<byte[], byte[]>() {
+
+					@Override
+					public void onMessage(ConsumerRecord<byte[], byte[]> record, Acknowledgment acknowledgment) {
+						received.add(record);
+						acknowledgment.acknowledge();
+					}
+
+				});
+		Acknowledgment ack = mock(Acknowledgment.class);
+		ProducerRecord<byte[], byte[]> envelope = producer.history().get(0);
+		adapter.onMessage(new ConsumerRecord<>(TEMPLATE_TOPIC, 0, 42L, envelope.key(), envelope.value()), ack);
+		verify(ack).acknowledge();
+		assertThat(received).hasSize(3);
+		assertThat(received.get(2).key()).isEqualTo(new byte[] { 2 });
+		assertThat(new String(received.get(2).value())).isEqualTo("foo");
+		assertThat(received.get(2).offset()).isEqualTo(42L);
+		adapter.onMessage(new ConsumerRecord<>(TEMPLATE_TOPIC, 0, 43L, (byte[]) null, "baz".getBytes()), ack);
+		verify(ack, times(2)).acknowledge();
+		assertThat(new String(received.get(3).value())).isEqualTo("baz");
+		byte[] truncated = Arrays.copyOf(envelope.value(), envelope.value().length - 1);
+		assertThat(Envelope.isEnvelope(truncated)).isFalse();
+		adapter.onMessage(new ConsumerRecord<>(TEMPLATE_TOPIC, 0, 44L, (byte[]) null, truncated), ack);
+		assertThat(received.get(4).value()).isEqualTo(truncated);
+
+		final List<Acknowledgment> acks = new ArrayList<>();
+		adapter = new EnvelopeUnpackingMessageListenerAdapter(new AcknowledgingMessageListener<byte[], byte[]>() {
+
+			@Override
+			public void onMessage(ConsumerRecord<byte[], byte[]> record, Acknowledgment acknowledgment) {
+				acks.add(acknowledgment);
+			}
+
+		});
+		ack = mock(Acknowledgment.class);
+		adapter.onMessage(new ConsumerRecord<>(TEMPLATE_TOPIC, 0, 42L, envelope.key(), envelope.value()), ack);
+		assertThat(acks).hasSize(3);
+		acks.get(0).acknowledge();
+		acks.get(0).acknowledge();
+		acks.get(2).acknowledge();
+		verify(ack, never()).acknowledge();
+		acks.get(1).acknowledge();
+		acks.get(1).acknowledge();
+		verify(ack).acknowledge();
+		template.destroy();
+	}
+
+	@Test
+	public void testEnvelopesSentInOrder() throws Exception {
+		final CountDownLatch sending = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		MockProducer<byte[], byte[]> producer = new MockProducer<byte[], byte[]>(true, new ByteArraySerializer(),
+				new ByteArraySerializer()) {
+
+			@Override
+			public Future<RecordMetadata> send(ProducerRecord<byte[], byte[]> record, Callback callback) {
+				if (sending.getCount() > 0) {
+					sending.countDown();
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.send(record, callback);
+			}
+
+		};
+		final EnvelopeKafkaTemplate template = new EnvelopeKafkaTemplate(mockFactory(producer));
+		template.setDefaultTopic(TEMPLATE_TOPIC);
+		template.setLinger(60000);
+		template.convertAndSend(0, null, "m1".getBytes());
+		ExecutorService exec = Executors.newFixedThreadPool(2);
+		Runnable drain = new Runnable() {
+
+			@Override
+			public void run() {
+				template.sendEnvelopes();
+			}
+
+		};
+		Future<?> first = exec.submit(drain);
+		assertThat(sending.await(10, TimeUnit.SECONDS)).isTrue();
+		template.convertAndSend(0, null, "m2".getBytes());
+		Future<?> second = exec.submit(drain);
+		Thread.sleep(200);
+		assertThat(producer.history()).isEmpty();
+		release.countDown();
+		first.get(10, TimeUnit.SECONDS);
+		second.get(10, TimeUnit.SECONDS);
+		List<String> values = new ArrayList<>();
+		for (ProducerRecord<byte[], byte[]> record : producer.history()) {
+			values.add(new String(Envelope.unpack(record.value()).get(0).getValue()));
+		}
+		assertThat(values).containsExactly("m1", "m2");
+		exec.shutdownNow();
+		template.destroy();
+	}
+
+	@Test
+	public void testChunking() throws Exception {
+		MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(),
+				new ByteArraySerializer());
+		ChunkingKafkaTemplate template = new ChunkingKafkaTemplate(mockFactory(producer));
+		template.setChunkSize(4);
+		ListenableFuture<SendResult<byte[], byte[]>> future = template.convertAndSend(TEMPLATE_TOPIC, 0, null,
+				"0123456789".getBytes());
+		template.convertAndSend(TEMPLATE_TOPIC, 0, null, "foo".getBytes());
+		template.convertAndSend(TEMPLATE_TOPIC, 0, null, "abcdefgh".getBytes());
+		template.convertAndSend(TEMPLATE_TOPIC, 0, null, "bar".getBytes());
+		assertThat(future.get(10, TimeUnit.SECONDS).getRecordMetadata().offset()).isEqualTo(2L);
+		List<ProducerRecord<byte[], byte[]>> sent = producer.history();
+		assertThat(sent).hasSize(7);
+
+		final List<String> received = new ArrayList<>();
+		ChunkReassemblingMessageListenerAdapter adapter = new ChunkReassemblingMessageListenerAdapter(
+				new MessageListener<byte[], byte[]>() {
+
+					@Override
+					public void onMessage(ConsumerRecord<byte[], byte[]> record) {
+						received.add(record.offset() + ":" + new String(record.value()));
+					}
+
+				});
+		adapter.setTimeout(100);
+		// interleave the first plain record with the chunks of the first value
+		int[] order = { 0, 3, 1, 2, 4, 6 };
+		Acknowledgment[] acks = new Acknowledgment[order.length];
+		for (int i = 0; i < order.length; i++) {
+			acks[i] = mock(Acknowledgment.class);
+			adapter.onMessage(new ConsumerRecord<>(TEMPLATE_TOPIC, 0, (long) i, (byte[]) null,
+					sent.get(order[i]).value()), acks[i]);
+		}
+		assertThat(received).containsExactly("1:foo", "3:0123456789", "5:bar");
+		verify(acks[0], never()).acknowledge();
+		verify(acks[1], never()).acknowledge();
+		verify(acks[2], never()).acknowledge();
+		verify(acks[3]).acknowledge();
+		verify(acks[5], never()).acknowledge();
+		Thread.sleep(200);
+		adapter.onIdle();
+		verify(acks[5]).acknowledge();
+		verify(acks[4], never()).acknowledge();
+		// the late chunk of the discarded value is dropped, not buffered again
+		Acknowledgment late = mock(Acknowledgment.class);
+		adapter.onMessage(new ConsumerRecord<>(TEMPLATE_TOPIC, 0, 6L, (byte[]) null, sent.get(5).value()), late);
+		verify(late).acknowledge();
+		assertThat(received).hasSize(3);
+		// an invalid chunk header is delivered unchanged
+		byte[] invalid = Arrays.copyOf(sent.get(0).value(), sent.get(0).value().length);
+		ByteBuffer.wrap(invalid).putInt(20, 3);
+		assertThat(Chunk.isChunk(invalid)).isFalse();
+		try {
+			Chunk.parse(invalid);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			assertThat(e.getMessage()).contains("Not a chunk");
+		}
+		adapter.onMessage(new ConsumerRecord<>(TEMPLATE_TOPIC, 0, 7L, (byte[]) null, invalid),
+				mock(Acknowledgment.class));
+		assertThat(received).hasSize(4);
+		assertThat(received.get(3)).startsWith("7:");
+	}
+
+
+	private static <K, V> ProducerFactory<K, V> mockFactory(final MockProducer<K, V> producer) {
+		return new ProducerFactory<K, V>() {
+
+			@Override
+			public Producer<K, V> createProducer() {
+				return producer;
+			}
+
+		};
+	}
+
+	private static void awaitHistory(MockProducer<?, ?> producer, int size) throws InterruptedException {
+		int n = 0;
+		while (n++ < 100 && producer.history().size() < size) {
+			Thread.sleep(100);
+		}
+		assertThat(producer.history()).hasSize(size);
+	}
+
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class KafkaTopicCacheTests {
+
+	private static final String CACHE_TOPIC = "cacheTopic";
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, CACHE_TOPIC);
+
+	@Test
+	public void testCache() throws Exception {
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		ProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(CACHE_TOPIC);
+		template.convertAndSend(0, 1, "foo");
+		template.convertAndSend(1, 2, "bar");
+		template.convertAndSend(0, null, "nokey");
+		template.convertAndSend(0, 1, "baz");
+		template.convertAndSend(1, 2, null);
+		template.convertAndSend(1, 3, "fiz");
+		template.flush();
+
+		Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("testCache", "false", embeddedKafka);
+		DefaultKafkaConsumerFactory<Integer, String> cf = new DefaultKafkaConsumerFactory<Integer, String>(
+				consumerProps);
+		KafkaTopicCache<Integer, String> cache = new KafkaTopicCache<>(cf, CACHE_TOPIC);
+		cache.setConcurrency(2);
+		cache.setStartupTimeout(30000);
+		cache.setBeanName("testCache");
+		cache.start();
+		assertThat(cache.isReady()).isTrue();
+		assertThat(cache.get(1)).isEqualTo("baz");
+		assertThat(cache.containsKey(2)).isFalse();
+		assertThat(cache.get(3)).isEqualTo("fiz");
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getSkippedRecords()).isEqualTo(1L);
+
+		template.convertAndSend(0, 4, "qux");
+		template.convertAndSend(1, 3, null);
+		template.flush();
+		int n = 0;
+		while (n++ < 100 && (cache.get(4) == null || cache.containsKey(3))) {
+			Thread.sleep(100);
+		}
+		assertThat(cache.asMap()).containsOnlyKeys(1, 4);
+		cache.stop();
+	}
+
+	@Test
+	public void testRestartStopsOldReaders() throws Exception {
+		MockConsumerFactory cf = new MockConsumerFactory(true);
+		KafkaTopicCache<Integer, String> cache = new KafkaTopicCache<>(cf, "mock");
+		cache.setPollTimeout(10);
+		cache.setStartupTimeout(10000);
+		cache.start();
+		assertThat(cache.isReady()).isTrue();
+		cache.stop();
+		cache.start();
+		assertThat(cache.isReady()).isTrue();
+		assertThat(cf.consumers).hasSize(2);
+		int n = 0;
+		while (n++ < 100 && !cf.consumers.get(0).closed()) {
+			Thread.sleep(100);
+		}
+		assertThat(cf.consumers.get(0).closed()).isTrue();
+		assertThat(cf.consumers.get(1).closed()).isFalse();
+		cache.stop();
+	}
+
+	@Test
+	public void testStartFailsWithoutPartitions() throws Exception {
+		KafkaTopicCache<Integer, String> cache = new KafkaTopicCache<>(new MockConsumerFactory(false), "mock");
+		cache.setStartupTimeout(60000);
+		long t0 = System.currentTimeMillis();
+		try {
+			cache.start();
+			fail("Expected KafkaException");
+		}
+		catch (KafkaException e) {
+			assertThat(e.getCause().getMessage()).contains("No partitions found");
+		}
+		assertThat(System.currentTimeMillis() - t0).isLessThan(30000);
+		assertThat(cache.isRunning()).isFalse();
+		assertThat(cache.isReady()).isFalse();
+	}
+
+	private static final class MockConsumerFactory implements ConsumerFactory<Integer, String> {
+
+		private final List<MockConsumer<Integer, String>> consumers =
+				Collections.synchronizedList(new ArrayList<MockConsumer<Integer, String>>());
+
+		private final boolean withPartitions;
+
+		private MockConsumerFactory(boolean withPartitions) {
+			this.withPartitions = withPartitions;
+		}
+
+		@Override
+		public Consumer<Integer, String> createConsumer() {
+			MockConsumer<Integer, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+			if (this.withPartitions) {
+				TopicPartition partition = new TopicPartition("mock", 0);
+				consumer.updatePartitions("mock", Collections.singletonList(
+						new PartitionInfo("mock", 0, Node.noNode(), new Node[0], new Node[0])));
+				consumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+				consumer.updateEndOffsets(Collections.singletonMap(partition, 0L));
+			}
+			this.consumers.add(consumer);
+			return consumer;
+		}
+
+		@Override
+		public Consumer<Integer, String> createConsumer(Map<String, Object> overrides) {
+			return createConsumer();
+		}
+
+		@Override
+		public boolean isAutoCommit() {
+			return false;
+		}
+
+	}
+
+}
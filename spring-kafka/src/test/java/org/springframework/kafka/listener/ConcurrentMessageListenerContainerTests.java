@@ -21,8 +21,11 @@ import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
 
+import java.io.File;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -47,6 +50,8 @@ import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.AbstractMessageListenerContainer.AckMode;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer.DrainPolicy;
+import org.springframework.kafka.listener.adapter.BatchingMessageListenerAdapter;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.test.rule.KafkaEmbedded;
 import org.springframework.kafka.test.utils.KafkaTestUtils;
@@ -72,9 +77,21 @@ public class ConcurrentMessageListenerContainerTests {
 
 	private static String topic6 = "testTopic6";
 
+	private static String topic7 = "testTopic7";
+
+	private static String topic8 = "testTopic8";
+
+	private static String topic9 = "testTopic9";
+
+	private static String topic10 = "testTopic10";
+
+	private static String topic11 = "testTopic11";
+
+	private static String topic12 = "testTopic12";
+
 	@ClassRule
 	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, topic1, topic2, topic3, topic4, topic5,
-			topic6);
+			topic6, topic7, topic8, topic9, topic10, topic11, topic12);
 
 	@Test
 	public void testAutoCommit() throws Exception {
@@ -396,4 +413,311 @@ public class ConcurrentMessageListenerContainerTests {
 
 	}
 
+	@Test
+	public void testConflation() throws Exception {
+		logger.info("Start conflation");
+		Map<String, Object> props = KafkaTestUtils.consumerProps("test7", "false", embeddedKafka);
+		DefaultKafkaConsumerFactory<Integer, String> cf = new DefaultKafkaConsumerFactory<Integer, String>(props);
+		ConcurrentMessageListenerContainer<Integer, String> container =
+				new ConcurrentMessageListenerContainer<>(cf, topic7);
+		final List<String> received = new CopyOnWriteArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(2);
+		container.setMessageListener(new MessageListener<Integer, String>() {
+
+			@Override
+			public void onMessage(ConsumerRecord<Integer, String> message) {
+				logger.info("conflated: " + message);
+				received.add(message.value());
+				latch.countDown();
+			}
+		});
+		container.setConflateKeys(true);
+		container.setConflationWindow(2000);
+		container.setBeanName("testConflation");
+		container.start();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic());
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		ProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(topic7);
+		template.convertAndSend(0, 1, "foo");
+		template.convertAndSend(0, 1, "bar");
+		template.convertAndSend(0, 2, "baz");
+		template.convertAndSend(0, 1, "qux");
+		template.flush();
+		assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue();
+		Consumer<Integer, String> consumer = cf.createConsumer();
+		TopicPartition partition = new TopicPartition(topic7, 0);
+		int n = 0;
+		while (n++ < 100 && (consumer.committed(partition) == null || consumer.committed(partition).offset() < 4)) {
+			Thread.sleep(100);
+		}
+		assertThat(consumer.committed(partition).offset()).isEqualTo(4);
+		consumer.close();
+		container.stop();
+		assertThat(received).containsExactly("baz", "qux");
+		logger.info("Stop conflation");
+	}
+
+	@Test
+	public void testBatching() throws Exception {
+		logger.info("Start batching");
+		Map<String, Object> props = KafkaTestUtils.consumerProps("test8", "false", embeddedKafka);
+		DefaultKafkaConsumerFactory<Integer, String> cf = new DefaultKafkaConsumerFactory<Integer, String>(props);
+		ConcurrentMessageListenerContainer<Integer, String> container =
+				new ConcurrentMessageListenerContainer<>(cf, topic8);
+		final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(2);
+		BatchingMessageListenerAdapter<Integer, String> adapter =
+				new BatchingMessageListenerAdapter<>(new BatchMessageListener<Integer, String>() {
+
+					@Override
+					public void onMessage(List<ConsumerRecord<Integer, String>> records) {
+						logger.info("batch: " + records);
+						batchSizes.add(records.size());
+						latch.countDown();
+					}
+
+				});
+		adapter.setBatchSize(3);
+		adapter.setBatchTimeout(2000);
+		container.setMessageListener(adapter);
+		container.setAckMode(AckMode.MANUAL);
+		container.setBeanName("testBatching");
+		container.start();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic());
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		ProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(topic8);
+		template.convertAndSend(0, 0, "foo");
+		template.convertAndSend(0, 0, "bar");
+		template.convertAndSend(0, 0, "baz");
+		template.convertAndSend(0, 0, "qux");
+		template.flush();
+		assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue();
+		assertThat(batchSizes).containsExactly(3, 1);
+		Consumer<Integer, String> consumer = cf.createConsumer();
+		TopicPartition partition = new TopicPartition(topic8, 0);
+		int n = 0;
+		while (n++ < 100 && (consumer.committed(partition) == null || consumer.committed(partition).offset() < 4)) {
+			Thread.sleep(100);
+		}
+		assertThat(consumer.committed(partition).offset()).isEqualTo(4);
+		consumer.close();
+		container.stop();
+		logger.info("Stop batching");
+	}
+
+	@Test
+	public void testOffsetStore() throws Exception {
+		logger.info("Start offset store");
+		Map<String, Object> props = KafkaTestUtils.consumerProps("test9", "false", embeddedKafka);
+		props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		DefaultKafkaConsumerFactory<Integer, String> cf = new DefaultKafkaConsumerFactory<Integer, String>(props);
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		ProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(topic9);
+		template.convertAndSend(0, 0, "foo");
+		template.convertAndSend(0, 0, "bar");
+		template.convertAndSend(0, 0, "baz");
+		template.convertAndSend(0, 0, "qux");
+		template.flush();
+		File file = File.createTempFile("offsets", ".chk");
+		file.delete();
+		file.deleteOnExit();
+		TopicPartition partition = new TopicPartition(topic9, 0);
+		FileOffsetStore store = new FileOffsetStore(file);
+		store.save(Collections.singletonMap(partition, 2L));
+		ConcurrentMessageListenerContainer<Integer, String> container =
+				new ConcurrentMessageListenerContainer<>(cf, topic9);
+		final List<String> received = new CopyOnWriteArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(2);
+		container.setMessageListener(new MessageListener<Integer, String>() {
+
+			@Override
+			public void onMessage(ConsumerRecord<Integer, String> message) {
+				logger.info("offset store: " + message);
+				received.add(message.value());
+				latch.countDown();
+			}
+
+		});
+		container.setAckMode(AckMode.RECORD);
+		container.setOffsetStore(store);
+		container.setBeanName("testOffsetStore");
+		container.start();
+		assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue();
+		int n = 0;
+		while (n++ < 100 && !Long.valueOf(4L).equals(store.load(Collections.singletonList(partition)).get(partition))) {
+			Thread.sleep(100);
+		}
+		container.stop();
+		store.close();
+		assertThat(received).containsExactly("baz", "qux");
+		store = new FileOffsetStore(file);
+		assertThat(store.load(Collections.singletonList(partition))).containsEntry(partition, 4L);
+		store.close();
+		Consumer<Integer, String> consumer = cf.createConsumer();
+		assertThat(consumer.committed(partition)).isNull();
+		consumer.close();
+		logger.info("Stop offset store");
+	}
+
+	@Test
+	public void testStartupSettleTime() throws Exception {
+		logger.info("Start settle");
+		Map<String, Object> props = KafkaTestUtils.consumerProps("test10", "false", embeddedKafka);
+		props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		DefaultKafkaConsumerFactory<Integer, String> cf = new DefaultKafkaConsumerFactory<Integer, String>(props);
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		ProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(topic10);
+		template.convertAndSend(0, 0, "foo");
+		template.convertAndSend(1, 0, "bar");
+		template.flush();
+		ConcurrentMessageListenerContainer<Integer, String> container =
+				new ConcurrentMessageListenerContainer<>(cf, topic10);
+		final CountDownLatch latch = new CountDownLatch(2);
+		final AtomicReference<Long> firstReceived = new AtomicReference<>();
+		container.setMessageListener(new MessageListener<Integer, String>() {
+
+			@Override
+			public void onMessage(ConsumerRecord<Integer, String> message) {
+				logger.info("settle: " + message);
+				firstReceived.compareAndSet(null, System.currentTimeMillis());
+				latch.countDown();
+			}
+
+		});
+		container.setConcurrency(2);
+		container.setStartupSettleTime(2000);
+		container.setBeanName("testSettle");
+		assertThat(container.getTimeToFirstRecord()).isEqualTo(-1);
+		long started = System.currentTimeMillis();
+		container.start();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic());
+		long assigned = System.currentTimeMillis();
+		assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue();
+		assertThat(firstReceived.get() - assigned).isGreaterThanOrEqualTo(1000);
+		assertThat(container.getTimeToFirstRecord()).isGreaterThanOrEqualTo(2000);
+		assertThat(container.getTimeToFirstRecord()).isLessThanOrEqualTo(System.currentTimeMillis() - started);
+		container.stop();
+		logger.info("Stop settle");
+	}
+
+	@Test
+	public void testStopCallbackAfterConsumersStopped() throws Exception {
+		logger.info("Start stop callback");
+		final Map<String, Object> props = KafkaTestUtils.consumerProps("test11", "false", embeddedKafka);
+		final List<String> events = new CopyOnWriteArrayList<>();
+		ConsumerFactory<Integer, String> cf = new ConsumerFactory<Integer, String>() {
+
+			@Override
+			public Consumer<Integer, String> createConsumer() {
+				return new KafkaConsumer<Integer, String>(props) {
+
+					@Override
+					public void close() {
+						super.close();
+						events.add("closed");
+					}
+
+				};
+			}
+
+			@Override
+			public Consumer<Integer, String> createConsumer(Map<String, Object> overrides) {
+				return createConsumer();
+			}
+
+			@Override
+			public boolean isAutoCommit() {
+				return false;
+			}
+
+		};
+		ConcurrentMessageListenerContainer<Integer, String> container =
+				new ConcurrentMessageListenerContainer<>(cf, topic11);
+		container.setMessageListener(new MessageListener<Integer, String>() {
+
+			@Override
+			public void onMessage(ConsumerRecord<Integer, String> message) {
+				// no-op
+			}
+
+		});
+		container.setConcurrency(2);
+		container.setBeanName("testStopCallback");
+		container.start();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic());
+		final CountDownLatch latch = new CountDownLatch(1);
+		container.stop(new Runnable() {
+
+			@Override
+			public void run() {
+				events.add("stopped");
+				latch.countDown();
+			}
+
+		});
+		assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(events).containsExactly("closed", "closed", "stopped");
+		events.clear();
+		container.start();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic());
+		container.stop();
+		assertThat(events).containsExactly("closed", "closed");
+		logger.info("Stop stop callback");
+	}
+
+	@Test
+	public void testDrainAbandon() throws Exception {
+		logger.info("Start drain");
+		Map<String, Object> props = KafkaTestUtils.consumerProps("test12", "false", embeddedKafka);
+		props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		DefaultKafkaConsumerFactory<Integer, String> cf = new DefaultKafkaConsumerFactory<Integer, String>(props);
+		Map<String, Object> senderProps = KafkaTestUtils.producerProps(embeddedKafka);
+		ProducerFactory<Integer, String> pf = new DefaultKafkaProducerFactory<Integer, String>(senderProps);
+		KafkaTemplate<Integer, String> template = new KafkaTemplate<>(pf);
+		template.setDefaultTopic(topic12);
+		for (int i = 0; i < 10; i++) {
+			template.convertAndSend(0, 0, "foo" + i);
+		}
+		template.flush();
+		ConcurrentMessageListenerContainer<Integer, String> container =
+				new ConcurrentMessageListenerContainer<>(cf, topic12);
+		final List<String> received = new CopyOnWriteArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		container.setMessageListener(new MessageListener<Integer, String>() {
+
+			@Override
+			public void onMessage(ConsumerRecord<Integer, String> message) {
+				received.add(message.value());
+				latch.countDown();
+				try {
+					Thread.sleep(500);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+		});
+		container.setAckMode(AckMode.BATCH);
+		container.setDrainTimeout(10000);
+		container.setDrainPolicy(DrainPolicy.ABANDON);
+		container.setBeanName("testDrain");
+		container.start();
+		assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue();
+		container.stop();
+		assertThat(received).containsExactly("foo0");
+		Consumer<Integer, String> consumer = cf.createConsumer();
+		assertThat(consumer.committed(new TopicPartition(topic12, 0)).offset()).isEqualTo(1L);
+		consumer.close();
+		logger.info("Stop drain");
+	}
+
 }
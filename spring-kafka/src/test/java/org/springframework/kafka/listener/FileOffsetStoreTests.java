@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.kafka.core.KafkaException;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class FileOffsetStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final TopicPartition foo0 = new TopicPartition("foo", 0);
+
+	private final TopicPartition foo1 = new TopicPartition("foo", 1);
+
+	@Test
+	public void testReopen() throws Exception {
+		File file = new File(this.folder.getRoot(), "offsets");
+		FileOffsetStore store = new FileOffsetStore(file, 1024);
+		Map<TopicPartition, Long> positions = new HashMap<>();
+		positions.put(this.foo0, 10L);
+		positions.put(this.foo1, 20L);
+		store.save(positions);
+		store.save(Collections.singletonMap(this.foo0, 11L));
+		store.close();
+		store = new FileOffsetStore(file);
+		assertThat(store.load(Arrays.asList(this.foo0, this.foo1, new TopicPartition("bar", 0))))
+				.hasSize(2)
+				.containsEntry(this.foo0, 11L)
+				.containsEntry(this.foo1, 20L);
+		store.close();
+	}
+
+	@Test
+	public void testTornWriteFallsBackToPreviousCheckpoint() throws Exception {
+		File file = new File(this.folder.getRoot(), "offsets");
+		FileOffsetStore store = new FileOffsetStore(file, 1024);
+		store.setForce(false);
+		store.save(Collections.singletonMap(this.foo0, 10L));
+		store.save(Collections.singletonMap(this.foo0, 11L));
+		store.close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(8 + 16 + 20); // the latest checkpoint (sequence 2, first slot) payload
+		raf.write(0xff);
+		raf.close();
+		store = new FileOffsetStore(file);
+		assertThat(store.load(Collections.singletonList(this.foo0))).containsEntry(this.foo0, 10L);
+		store.save(Collections.singletonMap(this.foo0, 12L));
+		store.close();
+		store = new FileOffsetStore(file);
+		assertThat(store.load(Collections.singletonList(this.foo0))).containsEntry(this.foo0, 12L);
+		store.close();
+	}
+
+	@Test
+	public void testIncrementalSaves() throws Exception {
+		File file = new File(this.folder.getRoot(), "offsets");
+		FileOffsetStore store = new FileOffsetStore(file, 1024);
+		for (long i = 0; i < 10; i++) {
+			store.save(Collections.singletonMap(i % 3 == 0 ? this.foo1 : this.foo0, i));
+		}
+		store.close();
+		store = new FileOffsetStore(file);
+		assertThat(store.load(Arrays.asList(this.foo0, this.foo1)))
+				.containsEntry(this.foo0, 8L)
+				.containsEntry(this.foo1, 9L);
+		store.save(Collections.singletonMap(this.foo0, 10L));
+		store.save(Collections.singletonMap(this.foo0, 11L));
+		store.close();
+		store = new FileOffsetStore(file);
+		assertThat(store.load(Arrays.asList(this.foo0, this.foo1)))
+				.containsEntry(this.foo0, 11L)
+				.containsEntry(this.foo1, 9L);
+		store.close();
+	}
+
+	@Test
+	public void testOverflowLeavesPositionsUnchanged() throws Exception {
+		File file = new File(this.folder.getRoot(), "offsets");
+		FileOffsetStore store = new FileOffsetStore(file, 16 + 4 + 17);
+		store.save(Collections.singletonMap(this.foo0, 10L));
+		Map<TopicPartition, Long> positions = new HashMap<>();
+		positions.put(this.foo0, 11L);
+		positions.put(this.foo1, 20L);
+		try {
+			store.save(positions);
+			fail("Expected KafkaException");
+		}
+		catch (KafkaException e) {
+			assertThat(e.getMessage()).contains("too small");
+		}
+		assertThat(store.load(Arrays.asList(this.foo0, this.foo1))).hasSize(1).containsEntry(this.foo0, 10L);
+		store.close();
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.support.Acknowledgment;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class BatchingMessageListenerAdapterTests {
+
+	@Test
+	public void testStaleBatchDiscardedOnRestart() {
+		final List<List<ConsumerRecord<String, String>>> batches = new ArrayList<>();
+		BatchingMessageListenerAdapter<String, String> adapter = new BatchingMessageListenerAdapter<>(
+				new BatchMessageListener<String, String>() {
+
+					@Override
+					public void onMessage(List<ConsumerRecord<String, String>> records) {
+						batches.add(records);
+					}
+
+				});
+		adapter.setBatchSize(2);
+		Acknowledgment stale = mock(Acknowledgment.class);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 0L, "a", "x"), stale);
+		// container stopped and restarted on the same thread
+		adapter.registerSeekCallback(mock(ConsumerSeekCallback.class));
+		Acknowledgment ack1 = mock(Acknowledgment.class);
+		Acknowledgment ack2 = mock(Acknowledgment.class);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 0L, "a", "x"), ack1);
+		adapter.onPartitionsAssigned(Collections.singletonList(new TopicPartition("foo", 0)));
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 0L, "a", "x"), ack1);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 1L, "b", "y"), ack2);
+		assertThat(batches).hasSize(1);
+		assertThat(batches.get(0)).hasSize(2);
+		assertThat(batches.get(0).get(0).offset()).isEqualTo(0L);
+		assertThat(batches.get(0).get(1).offset()).isEqualTo(1L);
+		verify(stale, never()).acknowledge();
+		verify(ack1, never()).acknowledge();
+		verify(ack2).acknowledge();
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.support.Acknowledgment;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class DeduplicatingMessageListenerAdapterTests {
+
+	@Test
+	public void testRedeliveredRecordsSkipped() {
+		final List<Long> received = new ArrayList<>();
+		DeduplicatingMessageListenerAdapter<String, String> adapter = new DeduplicatingMessageListenerAdapter<>(
+				new MessageListener<String, String>() {
+
+					@Override
+					public void onMessage(ConsumerRecord<String, String> record) {
+						received.add(record.offset());
+					}
+
+				});
+		for (long offset = 0; offset < 10; offset++) {
+			adapter.onMessage(new ConsumerRecord<>("foo", 0, offset, "a", "x"));
+		}
+		Acknowledgment ack = mock(Acknowledgment.class);
+		for (long offset = 5; offset < 15; offset++) {
+			adapter.onMessage(new ConsumerRecord<>("foo", 0, offset, "a", "x"), ack);
+		}
+		adapter.onMessage(new ConsumerRecord<>("foo", 1, 0L, "a", "x"));
+		assertThat(received).hasSize(16);
+		assertThat(adapter.getHits()).isEqualTo(5);
+		assertThat(adapter.getMisses()).isEqualTo(16);
+		assertThat(adapter.getHitRatio()).isEqualTo(5.0 / 21);
+		assertThat(adapter.getSize()).isEqualTo(16);
+		verify(ack, times(5)).acknowledge();
+	}
+
+	@Test
+	public void testBusinessKeyAndEviction() {
+		final List<String> received = new ArrayList<>();
+		DeduplicatingMessageListenerAdapter<String, String> adapter = new DeduplicatingMessageListenerAdapter<>(
+				new MessageListener<String, String>() {
+
+					@Override
+					public void onMessage(ConsumerRecord<String, String> record) {
+						received.add(record.key());
+					}
+
+				}, new RecordFingerprintStrategy<String, String>() {
+
+					@Override
+					public long fingerprint(ConsumerRecord<String, String> record) {
+						return Long.parseLong(record.key()) + 100;
+					}
+
+				}, 4, 2, 60000);
+		for (int i = 0; i < 12; i++) {
+			adapter.onMessage(new ConsumerRecord<>("foo", 0, i, Integer.toString(i), "x"));
+		}
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 12L, "11", "x"));
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 13L, "0", "x"));
+		assertThat(received).hasSize(13);
+		assertThat(adapter.getHits()).isEqualTo(1);
+		assertThat(adapter.getEvictions()).isEqualTo(8);
+		assertThat(adapter.getSize()).isEqualTo(5);
+	}
+
+	@Test
+	public void testExpiryAfterIdlePeriod() throws Exception {
+		final List<String> received = new ArrayList<>();
+		DeduplicatingMessageListenerAdapter<String, String> adapter = new DeduplicatingMessageListenerAdapter<>(
+				new MessageListener<String, String>() {
+
+					@Override
+					public void onMessage(ConsumerRecord<String, String> record) {
+						received.add(record.key());
+					}
+
+				}, new RecordFingerprintStrategy<String, String>() {
+
+					@Override
+					public long fingerprint(ConsumerRecord<String, String> record) {
+						return Long.parseLong(record.key()) + 100;
+					}
+
+				}, 100, 2, 200);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 0L, "1", "x"));
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 1L, "1", "x"));
+		assertThat(adapter.getHits()).isEqualTo(1);
+		Thread.sleep(300);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 2L, "1", "x"));
+		assertThat(received).containsExactly("1", "1");
+		assertThat(adapter.getHits()).isEqualTo(1);
+		assertThat(adapter.getEvictions()).isEqualTo(1);
+		assertThat(adapter.getSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void testFailedRecordNotRecorded() {
+		final List<Long> received = new ArrayList<>();
+		DeduplicatingMessageListenerAdapter<String, String> adapter = new DeduplicatingMessageListenerAdapter<>(
+				new MessageListener<String, String>() {
+
+					@Override
+					public void onMessage(ConsumerRecord<String, String> record) {
+						received.add(record.offset());
+						if (received.size() == 1) {
+							throw new IllegalStateException("fail");
+						}
+					}
+
+				});
+		ConsumerRecord<String, String> record = new ConsumerRecord<>("foo", 0, 0L, "a", "x");
+		try {
+			adapter.onMessage(record);
+			fail("Expected exception");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		adapter.onMessage(record);
+		adapter.onMessage(record);
+		assertThat(received).hasSize(2);
+		assertThat(adapter.getHits()).isEqualTo(1);
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.adapter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import org.springframework.kafka.support.Acknowledgment;
+
+import com.gs.collections.api.block.procedure.primitive.ObjectLongProcedure;
+import com.gs.collections.api.map.primitive.ObjectLongMap;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class WindowingMessageListenerAdapterTests {
+
+	@Test
+	public void testCountsEmittedAndAckedWhenWindowCloses() throws Exception {
+		final Map<String, Long> totals = new HashMap<>();
+		WindowingMessageListenerAdapter<String, String> adapter = new WindowingMessageListenerAdapter<>(
+				new LongReducer<String, String>() {
+
+					@Override
+					public long reduce(long aggregate, ConsumerRecord<String, String> record) {
+						return aggregate + 1;
+					}
+
+				}, new WindowResultListener<String>() {
+
+					@Override
+					public void onWindowClosed(TopicPartition partition, long windowStart, long windowEnd,
+							ObjectLongMap<String> results) {
+						assertThat(windowEnd - windowStart).isEqualTo(200);
+						results.forEachKeyValue(new ObjectLongProcedure<String>() {
+
+							private static final long serialVersionUID = 1L;
+
+							@Override
+							public void value(String key, long value) {
+								Long total = totals.get(key);
+								totals.put(key, total == null ? value : total + value);
+							}
+
+						});
+					}
+
+				}, 200);
+		Acknowledgment ack1 = mock(Acknowledgment.class);
+		Acknowledgment ack2 = mock(Acknowledgment.class);
+		Acknowledgment ack3 = mock(Acknowledgment.class);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 0L, "a", "x"), ack1);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 1L, "a", "y"), ack2);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 2L, "b", "z"), ack3);
+		verify(ack3, never()).acknowledge();
+		Thread.sleep(450);
+		adapter.onIdle();
+		assertThat(totals).containsEntry("a", 2L).containsEntry("b", 1L);
+		verify(ack3).acknowledge();
+	}
+
+	@Test
+	public void testRevokedPartitionDiscarded() throws Exception {
+		final Map<String, Long> totals = new HashMap<>();
+		WindowingMessageListenerAdapter<String, String> adapter = new WindowingMessageListenerAdapter<>(
+				new LongReducer<String, String>() {
+
+					@Override
+					public long reduce(long aggregate, ConsumerRecord<String, String> record) {
+						return aggregate + Long.parseLong(record.value());
+					}
+
+				}, new WindowResultListener<String>() {
+
+					@Override
+					public void onWindowClosed(TopicPartition partition, long windowStart, long windowEnd,
+							ObjectLongMap<String> results) {
+						totals.put(partition.toString(), results.get("a"));
+					}
+
+				}, 200, 100);
+		Acknowledgment ack1 = mock(Acknowledgment.class);
+		Acknowledgment ack2 = mock(Acknowledgment.class);
+		adapter.onMessage(new ConsumerRecord<>("foo", 0, 0L, "a", "2"), ack1);
+		adapter.onMessage(new ConsumerRecord<>("foo", 1, 0L, "a", "3"), ack2);
+		adapter.onPartitionsRevoked(Collections.singletonList(new TopicPartition("foo", 1)));
+		Thread.sleep(450);
+		adapter.onIdle();
+		assertThat(totals).containsOnlyKeys("foo-0");
+		assertThat(totals.get("foo-0")).isEqualTo(2L);
+		verify(ack1).acknowledge();
+		verify(ack2, never()).acknowledge();
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.listener.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class LocalStateStoreTests {
+
+	private static final String CHANGELOG_TOPIC = "stateChangelog";
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, CHANGELOG_TOPIC);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRestoreFromChangelog() throws Exception {
+		KafkaTemplate<byte[], byte[]> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+				KafkaTestUtils.producerProps(embeddedKafka), new ByteArraySerializer(), new ByteArraySerializer()));
+		DefaultKafkaConsumerFactory<byte[], byte[]> cf = new DefaultKafkaConsumerFactory<>(
+				KafkaTestUtils.consumerProps("testState", "false", embeddedKafka), new ByteArrayDeserializer(),
+				new ByteArrayDeserializer());
+		List<TopicPartition> assigned = Collections.singletonList(new TopicPartition("source", 1));
+
+		File directory = this.folder.newFolder();
+		LocalStateStore<String, String> store = createStore(directory, template, cf);
+		store.onPartitionsAssigned(assigned);
+		assertThat(store.size(1)).isEqualTo(0);
+		store.put(1, "foo", "bar");
+		store.put(1, "baz", "qux");
+		store.put(1, "foo", "fiz");
+		store.delete(1, "baz");
+		assertThat(store.get(1, "foo")).isEqualTo("fiz");
+		assertThat(store.get(1, "baz")).isNull();
+		store.flush();
+		store.onPartitionsRevoked(assigned);
+		store.onPartitionsAssigned(Collections.<TopicPartition>emptyList());
+		assertThat(directory.list()).isEmpty();
+
+		LocalStateStore<String, String> restored = createStore(this.folder.newFolder(), template, cf);
+		restored.onPartitionsAssigned(assigned);
+		assertThat(restored.size(1)).isEqualTo(1);
+		assertThat(restored.get(1, "foo")).isEqualTo("fiz");
+		assertThat(restored.get(1, "baz")).isNull();
+		restored.close();
+	}
+
+	@Test
+	public void testRetainedWhenReassigned() throws Exception {
+		KafkaTemplate<byte[], byte[]> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+				KafkaTestUtils.producerProps(embeddedKafka), new ByteArraySerializer(), new ByteArraySerializer()));
+		DefaultKafkaConsumerFactory<byte[], byte[]> cf = spy(new DefaultKafkaConsumerFactory<>(
+				KafkaTestUtils.consumerProps("testRetain", "false", embeddedKafka), new ByteArrayDeserializer(),
+				new ByteArrayDeserializer()));
+		TopicPartition zero = new TopicPartition("source", 0);
+		TopicPartition one = new TopicPartition("source", 1);
+		File directory = this.folder.newFolder();
+		LocalStateStore<String, String> store = createStore(directory, template, cf);
+		store.onPartitionsAssigned(Arrays.asList(zero, one));
+		store.put(0, "foo", "bar");
+		store.put(1, "baz", "qux");
+		store.onPartitionsRevoked(Arrays.asList(zero, one));
+		store.onPartitionsAssigned(Collections.singletonList(one));
+		verify(cf, times(1)).createConsumer();
+		assertThat(store.get(1, "baz")).isEqualTo("qux");
+		assertThat(directory.list()).containsExactly(CHANGELOG_TOPIC + "-1.log");
+		try {
+			store.get(0, "foo");
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage()).contains("not assigned");
+		}
+		try {
+			store.onPartitionsAssigned(Collections.singletonList(new TopicPartition("other", 1)));
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage()).contains("one source topic");
+		}
+		store.close();
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		KafkaTemplate<byte[], byte[]> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+				KafkaTestUtils.producerProps(embeddedKafka), new ByteArraySerializer(), new ByteArraySerializer()));
+		DefaultKafkaConsumerFactory<byte[], byte[]> cf = new DefaultKafkaConsumerFactory<>(
+				KafkaTestUtils.consumerProps("testCompact", "false", embeddedKafka), new ByteArrayDeserializer(),
+				new ByteArrayDeserializer());
+		File directory = this.folder.newFolder();
+		LocalStateStore<String, String> store = createStore(directory, template, cf);
+		store.setCompactionThreshold(1024);
+		store.onPartitionsAssigned(Collections.singletonList(new TopicPartition("source", 0)));
+		for (int i = 0; i < 1000; i++) {
+			store.put(0, "key" + (i % 10), "value" + i);
+		}
+		assertThat(store.size(0)).isEqualTo(10);
+		assertThat(store.get(0, "key3")).isEqualTo("value993");
+		assertThat(new File(directory, CHANGELOG_TOPIC + "-0.log").length()).isLessThan(2048);
+		store.close();
+		assertThat(directory.list()).isEmpty();
+	}
+
+	private LocalStateStore<String, String> createStore(File directory, KafkaTemplate<byte[], byte[]> template,
+			DefaultKafkaConsumerFactory<byte[], byte[]> cf) {
+		return new LocalStateStore<>(directory, CHANGELOG_TOPIC, template, cf, new StringSerializer(),
+				new StringSerializer(), new StringDeserializer());
+	}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.internals.PartitionAssignor.Assignment;
+import org.apache.kafka.clients.consumer.internals.PartitionAssignor.Subscription;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class StickyPartitionAssignorTests {
+
+	private static final String TOPIC = "sticky1";
+
+	private static final int PARTITIONS = 12;
+
+	@ClassRule
+	public static KafkaEmbedded embeddedKafka = new KafkaEmbedded(1, true, PARTITIONS, TOPIC);
+
+	@Test
+	public void testMovementOnScaleOutAndIn() {
+		Cluster cluster = cluster("foo", PARTITIONS);
+		Map<String, StickyPartitionAssignor> members = new HashMap<>();
+		members.put("a", new StickyPartitionAssignor());
+		members.put("b", new StickyPartitionAssignor());
+		Map<TopicPartition, String> owners = rebalance(cluster, members);
+		assertBalanced(owners, 2);
+		members.put("c", new StickyPartitionAssignor());
+		Map<TopicPartition, String> newOwners = rebalance(cluster, members);
+		assertBalanced(newOwners, 3);
+		assertThat(moved(owners, newOwners)).isEqualTo(4);
+		members.put("d", new StickyPartitionAssignor());
+		owners = newOwners;
+		newOwners = rebalance(cluster, members);
+		assertBalanced(newOwners, 4);
+		assertThat(moved(owners, newOwners)).isEqualTo(3);
+		members.remove("b");
+		owners = newOwners;
+		newOwners = rebalance(cluster, members);
+		assertBalanced(newOwners, 3);
+		assertThat(moved(owners, newOwners)).isEqualTo(3);
+	}
+
+	@Test
+	public void testEmbeddedScaleOut() throws Exception {
+		Map<String, Object> props = KafkaTestUtils.consumerProps("sticky", "false", embeddedKafka);
+		props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, StickyPartitionAssignor.class.getName());
+		DefaultKafkaConsumerFactory<Integer, String> cf = new DefaultKafkaConsumerFactory<Integer, String>(props);
+		MessageListener<Integer, String> listener = new MessageListener<Integer, String>() {
+
+			@Override
+			public void onMessage(ConsumerRecord<Integer, String> record) {
+				// no-op
+			}
+
+		};
+		ConcurrentMessageListenerContainer<Integer, String> container1 =
+				new ConcurrentMessageListenerContainer<>(cf, TOPIC);
+		container1.setConcurrency(2);
+		container1.setMessageListener(listener);
+		container1.setBeanName("sticky1");
+		container1.start();
+		Map<TopicPartition, String> owners = waitForOwners(PARTITIONS / 2, container1);
+		ConcurrentMessageListenerContainer<Integer, String> container2 =
+				new ConcurrentMessageListenerContainer<>(cf, TOPIC);
+		container2.setMessageListener(listener);
+		container2.setBeanName("sticky2");
+		container2.start();
+		Map<TopicPartition, String> newOwners = waitForOwners(PARTITIONS / 3, container1, container2);
+		container1.stop();
+		container2.stop();
+		assertThat(moved(owners, newOwners)).isEqualTo(PARTITIONS / 3);
+	}
+
+	private Map<TopicPartition, String> waitForOwners(int perConsumer,
+			ConcurrentMessageListenerContainer<?, ?>... containers) throws InterruptedException {
+		Map<TopicPartition, String> owners = new HashMap<>();
+		int n = 0;
+		while (n++ < 600 && owners.size() < PARTITIONS) {
+			Thread.sleep(100);
+			owners.clear();
+			for (ConcurrentMessageListenerContainer<?, ?> container : containers) {
+				for (KafkaMessageListenerContainer<?, ?> consumer : container.getContainers()) {
+					Collection<TopicPartition> assigned = consumer.getAssignedPartitions();
+					if (assigned == null || assigned.size() != perConsumer) {
+						owners.clear();
+						break;
+					}
+					for (TopicPartition partition : assigned) {
+						owners.put(partition, consumer.getBeanName());
+					}
+				}
+				if (owners.isEmpty()) {
+					break;
+				}
+			}
+		}
+		assertThat(owners).hasSize(PARTITIONS);
+		return owners;
+	}
+
+	private Map<TopicPartition, String> rebalance(Cluster cluster, Map<String, StickyPartitionAssignor> members) {
+		Map<String, Subscription> subscriptions = new HashMap<>();
+		for (Entry<String, StickyPartitionAssignor> member : members.entrySet()) {
+			subscriptions.put(member.getKey(), member.getValue().subscription(Collections.singleton("foo")));
+		}
+		Map<String, Assignment> assignments = members.values().iterator().next().assign(cluster, subscriptions);
+		Map<TopicPartition, String> owners = new HashMap<>();
+		for (Entry<String, Assignment> assignment : assignments.entrySet()) {
+			members.get(assignment.getKey()).onAssignment(assignment.getValue());
+			for (TopicPartition partition : assignment.getValue().partitions()) {
+				assertThat(owners.put(partition, assignment.getKey())).isNull();
+			}
+		}
+		assertThat(owners).hasSize(PARTITIONS);
+		return owners;
+	}
+
+	private void assertBalanced(Map<TopicPartition, String> owners, int members) {
+		Map<String, Integer> counts = new HashMap<>();
+		for (String owner : owners.values()) {
+			Integer count = counts.get(owner);
+			counts.put(owner, count == null ? 1 : count + 1);
+		}
+		assertThat(counts).hasSize(members);
+		Set<Integer> sizes = new HashSet<>(counts.values());
+		assertThat(Collections.max(sizes) - Collections.min(sizes)).isLessThanOrEqualTo(1);
+	}
+
+	private int moved(Map<TopicPartition, String> before, Map<TopicPartition, String> after) {
+		int moved = 0;
+		for (Entry<TopicPartition, String> entry : after.entrySet()) {
+			if (!entry.getValue().equals(before.get(entry.getKey()))) {
+				moved++;
+			}
+		}
+		return moved;
+	}
+
+	private Cluster cluster(String topic, int partitions) {
+		Node node = new Node(0, "localhost", 9092);
+		List<PartitionInfo> infos = new ArrayList<>();
+		for (int i = 0; i < partitions; i++) {
+			infos.add(new PartitionInfo(topic, i, node, new Node[] { node }, new Node[] { node }));
+		}
+		return new Cluster(Collections.singletonList(node), infos, Collections.<String>emptySet());
+	}
+
+}
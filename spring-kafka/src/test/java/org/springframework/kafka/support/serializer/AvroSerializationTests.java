@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.kafka.support.serializer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Test;
+
+import org.springframework.kafka.support.converter.AvroMessagingMessageConverter;
+import org.springframework.messaging.Message;
+
+/**
+ * @author Gary Russell
+ *
+ */
+public class AvroSerializationTests {
+
+	private static final Schema SCHEMA_V1 = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"Foo\","
+			+ "\"namespace\":\"org.springframework.kafka.support.serializer.AvroSerializationTests$\","
+			+ "\"fields\":[{\"name\":\"bar\",\"type\":\"string\"}]}");
+
+	private static final Schema SCHEMA_V2 = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"Foo\","
+			+ "\"namespace\":\"org.springframework.kafka.support.serializer.AvroSerializationTests$\","
+			+ "\"fields\":[{\"name\":\"bar\",\"type\":\"string\"},"
+			+ "{\"name\":\"baz\",\"type\":\"int\",\"default\":42}]}");
+
+	@Test
+	public void testGeneric() {
+		GenericRecord record = new GenericData.Record(SCHEMA_V1);
+		record.put("bar", "qux");
+		AvroSerializer<GenericRecord> serializer = new AvroSerializer<>();
+		byte[] bytes = serializer.serialize("foo", record);
+		AvroDeserializer<GenericRecord> deserializer = new AvroDeserializer<>(new SimpleAvroSchemaSource(SCHEMA_V1));
+		GenericRecord decoded = deserializer.deserialize("foo", bytes);
+		assertThat(decoded.get("bar").toString()).isEqualTo("qux");
+		assertThat(serializer.serialize("foo", record)).isEqualTo(bytes);
+		assertThat(deserializer.deserialize("foo", bytes)).isEqualTo(decoded);
+	}
+
+	@Test
+	public void testSpecific() {
+		Foo foo = new Foo();
+		foo.bar = "qux";
+		byte[] bytes = new AvroSerializer<Foo>().serialize("foo", foo);
+		AvroDeserializer<Foo> deserializer = new AvroDeserializer<>(Foo.class);
+		Foo decoded = deserializer.deserialize("foo", bytes);
+		assertThat(decoded.bar.toString()).isEqualTo("qux");
+	}
+
+	@Test
+	public void testReaderSchemaFromConfig() {
+		GenericRecord record = new GenericData.Record(SCHEMA_V1);
+		record.put("bar", "qux");
+		byte[] bytes = new AvroSerializer<GenericRecord>().serialize("foo", record);
+		SimpleAvroSchemaSource schemaSource = new SimpleAvroSchemaSource()
+				.addWriterSchema("foo", SCHEMA_V1)
+				.addReaderSchema("foo", SCHEMA_V2);
+		AvroDeserializer<GenericRecord> deserializer = new AvroDeserializer<>();
+		deserializer.configure(Collections.singletonMap(AvroDeserializer.VALUE_SCHEMA_SOURCE, schemaSource), false);
+		GenericRecord decoded = deserializer.deserialize("foo", bytes);
+		assertThat(decoded.get("bar").toString()).isEqualTo("qux");
+		assertThat(decoded.get("baz")).isEqualTo(42);
+	}
+
+	@Test
+	public void testConverter() {
+		Foo foo = new Foo();
+		foo.bar = "qux";
+		byte[] bytes = new AvroSerializer<Foo>().serialize("foo", foo);
+		AvroMessagingMessageConverter<Integer, byte[]> converter =
+				new AvroMessagingMessageConverter<>(Foo.class, null);
+		Message<?> message = converter.toMessage(new ConsumerRecord<Integer, byte[]>("foo", 0, 0L, 1, bytes), null);
+		assertThat(message.getPayload()).isInstanceOf(Foo.class);
+		assertThat(((Foo) message.getPayload()).bar.toString()).isEqualTo("qux");
+	}
+
+	public static class Foo extends SpecificRecordBase {
+
+		public static final Schema SCHEMA$ = SCHEMA_V1;
+
+		private CharSequence bar;
+
+		@Override
+		public Schema getSchema() {
+			return SCHEMA$;
+		}
+
+		@Override
+		public Object get(int field) {
+			return this.bar;
+		}
+
+		@Override
+		public void put(int field, Object value) {
+			this.bar = (CharSequence) value;
+		}
+
+	}
+
+}